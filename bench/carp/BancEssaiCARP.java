@@ -0,0 +1,337 @@
+package carp;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import seisco.util.graphe.Arc;
+
+/**
+ * <p>
+ * Banc d'essai des performances de l'évaluation : lecture d'une instance,
+ * construction du distancier, découpe complète, calcul du coût seul et
+ * construction du résultat, sur des instances aléatoires de plusieurs
+ * tailles (de celle des instances gdb à plusieurs milliers de tâches).
+ * </p>
+ * <p>
+ * Chaque évaluateur enregistré dans {@link EvaluateursCARP}, y compris ceux
+ * déclarés comme service dans le classpath, est mesuré comme la référence
+ * (<code>instance.evaluateur.nom</code>). Ses coûts doivent être
+ * identiques au bit près à ceux de la référence sur toutes les tournées
+ * géantes de l'instance : sinon la mesure est marquée ÉCART et le nombre de
+ * solutions différentes est affiché.
+ * </p>
+ * <p>
+ * Un {@link EvaluateurGroupeCARP} est aussi mesuré par groupes
+ * (<code>instance.evaluateur.nom.groupe</code>), en temps par solution pour
+ * être comparé à <code>split</code> et <code>cout</code>. Ses coûts et le
+ * sens de parcours qu'il donne aux tâches sont ensuite comparés au bit près
+ * à ceux de la référence, une fois son code compilé.
+ * </p>
+ * <p>
+ * Chaque mesure enchaîne des itérations de chauffe puis des itérations
+ * mesurées d'une durée fixe ; le temps moyen par opération, son écart-type
+ * entre itérations, le débit et le nombre d'octets alloués par opération
+ * sont affichés. Les instances sont produites par {@link GenerateurCARP}
+ * avec une graine fixe, les résultats sont donc comparables d'une version à
+ * l'autre.
+ * </p>
+ * <p>
+ * Usage : <code>ant bench</code>, ou
+ * <code>java carp.BancEssaiCARP [filtre]</code> pour ne lancer que les
+ * mesures dont le nom contient le filtre (par exemple <code>split</code>
+ * ou <code>egl</code>).
+ * </p>
+ *
+ * @version 2012
+ */
+public class BancEssaiCARP {
+
+	private static final int NB_CHAUFFES = 5;
+	// Le code vectoriel est lent tant qu'il n'est pas compilé par C2 : les groupes chauffent plus longtemps
+	private static final int NB_CHAUFFES_GROUPE = 25;
+	private static final int NB_ITERATIONS = 10;
+	private static final long DUREE_ITERATION = 200000000L;
+	private static final int NB_SOLUTIONS = 64;
+	private static final long GRAINE = 20120301L;
+	private static final int CAPACITE = 40;
+
+	// Nom, nombre de noeuds et nombre de tâches de chaque instance
+	private static final Object[][] INSTANCES = {
+		{"gdb", 12, 22},
+		{"val", 40, 80},
+		{"egl", 140, 190},
+		{"s1000", 500, 1000},
+		{"s3000", 1500, 3000}
+	};
+
+	private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+	// Empêche le JIT d'éliminer les opérations mesurées
+	private static volatile float puits;
+
+	private final String filtre;
+
+	private BancEssaiCARP(String filtre) {
+		this.filtre = filtre;
+	}
+
+	public static void main(String[] args) throws Exception {
+		new BancEssaiCARP(args.length > 0 ? args[0] : "").lancer();
+	}
+
+	private void lancer() throws Exception {
+		System.out.println(String.format(Locale.ROOT, "%-16s %14s %10s %14s %12s",
+				"mesure", "ns/op", "± ns", "op/s", "octets/op"));
+
+		for (Object[] instance : INSTANCES) {
+			String nom = (String) instance[0];
+			final Path fichier = Files.createTempFile("carp-" + nom, ".txt");
+			try {
+				new GenerateurCARP()
+						.setNom(nom)
+						.setNbNoeuds((Integer) instance[1])
+						.setNbTaches((Integer) instance[2])
+						.setTopologie(GenerateurCARP.Topologie.GEOMETRIQUE)
+						.setDemande(GenerateurCARP.LoiDemande.UNIFORME, 1, 10)
+						.setCapacite(CAPACITE)
+						.setGraine(GRAINE)
+						.ecrire(fichier);
+				mesurerInstance(nom, fichier);
+			} finally {
+				Files.deleteIfExists(fichier);
+			}
+		}
+	}
+
+	private void mesurerInstance(String nom, final Path fichier) throws Exception {
+		mesurer(nom + ".lecture", new Operation() {
+			@Override
+			void executer(int k) throws Exception {
+				puits += LecteurCARP.lire(fichier).getGrapheCARP().getNbTaches();
+			}
+		});
+
+		final ProblemeCARP probleme = LecteurCARP.lire(fichier);
+		mesurer(nom + ".distancier", new Operation() {
+			@Override
+			void executer(int k) {
+				probleme.initialiserDistancier();
+				puits += probleme.getDistancier().getNbNoeuds();
+			}
+		});
+		// Le filtre a pu écarter la mesure précédente
+		if (probleme.getDistancier() == null)
+			probleme.initialiserDistancier();
+
+		// Tournées géantes aléatoires, avec le plus court chemin de chacune
+		final List<SolutionCARP> solutions = new ArrayList<SolutionCARP>();
+		final float[][] labels = new float[NB_SOLUTIONS][];
+		final int[][] predecesseurs = new int[NB_SOLUTIONS][];
+		GrapheCARP graphe = probleme.getGrapheCARP();
+		List<Arc> taches = new ArrayList<Arc>();
+		for (int t = 0; t < graphe.getNbTaches(); t++)
+			taches.add(graphe.getTache(t));
+		Random aleatoire = new Random(GRAINE);
+		for (int s = 0; s < NB_SOLUTIONS; s++) {
+			Collections.shuffle(taches, aleatoire);
+			SolutionCARP sol = new SolutionCARP(new ArrayList<Arc>(taches)) {
+			};
+			solutions.add(sol);
+
+			probleme.split(sol.getSequence(graphe));
+			EspaceTravail espace = EspaceTravail.courant();
+			labels[s] = espace.getLabels().clone();
+			predecesseurs[s] = espace.getPredecesseurs().clone();
+		}
+
+		mesurer(nom + ".split", new Operation() {
+			@Override
+			void executer(int k) {
+				puits += probleme.evaluerDecoupe(solutions.get(k % NB_SOLUTIONS));
+			}
+		});
+		mesurer(nom + ".cout", new Operation() {
+			@Override
+			void executer(int k) {
+				puits += probleme.evaluerCout(solutions.get(k % NB_SOLUTIONS));
+			}
+		});
+		mesurer(nom + ".fitness", new Operation() {
+			@Override
+			void executer(int k) {
+				int s = k % NB_SOLUTIONS;
+				puits += FitnessCARP.evaluer(labels[s], predecesseurs[s], solutions.get(s));
+			}
+		});
+
+		for (String nomEvaluateur : EvaluateursCARP.getNoms())
+			if (!nomEvaluateur.equals(EvaluateursCARP.NOM_REFERENCE)) {
+				EvaluateurCARP evaluateur = EvaluateursCARP.trouver(nomEvaluateur);
+				mesurerEvaluateur(nom, probleme, evaluateur, solutions);
+				if (evaluateur instanceof EvaluateurGroupeCARP)
+					mesurerGroupe(nom, probleme, (EvaluateurGroupeCARP) evaluateur, solutions);
+			}
+	}
+
+	private void mesurerEvaluateur(String nom, final ProblemeCARP probleme, final EvaluateurCARP evaluateur,
+			final List<SolutionCARP> solutions) throws Exception {
+		String prefixe = nom + ".evaluateur." + evaluateur.getNom();
+		if (!(prefixe + ".cout").contains(filtre))
+			return;
+
+		// Comparaison au bit près avec la référence, sur le coût complet et le coût seul
+		int nbEcarts = 0;
+		for (SolutionCARP sol : solutions) {
+			float reference = probleme.evaluerDecoupe(sol);
+			float referenceCout = probleme.evaluerCout(sol);
+			if (Float.floatToIntBits(evaluateur.evaluer(probleme, sol)) != Float.floatToIntBits(reference)
+					|| Float.floatToIntBits(evaluateur.evaluerCout(probleme, sol))
+							!= Float.floatToIntBits(referenceCout))
+				nbEcarts++;
+		}
+		if (nbEcarts > 0)
+			System.out.println(String.format(Locale.ROOT, "%-16s ÉCART sur %d/%d solutions",
+					prefixe, nbEcarts, solutions.size()));
+
+		mesurer(prefixe, new Operation() {
+			@Override
+			void executer(int k) {
+				puits += evaluateur.evaluer(probleme, solutions.get(k % NB_SOLUTIONS));
+			}
+		});
+		mesurer(prefixe + ".cout", new Operation() {
+			@Override
+			void executer(int k) {
+				puits += evaluateur.evaluerCout(probleme, solutions.get(k % NB_SOLUTIONS));
+			}
+		});
+	}
+
+	private void mesurerGroupe(String nom, final ProblemeCARP probleme, final EvaluateurGroupeCARP evaluateur,
+			List<SolutionCARP> solutions) throws Exception {
+		String prefixe = nom + ".evaluateur." + evaluateur.getNom();
+		final int taille = evaluateur.getTailleGroupe();
+		if (!(prefixe + ".groupe.cout").contains(filtre))
+			return;
+
+		final SolutionCARP[] tableau = solutions.toArray(new SolutionCARP[solutions.size()]);
+
+		// Chaque opération évalue un groupe : les mesures sont données par solution
+		final SolutionCARP[][] groupes = new SolutionCARP[(tableau.length + taille - 1) / taille][];
+		for (int g = 0; g < groupes.length; g++)
+			groupes[g] = Arrays.copyOfRange(tableau, g * taille, Math.min(tableau.length, (g + 1) * taille));
+		final float[] coutsGroupe = new float[taille];
+
+		mesurer(prefixe + ".groupe", taille, NB_CHAUFFES_GROUPE, new Operation() {
+			@Override
+			void executer(int k) {
+				evaluateur.evaluerGroupe(probleme, groupes[k % groupes.length], coutsGroupe);
+				puits += coutsGroupe[0];
+			}
+		});
+		mesurer(prefixe + ".groupe.cout", taille, NB_CHAUFFES_GROUPE, new Operation() {
+			@Override
+			void executer(int k) {
+				evaluateur.evaluerCoutsGroupe(probleme, groupes[k % groupes.length], coutsGroupe);
+				puits += coutsGroupe[0];
+			}
+		});
+
+		/*
+		 * Comparaison au bit près avec la référence, coûts et sens de parcours
+		 * des tâches, après les mesures : c'est le code compilé qui est vérifié
+		 */
+		float[] couts = new float[tableau.length];
+		float[] coutsSeuls = new float[tableau.length];
+		boolean[][] inversions = new boolean[tableau.length][];
+		evaluateur.evaluerCoutsGroupe(probleme, tableau, coutsSeuls);
+		evaluateur.evaluerGroupe(probleme, tableau, couts);
+		for (int s = 0; s < tableau.length; s++)
+			inversions[s] = tableau[s].getInversions();
+
+		int nbEcarts = 0;
+		for (int s = 0; s < tableau.length; s++) {
+			float referenceCout = probleme.evaluerCout(tableau[s]);
+			float reference = probleme.evaluerDecoupe(tableau[s]);
+			if (Float.floatToIntBits(couts[s]) != Float.floatToIntBits(reference)
+					|| Float.floatToIntBits(coutsSeuls[s]) != Float.floatToIntBits(referenceCout)
+					|| !Arrays.equals(inversions[s], tableau[s].getInversions()))
+				nbEcarts++;
+		}
+		System.out.println(String.format(Locale.ROOT, "%-16s %s sur %d/%d solutions, %d par groupe",
+				prefixe + ".groupe", nbEcarts > 0 ? "ÉCART" : "identique", nbEcarts > 0 ? nbEcarts : tableau.length,
+				tableau.length, taille));
+	}
+
+	private void mesurer(String nom, Operation operation) throws Exception {
+		mesurer(nom, 1, NB_CHAUFFES, operation);
+	}
+
+	// Mesure une opération qui évalue nbSolutions solutions, les résultats étant donnés par solution
+	private void mesurer(String nom, int nbSolutions, int nbChauffes, Operation operation) throws Exception {
+		if (!nom.contains(filtre))
+			return;
+
+		for (int i = 0; i < nbChauffes; i++)
+			iterer(operation);
+
+		double[] durees = new double[NB_ITERATIONS];
+		long nbOperations = 0;
+		long octets = 0;
+		for (int i = 0; i < NB_ITERATIONS; i++) {
+			long debutOctets = getOctetsAlloues();
+			long debut = System.nanoTime();
+			int nb = iterer(operation);
+			long duree = System.nanoTime() - debut;
+			octets += getOctetsAlloues() - debutOctets;
+
+			durees[i] = (double) duree / nb / nbSolutions;
+			nbOperations += (long) nb * nbSolutions;
+		}
+
+		double moyenne = 0;
+		for (double d : durees)
+			moyenne += d / NB_ITERATIONS;
+		double variance = 0;
+		for (double d : durees)
+			variance += (d - moyenne) * (d - moyenne) / NB_ITERATIONS;
+
+		System.out.println(String.format(Locale.ROOT, "%-16s %14.1f %10.1f %14.1f %12s",
+				nom, moyenne, Math.sqrt(variance), 1e9 / moyenne,
+				THREADS == null ? "?" : String.valueOf(octets / nbOperations)));
+	}
+
+	// Répète l'opération pendant DUREE_ITERATION et retourne le nombre d'exécutions
+	private int iterer(Operation operation) throws Exception {
+		long fin = System.nanoTime() + DUREE_ITERATION;
+		int nb = 0;
+		do {
+			operation.executer(nb++);
+		} while (System.nanoTime() < fin);
+
+		return nb;
+	}
+
+	private static long getOctetsAlloues() {
+		return THREADS == null ? 0 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static com.sun.management.ThreadMXBean threads() {
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean)
+			return (com.sun.management.ThreadMXBean) threads;
+
+		return null;
+	}
+
+	private abstract static class Operation {
+
+		abstract void executer(int k) throws Exception;
+	}
+}
@@ -0,0 +1,214 @@
+package carp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Enregistre sur disque le {@link Distancier} complet d'une instance, pour
+ * ne pas relancer le calcul des plus courts chemins à chaque chargement.
+ * </p>
+ * <p>
+ * Le fichier commence par un en-tête de {@link #TAILLE_ENTETE} octets
+ * (signature, version, empreinte SHA-256 de l'instance, nombre de noeuds),
+ * suivi des distances ligne par ligne, en petit-boutiste. Il est relu en le
+ * projetant en mémoire : les distances ne sont pas copiées, et plusieurs
+ * JVM lisant le même fichier partagent les mêmes pages. Un fichier dont
+ * l'empreinte ne correspond plus à l'instance est ignoré, puis remplacé.
+ * </p>
+ *
+ * @version 2012
+ * @see ProblemeCARP#initialiserDistancierCache(java.nio.file.Path)
+ */
+public final class CacheDistancier {
+
+	/** Suffixe ajouté au nom du fichier d'instance pour nommer le cache. */
+	public static final String SUFFIXE = ".dist";
+
+	static final int SIGNATURE = 0x43415244; // "CARD"
+	static final int VERSION = 1;
+	static final int TAILLE_ENTETE = 64;
+
+	private CacheDistancier() {
+	}
+
+	/**
+	 * <p>
+	 * Calcule l'empreinte d'un {@link GrapheCARP} : nombre de noeuds, puis
+	 * extrémités et coût de chaque tâche, et de chaque arête non requise
+	 * s'il y en a. Deux instances ayant la même empreinte ont le même
+	 * distancier.
+	 * </p>
+	 *
+	 * @param graphe le graphe de l'instance
+	 * @return l'empreinte SHA-256 du graphe (32 octets)
+	 * @since 2012
+	 */
+	public static byte[] empreinte(GrapheCARP graphe) {
+		int nbTaches = graphe.getNbTaches();
+		int nbNonRequises = graphe.getNbArretesNonRequises();
+		// Sans arête non requise, l'empreinte reste celle des caches déjà enregistrés
+		int taille = 8 + 12 * nbTaches + (nbNonRequises > 0 ? 4 + 12 * nbNonRequises : 0);
+		ByteBuffer contenu = ByteBuffer.allocate(taille).order(ByteOrder.LITTLE_ENDIAN);
+		contenu.putInt(graphe.getNoeuds().size()).putInt(nbTaches);
+		for (int t = 0; t < nbTaches; t++)
+			contenu.putInt(graphe.getDeparts()[t])
+					.putInt(graphe.getArrivees()[t])
+					.putInt(Float.floatToIntBits(graphe.getCouts()[t]));
+		if (nbNonRequises > 0) {
+			contenu.putInt(nbNonRequises);
+			for (int a = 0; a < nbNonRequises; a++)
+				contenu.putInt(graphe.getDepartsNonRequises()[a])
+						.putInt(graphe.getArriveesNonRequises()[a])
+						.putInt(Float.floatToIntBits(graphe.getCoutsNonRequises()[a]));
+		}
+
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(contenu.array());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 indisponible", e);
+		}
+	}
+
+	/**
+	 * <p>Relit un distancier enregistré, en projetant le fichier en mémoire.
+	 *
+	 * @param fichier le fichier du cache
+	 * @param empreinte l'empreinte de l'instance attendue
+	 * @return le {@link Distancier} enregistré (en lecture seule), ou <b>null</b>
+	 *      si le fichier n'existe pas ou ne correspond pas à l'instance
+	 * @throws IOException si le fichier ne peut être lu
+	 * @since 2012
+	 * @see #empreinte(carp.GrapheCARP)
+	 */
+	public static Distancier charger(Path fichier, byte[] empreinte) throws IOException {
+		if (!Files.isRegularFile(fichier))
+			return null;
+
+		try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.READ)) {
+			if (canal.size() < TAILLE_ENTETE)
+				return null;
+
+			ByteBuffer entete = ByteBuffer.allocate(TAILLE_ENTETE).order(ByteOrder.LITTLE_ENDIAN);
+			while (entete.hasRemaining())
+				if (canal.read(entete) < 0)
+					return null;
+			entete.flip();
+
+			if (entete.getInt() != SIGNATURE || entete.getInt() != VERSION)
+				return null;
+
+			byte[] lue = new byte[32];
+			entete.get(lue);
+			if (!Arrays.equals(lue, empreinte))
+				return null;
+
+			int nbNoeuds = entete.getInt();
+			long taille = (long) nbNoeuds * nbNoeuds;
+			if (canal.size() != TAILLE_ENTETE + 4 * taille)
+				return null;
+
+			return projeterDistances(canal, TAILLE_ENTETE, nbNoeuds);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Enregistre un distancier complet. Le fichier est d'abord écrit à côté,
+	 * puis renommé, pour qu'un autre processus ne lise jamais un fichier
+	 * incomplet.
+	 * </p>
+	 *
+	 * @param fichier le fichier du cache
+	 * @param empreinte l'empreinte de l'instance
+	 * @param distancier le distancier complet de l'instance
+	 * @throws IOException si le fichier ne peut être écrit
+	 * @since 2012
+	 * @see #empreinte(carp.GrapheCARP)
+	 */
+	public static void enregistrer(Path fichier, byte[] empreinte, Distancier distancier) throws IOException {
+		int nbNoeuds = distancier.getNbNoeuds();
+		Path temporaire = Files.createTempFile(fichier.toAbsolutePath().getParent(), fichier.getFileName().toString(), ".tmp");
+
+		try {
+			try (FileChannel canal = FileChannel.open(temporaire, StandardOpenOption.WRITE)) {
+				ByteBuffer entete = ByteBuffer.allocate(TAILLE_ENTETE).order(ByteOrder.LITTLE_ENDIAN);
+				entete.putInt(SIGNATURE).putInt(VERSION).put(empreinte).putInt(nbNoeuds);
+				entete.clear();
+				ecrire(canal, entete);
+
+				ecrireDistances(canal, distancier);
+			}
+
+			Files.move(temporaire, fichier, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporaire);
+		}
+	}
+
+	/**
+	 * <p>Écrit toutes les distances d'un distancier complet, ligne par ligne, en petit-boutiste.
+	 *
+	 * @param canal le canal du fichier, à la position voulue
+	 * @param distancier le distancier complet
+	 * @throws IOException si l'écriture échoue
+	 * @since 2012
+	 */
+	static void ecrireDistances(FileChannel canal, Distancier distancier) throws IOException {
+		int nbNoeuds = distancier.getNbNoeuds();
+		ByteBuffer ligne = ByteBuffer.allocate(4 * nbNoeuds).order(ByteOrder.LITTLE_ENDIAN);
+		for (int i = 0; i < nbNoeuds; i++) {
+			ligne.clear();
+			for (int j = 0; j < nbNoeuds; j++)
+				ligne.putFloat(distancier.getDistance(i, j));
+			ligne.flip();
+			ecrire(canal, ligne);
+		}
+	}
+
+	/**
+	 * <p>Projette en mémoire, en lecture seule, les distances d'un distancier complet.
+	 *
+	 * @param canal le canal du fichier
+	 * @param position la position de la première distance dans le fichier
+	 * @param nbNoeuds le nombre de noeuds du graphe
+	 * @return le {@link Distancier} projeté, sans copie des distances
+	 * @throws IOException si la projection échoue
+	 * @since 2012
+	 */
+	static Distancier projeterDistances(FileChannel canal, long position, int nbNoeuds) throws IOException {
+		long taille = (long) nbNoeuds * nbNoeuds;
+		FloatBuffer[] blocs = new FloatBuffer[Distancier.HorsTas.getNbBlocs(taille)];
+		for (int b = 0; b < blocs.length; b++) {
+			int tailleBloc = Distancier.HorsTas.getTailleBloc(taille, b);
+			blocs[b] = canal.map(FileChannel.MapMode.READ_ONLY, position, 4L * tailleBloc)
+					.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+			position += 4L * tailleBloc;
+		}
+
+		return new Distancier.HorsTas(nbNoeuds, blocs);
+	}
+
+	/**
+	 * <p>Écrit tout le contenu d'un tampon dans un canal.
+	 *
+	 * @param canal le canal du fichier
+	 * @param tampon les octets à écrire
+	 * @throws IOException si l'écriture échoue
+	 * @since 2012
+	 */
+	static void ecrire(FileChannel canal, ByteBuffer tampon) throws IOException {
+		while (tampon.hasRemaining())
+			canal.write(tampon);
+	}
+}
@@ -0,0 +1,242 @@
+package carp;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import seisco.util.graphe.Arc;
+
+/**
+ * <p>
+ * Mémorise l'évaluation des dernières tournées géantes découpées par un
+ * {@link ProblemeCARP}, pour ne pas redécouper les clones qu'un algorithme
+ * génétique produit en nombre.
+ * </p>
+ * <p>
+ * Une tournée géante est identifiée par la suite des numéros de ses tâches,
+ * recopiée au moment de l'évaluation : une solution modifiée après coup ne
+ * fausse donc pas le cache. Le sens de parcours et le {@link ResultatCARP}
+ * sont eux aussi recopiés à la mémorisation, puis à chaque succès : chaque
+ * solution reçoit les siens, et les modifier n'affecte ni le cache ni ses
+ * clones. Les entrées sont réparties sur plusieurs
+ * segments, chacun étant un {@link LinkedHashMap} en ordre d'accès dont la
+ * plus ancienne entrée est retirée au-delà de sa capacité (LRU). Le cache
+ * peut être partagé par plusieurs threads d'évaluation.
+ * </p>
+ *
+ * @version 2012
+ * @see ProblemeCARP#setCacheEvaluations(int)
+ */
+public class CacheEvaluations {
+
+	private static final int NB_SEGMENTS = 16;
+
+	private final int capacite;
+	private final Segment[] segments;
+	private final AtomicLong nbSucces = new AtomicLong();
+	private final AtomicLong nbEchecs = new AtomicLong();
+
+	/**
+	 * <p>Crée un cache vide.
+	 *
+	 * @param capacite le nombre maximal de tournées géantes mémorisées (au moins 1)
+	 * @throws IllegalArgumentException si capacite est inférieure à 1
+	 * @since 2012
+	 */
+	public CacheEvaluations(int capacite) {
+		if (capacite < 1)
+			throw new IllegalArgumentException("La capacité du cache doit être au moins de 1");
+
+		this.capacite = capacite;
+
+		int nbSegments = Math.min(NB_SEGMENTS, capacite);
+		segments = new Segment[nbSegments];
+		for (int s = 0; s < nbSegments; s++)
+			segments[s] = new Segment(capacite / nbSegments + (s < capacite % nbSegments ? 1 : 0));
+	}
+
+	/**
+	 * <p>
+	 * Évalue une solution en réutilisant, si la même tournée géante a déjà
+	 * été découpée, son coût, le sens de parcours de ses tâches et son
+	 * {@link ResultatCARP}. Sinon la solution est évaluée par l'évaluateur du
+	 * problème (voir {@link ProblemeCARP#setEvaluateur(carp.EvaluateurCARP)})
+	 * et son évaluation mémorisée.
+	 * </p>
+	 *
+	 * @param probleme le problème auquel appartient la solution
+	 * @param sol la {@link SolutionCARP} à évaluer
+	 * @return le coût de la solution
+	 * @since 2012
+	 */
+	public float evaluer(ProblemeCARP probleme, SolutionCARP sol) {
+		Cle cle = new Cle(sol.getTaches());
+		Segment segment = segments[((cle.hash >>> 16 ^ cle.hash) & 0x7fffffff) % segments.length];
+
+		Evaluation evaluation;
+		synchronized (segment) {
+			evaluation = segment.get(cle);
+		}
+
+		if (evaluation != null) {
+			nbSucces.incrementAndGet();
+			sol.setInversions(copier(evaluation.inversions));
+			sol.setResultat(copier(evaluation.resultat));
+			return evaluation.cout;
+		}
+
+		nbEchecs.incrementAndGet();
+		float cout = probleme.evaluerSansCache(sol);
+		evaluation = new Evaluation(cout, copier(sol.getInversions()), copier(sol.getResultat()));
+		synchronized (segment) {
+			segment.put(cle, evaluation);
+		}
+
+		return cout;
+	}
+
+	/**
+	 * <p>Retourne une copie du sens de parcours des tâches.
+	 *
+	 * @param inversions le sens de parcours à recopier, peut être <b>null</b>
+	 * @return la copie, ou <b>null</b>
+	 * @since 2012
+	 */
+	private static boolean[] copier(boolean[] inversions) {
+		return inversions == null ? null : inversions.clone();
+	}
+
+	/**
+	 * <p>Retourne une copie indépendante d'un résultat.
+	 *
+	 * @param resultat le résultat à recopier, peut être <b>null</b>
+	 * @return la copie, ou <b>null</b>
+	 * @since 2012
+	 * @see ResultatCARP#copier()
+	 */
+	private static ResultatCARP copier(ResultatCARP resultat) {
+		return resultat == null ? null : resultat.copier();
+	}
+
+	/**
+	 * <p>Oublie toutes les évaluations mémorisées, les compteurs sont conservés.
+	 *
+	 * @since 2012
+	 */
+	public void vider() {
+		for (Segment segment : segments)
+			synchronized (segment) {
+				segment.clear();
+			}
+	}
+
+	/**
+	 * <p>Retourne le nombre maximal de tournées géantes mémorisées.
+	 *
+	 * @return la capacité du cache
+	 * @since 2012
+	 */
+	public int getCapacite() {
+		return capacite;
+	}
+
+	/**
+	 * <p>Retourne le nombre de tournées géantes actuellement mémorisées.
+	 *
+	 * @return la taille du cache
+	 * @since 2012
+	 */
+	public int getTaille() {
+		int taille = 0;
+		for (Segment segment : segments)
+			synchronized (segment) {
+				taille += segment.size();
+			}
+
+		return taille;
+	}
+
+	/**
+	 * <p>Retourne le nombre d'évaluations trouvées dans le cache.
+	 *
+	 * @return le nombre de succès
+	 * @since 2012
+	 */
+	public long getNbSucces() {
+		return nbSucces.get();
+	}
+
+	/**
+	 * <p>Retourne le nombre d'évaluations qui ont dû être calculées.
+	 *
+	 * @return le nombre d'échecs
+	 * @since 2012
+	 */
+	public long getNbEchecs() {
+		return nbEchecs.get();
+	}
+
+	/**
+	 * <p>Un segment du cache, limité à sa capacité en retirant l'entrée la moins récemment utilisée.
+	 */
+	private static class Segment extends LinkedHashMap<Cle, Evaluation> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int capacite;
+
+		Segment(int capacite) {
+			super(16, 0.75f, true);
+			this.capacite = capacite;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Cle, Evaluation> plusAncienne) {
+			return size() > capacite;
+		}
+	}
+
+	/**
+	 * <p>Numéros des tâches d'une tournée géante, avec leur empreinte.
+	 */
+	private static final class Cle {
+
+		private final int[] numeros;
+		private final int hash;
+
+		Cle(List<Arc> taches) {
+			numeros = new int[taches.size()];
+			for (int k = 0; k < numeros.length; k++)
+				numeros[k] = taches.get(k).getNumero();
+			hash = SolutionCARP.hacher(numeros);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Cle && ((Cle) obj).hash == hash
+					&& Arrays.equals(((Cle) obj).numeros, numeros);
+		}
+	}
+
+	/**
+	 * <p>Coût, sens de parcours et résultat d'une tournée géante découpée.
+	 */
+	private static final class Evaluation {
+
+		private final float cout;
+		private final boolean[] inversions;
+		private final ResultatCARP resultat;
+
+		Evaluation(float cout, boolean[] inversions, ResultatCARP resultat) {
+			this.cout = cout;
+			this.inversions = inversions;
+			this.resultat = resultat;
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package carp;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * Compteur partagé par les threads d'évaluation. Chaque thread ajoute dans
+ * une cellule choisie d'après son identifiant, les cellules étant espacées
+ * d'une ligne de cache pour que deux threads ne se gênent pas. La valeur du
+ * compteur est la somme des cellules.
+ * </p>
+ *
+ * @version 2012
+ * @see MesuresCARP
+ */
+public class Compteur {
+
+	// 8 long = 64 octets entre deux cellules
+	private static final int ESPACEMENT = 8;
+	private static final int NB_CELLULES = cellules();
+
+	private final AtomicLongArray cellules = new AtomicLongArray(NB_CELLULES * ESPACEMENT);
+
+	/**
+	 * <p>Ajoute une valeur au compteur.
+	 *
+	 * @param valeur la valeur à ajouter
+	 * @since 2012
+	 */
+	public void ajouter(long valeur) {
+		int cellule = (int) Thread.currentThread().getId() & (NB_CELLULES - 1);
+		cellules.getAndAdd(cellule * ESPACEMENT, valeur);
+	}
+
+	/**
+	 * <p>Ajoute 1 au compteur.
+	 *
+	 * @since 2012
+	 */
+	public void incrementer() {
+		ajouter(1);
+	}
+
+	/**
+	 * <p>
+	 * Retourne la valeur du compteur. Les ajouts faits pendant l'appel
+	 * peuvent ne pas être comptés.
+	 * </p>
+	 *
+	 * @return la somme des valeurs ajoutées
+	 * @since 2012
+	 */
+	public long getValeur() {
+		long somme = 0;
+		for (int c = 0; c < NB_CELLULES; c++)
+			somme += cellules.get(c * ESPACEMENT);
+
+		return somme;
+	}
+
+	/**
+	 * <p>Remet le compteur à zéro.
+	 *
+	 * @since 2012
+	 */
+	public void reinitialiser() {
+		for (int c = 0; c < NB_CELLULES; c++)
+			cellules.set(c * ESPACEMENT, 0);
+	}
+
+	// Puissance de 2 supérieure ou égale à deux fois le nombre de processeurs
+	private static int cellules() {
+		int nb = 2 * Runtime.getRuntime().availableProcessors();
+		return Integer.highestOneBit(nb - 1) << 1;
+	}
+}
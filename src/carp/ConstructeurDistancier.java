@@ -0,0 +1,349 @@
+package carp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * Calcule les plus courtes distances d'un graphe non orienté en lançant un
+ * algorithme de Dijkstra (avec un tas binaire) depuis chaque source, les
+ * sources étant réparties sur plusieurs threads.
+ * </p>
+ * <p>
+ * On peut se limiter aux seules lignes utiles à la découpe, c'est-à-dire
+ * aux extrémités des tâches et au dépôt (voir
+ * {@link #construirePourTaches(carp.GrapheCARP, int)}).
+ * </p>
+ *
+ * @version 2012
+ * @see Distancier
+ * @see ProblemeCARP#initialiserDistancier()
+ */
+public class ConstructeurDistancier {
+
+	/**
+	 * <p>
+	 * Reçoit l'avancement du calcul. Elle est appelée par les threads de
+	 * calcul, après chaque source traitée, et doit donc être thread-safe.
+	 * </p>
+	 *
+	 * @since 2012
+	 */
+	public interface Progression {
+
+		/**
+		 * <p>Signale qu'une source de plus a été traitée.
+		 *
+		 * @param nbFaites le nombre de sources déjà traitées
+		 * @param nbTotal le nombre total de sources à traiter
+		 * @since 2012
+		 */
+		void avancer(int nbFaites, int nbTotal);
+	}
+
+	private final int nbNoeuds;
+	private final int[] debutsVoisins;
+	private final int[] voisins;
+	private final float[] poids;
+	private int parallelisme = Runtime.getRuntime().availableProcessors();
+	private Progression progression;
+
+	/**
+	 * <p>
+	 * Prépare le calcul pour un graphe non orienté donné par ses arêtes.
+	 * Les noeuds sont numérotés à partir de 0.
+	 * </p>
+	 *
+	 * @param nbNoeuds le nombre de noeuds du graphe
+	 * @param departs une extrémité de chaque arête
+	 * @param arrivees l'autre extrémité de chaque arête
+	 * @param couts le coût de parcours de chaque arête
+	 * @since 2012
+	 */
+	public ConstructeurDistancier(int nbNoeuds, int[] departs, int[] arrivees, float[] couts) {
+		this.nbNoeuds = nbNoeuds;
+
+		// Listes d'adjacence compactes : les voisins de u sont dans [debutsVoisins[u], debutsVoisins[u+1][
+		debutsVoisins = new int[nbNoeuds + 1];
+		for (int a = 0; a < departs.length; a++) {
+			debutsVoisins[departs[a] + 1]++;
+			debutsVoisins[arrivees[a] + 1]++;
+		}
+		for (int u = 0; u < nbNoeuds; u++)
+			debutsVoisins[u + 1] += debutsVoisins[u];
+
+		voisins = new int[2 * departs.length];
+		poids = new float[2 * departs.length];
+		int[] remplis = Arrays.copyOf(debutsVoisins, nbNoeuds);
+		for (int a = 0; a < departs.length; a++) {
+			voisins[remplis[departs[a]]] = arrivees[a];
+			poids[remplis[departs[a]]++] = couts[a];
+			voisins[remplis[arrivees[a]]] = departs[a];
+			poids[remplis[arrivees[a]]++] = couts[a];
+		}
+	}
+
+	/**
+	 * <p>
+	 * Prépare le calcul pour un {@link GrapheCARP}, dont les arêtes sont
+	 * les tâches suivies des arêtes non requises.
+	 * </p>
+	 *
+	 * @param graphe le graphe dont on veut les distances
+	 * @since 2012
+	 * @see GrapheCARP#getNbArretesNonRequises()
+	 */
+	public ConstructeurDistancier(GrapheCARP graphe) {
+		this(graphe.getNoeuds().size(),
+				concatener(graphe.getDeparts(), graphe.getDepartsNonRequises()),
+				concatener(graphe.getArrivees(), graphe.getArriveesNonRequises()),
+				concatener(graphe.getCouts(), graphe.getCoutsNonRequises()));
+	}
+
+	private static int[] concatener(int[] debut, int[] fin) {
+		int[] tout = Arrays.copyOf(debut, debut.length + fin.length);
+		System.arraycopy(fin, 0, tout, debut.length, fin.length);
+		return tout;
+	}
+
+	private static float[] concatener(float[] debut, float[] fin) {
+		float[] tout = Arrays.copyOf(debut, debut.length + fin.length);
+		System.arraycopy(fin, 0, tout, debut.length, fin.length);
+		return tout;
+	}
+
+	/**
+	 * <p>Remplace le nombre de threads utilisés pour le calcul.
+	 *
+	 * @param parallelisme le nombre de threads (au moins 1)
+	 * @return le constructeur lui-même
+	 * @throws IllegalArgumentException si parallelisme est inférieur à 1
+	 * @since 2012
+	 */
+	public ConstructeurDistancier setParallelisme(int parallelisme) {
+		if (parallelisme < 1)
+			throw new IllegalArgumentException("Le parallélisme doit être au moins de 1");
+
+		this.parallelisme = parallelisme;
+		return this;
+	}
+
+	/**
+	 * <p>Remplace l'objet qui reçoit l'avancement du calcul.
+	 *
+	 * @param progression la {@link Progression} à prévenir, ou <b>null</b>
+	 * @return le constructeur lui-même
+	 * @since 2012
+	 */
+	public ConstructeurDistancier setProgression(Progression progression) {
+		this.progression = progression;
+		return this;
+	}
+
+	/**
+	 * <p>Calcule la matrice complète des plus courtes distances.
+	 *
+	 * @return un {@link Distancier} contenant toutes les distances
+	 * @since 2012
+	 */
+	public Distancier construire() {
+		Distancier distancier = Distancier.creer(nbNoeuds);
+		int[] sources = new int[nbNoeuds];
+		for (int u = 0; u < nbNoeuds; u++)
+			sources[u] = u;
+
+		calculer(sources, distancier, sources);
+		return distancier;
+	}
+
+	/**
+	 * <p>
+	 * Calcule les seules lignes du distancier partant des extrémités des
+	 * tâches et du dépôt. Le graphe étant non orienté, les distances vers
+	 * ces noeuds sont aussi disponibles.
+	 * </p>
+	 *
+	 * @param graphe le {@link GrapheCARP} dont on veut relier les tâches
+	 * @param noeudDepot le noeud du dépôt, numéroté à partir de 0
+	 * @return un {@link Distancier.Lignes} contenant les lignes utiles
+	 * @since 2012
+	 */
+	public Distancier construirePourTaches(GrapheCARP graphe, int noeudDepot) {
+		boolean[] utiles = new boolean[nbNoeuds];
+		utiles[noeudDepot] = true;
+		for (int t = 0; t < graphe.getNbTaches(); t++) {
+			utiles[graphe.getDeparts()[t]] = true;
+			utiles[graphe.getArrivees()[t]] = true;
+		}
+
+		int nbSources = 0;
+		int[] sources = new int[nbNoeuds];
+		for (int u = 0; u < nbNoeuds; u++)
+			if (utiles[u])
+				sources[nbSources++] = u;
+		sources = Arrays.copyOf(sources, nbSources);
+
+		Distancier.Lignes distancier = new Distancier.Lignes(nbNoeuds, sources);
+		int[] lignes = new int[nbSources];
+		for (int k = 0; k < nbSources; k++)
+			lignes[k] = k;
+
+		calculer(sources, distancier.getLignes(), lignes);
+		return distancier;
+	}
+
+	/**
+	 * <p>Lance un Dijkstra depuis chaque source, réparties sur les threads.
+	 *
+	 * @param sources les noeuds sources
+	 * @param distancier la matrice à remplir
+	 * @param lignes la ligne de distancier qui reçoit chaque source
+	 * @since 2012
+	 */
+	private void calculer(final int[] sources, final Distancier distancier, final int[] lignes) {
+		final AtomicInteger prochaine = new AtomicInteger();
+		final AtomicInteger faites = new AtomicInteger();
+		final Progression suivi = progression;
+
+		Callable<Void> tache = new Callable<Void>() {
+			@Override
+			public Void call() {
+				float[] distances = new float[nbNoeuds];
+				Tas tas = new Tas(voisins.length + 1);
+
+				for (int k = prochaine.getAndIncrement(); k < sources.length; k = prochaine.getAndIncrement()) {
+					dijkstra(sources[k], distances, tas);
+					for (int v = 0; v < nbNoeuds; v++)
+						distancier.setDistance(lignes[k], v, distances[v]);
+
+					int n = faites.incrementAndGet();
+					if (suivi != null)
+						suivi.avancer(n, sources.length);
+				}
+
+				return null;
+			}
+		};
+
+		int nbThreads = Math.max(1, Math.min(parallelisme, sources.length));
+		ExecutorService executeur = Executors.newFixedThreadPool(nbThreads);
+		try {
+			List<Future<Void>> resultats = new ArrayList<Future<Void>>(nbThreads);
+			for (int t = 0; t < nbThreads; t++)
+				resultats.add(executeur.submit(tache));
+
+			for (Future<Void> resultat : resultats)
+				resultat.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Calcul du distancier interrompu", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Échec du calcul du distancier", e.getCause());
+		} finally {
+			executeur.shutdownNow();
+		}
+	}
+
+	/**
+	 * <p>Calcule les plus courtes distances depuis une source.
+	 *
+	 * @param source le noeud source
+	 * @param distances reçoit la distance de la source à chaque noeud
+	 * @param tas un tas vide, de capacité suffisante
+	 * @since 2012
+	 */
+	private void dijkstra(int source, float[] distances, Tas tas) {
+		Arrays.fill(distances, Float.POSITIVE_INFINITY);
+		distances[source] = 0;
+		tas.ajouter(0, source);
+
+		while (!tas.estVide()) {
+			float d = tas.getCleMin();
+			int u = tas.retirerMin();
+
+			// Entrée périmée : u a déjà été atteint par un chemin plus court
+			if (d > distances[u])
+				continue;
+
+			for (int a = debutsVoisins[u]; a < debutsVoisins[u + 1]; a++) {
+				int v = voisins[a];
+				float dv = d + poids[a];
+				if (dv < distances[v]) {
+					distances[v] = dv;
+					tas.ajouter(dv, v);
+				}
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * Tas binaire minimum de couples (clé, noeud) sur des tableaux primitifs.
+	 * Les entrées périmées ne sont pas retirées, mais ignorées à leur sortie.
+	 * </p>
+	 *
+	 * @since 2012
+	 */
+	private static class Tas {
+
+		private final float[] cles;
+		private final int[] noeuds;
+		private int taille = 0;
+
+		Tas(int capacite) {
+			cles = new float[capacite];
+			noeuds = new int[capacite];
+		}
+
+		boolean estVide() {
+			return taille == 0;
+		}
+
+		float getCleMin() {
+			return cles[0];
+		}
+
+		void ajouter(float cle, int noeud) {
+			int i = taille++;
+			while (i > 0) {
+				int parent = (i - 1) >>> 1;
+				if (cles[parent] <= cle)
+					break;
+				cles[i] = cles[parent];
+				noeuds[i] = noeuds[parent];
+				i = parent;
+			}
+			cles[i] = cle;
+			noeuds[i] = noeud;
+		}
+
+		int retirerMin() {
+			int min = noeuds[0];
+			float cle = cles[--taille];
+			int noeud = noeuds[taille];
+
+			int i = 0;
+			while (2 * i + 1 < taille) {
+				int enfant = 2 * i + 1;
+				if (enfant + 1 < taille && cles[enfant + 1] < cles[enfant])
+					enfant++;
+				if (cle <= cles[enfant])
+					break;
+				cles[i] = cles[enfant];
+				noeuds[i] = noeuds[enfant];
+				i = enfant;
+			}
+			cles[i] = cle;
+			noeuds[i] = noeud;
+
+			return min;
+		}
+	}
+}
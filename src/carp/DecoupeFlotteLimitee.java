@@ -0,0 +1,216 @@
+package carp;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Découpe d'une tournée géante en au plus K tournées, K étant le nombre de
+ * camions : plus court chemin sous contrainte de ressource dans le graphe
+ * auxiliaire des tournées viables.
+ * </p>
+ * <p>
+ * Les labels sont rangés par seau selon le nombre de tournées utilisées :
+ * <code>labels[k][j]</code> est le coût minimum pour collecter les j
+ * premières tâches en exactement k tournées. Les arcs du graphe auxiliaire
+ * sont construits comme par la découpe sans limite (mêmes sens de parcours,
+ * mêmes sommes), puis relâchés depuis chaque label non dominé : un label
+ * (k, coût) d'un noeud est dominé si le même noeud est atteint en moins de
+ * tournées pour un coût inférieur ou égal. Un label dont les tournées
+ * restantes ne peuvent plus contenir la demande restante est aussi écarté.
+ * Le coût est en O(n.k.f), f étant le nombre de labels non dominés par
+ * noeud, en général très petit.
+ * </p>
+ * <p>
+ * Avec l'orientation optimale, les arcs sont ceux de
+ * {@link OrientationOptimale} et les sens ne sont reconstruits que pour
+ * les tournées du chemin retenu.
+ * </p>
+ *
+ * @version 2012
+ * @see ProblemeCARP#setFlotteLimitee(boolean)
+ */
+final class DecoupeFlotteLimitee {
+
+	private DecoupeFlotteLimitee() {
+	}
+
+	/**
+	 * <p>
+	 * Découpe une tournée géante en au plus nbCamions tournées. En sortie,
+	 * labels et predecesseurs décrivent le meilleur chemin trouvé comme
+	 * après la découpe sans limite (seuls les noeuds du chemin sont
+	 * renseignés), et inversions le sens de parcours de chaque tâche.
+	 * </p>
+	 *
+	 * @param sequence les numéros de tâche de la tournée géante
+	 * @param nbTaches le nombre de tâches de la tournée géante
+	 * @param nbCamions le nombre maximal de tournées (au moins 1)
+	 * @param graphe le graphe des tâches
+	 * @param entreTaches les distances à vide entre les tâches et le dépôt
+	 * @param capacitecamion la capacité d'un camion
+	 * @param orientationOptimale <b>true</b> pour orienter au mieux chaque tournée
+	 * @param inversions reçoit le sens de parcours de chaque tâche (au moins nbTaches cases)
+	 * @param labels reçoit le coût minimum des noeuds du chemin (au moins nbTaches+1 cases)
+	 * @param predecesseurs reçoit le prédécesseur des noeuds du chemin (au moins nbTaches+1 cases)
+	 * @param espace les tableaux de travail du thread courant
+	 * @return <b>false</b> si aucune découpe n'utilise au plus nbCamions tournées
+	 * @since 2012
+	 */
+	static boolean decouper(int[] sequence, int nbTaches, int nbCamions, GrapheCARP graphe,
+			DistancierTaches entreTaches, float capacitecamion, boolean orientationOptimale,
+			boolean[] inversions, float[] labels, int[] predecesseurs, EspaceTravail espace) {
+
+		float[] couts = graphe.getCouts();
+		float[] demandes = graphe.getDemandes();
+
+		// Au-delà d'une tournée par tâche, la limite ne contraint plus rien
+		int nbMax = Math.max(1, Math.min(nbCamions, nbTaches));
+		int largeur = nbTaches + 1;
+		espace.reserverFlotte(nbTaches, nbMax);
+		float[] labelsParTournees = espace.getLabelsFlotte();
+		int[] predecesseursParTournees = espace.getPredecesseursFlotte();
+		int[] premieres = espace.getPremieresTournees();
+		int[] dernieres = espace.getDernieresTournees();
+		int[] restes = espace.getTourneesRestantes();
+
+		Arrays.fill(labelsParTournees, 0, (nbMax + 1) * largeur, Float.POSITIVE_INFINITY);
+		Arrays.fill(premieres, 0, largeur, Integer.MAX_VALUE);
+		Arrays.fill(dernieres, 0, largeur, -1);
+		Arrays.fill(inversions, 0, nbTaches, false);
+		labelsParTournees[0] = 0;
+		premieres[0] = 0;
+		dernieres[0] = 0;
+
+		// Nombre minimum de tournées pour collecter les tâches i et suivantes
+		double reste = 0;
+		restes[nbTaches] = 0;
+		for (int i = nbTaches - 1; i >= 0; i--) {
+			reste += demandes[sequence[i]];
+			restes[i] = (int) Math.ceil(reste / capacitecamion - 1e-9);
+		}
+
+		int[] front = espace.getFront();
+		float[] coutsFront = espace.getCoutsFront();
+		float[] tournees = espace.reserver(nbTaches).getTournees();
+
+		int currentTask, nextTask;
+		int currentEtat, nextEtat;
+		float longueur;
+		float capacite;
+
+		for (int i = 0; i < nbTaches; i++) {
+
+			// Labels non dominés du noeud i qui peuvent encore finir dans la limite
+			int nbFront = 0;
+			float meilleur = Float.POSITIVE_INFINITY;
+			for (int k = premieres[i]; k <= dernieres[i] && k < nbMax; k++) {
+				float c = labelsParTournees[k * largeur + i];
+				if (c < meilleur) {
+					meilleur = c;
+					if (k + restes[i] <= nbMax) {
+						front[nbFront] = k;
+						coutsFront[nbFront++] = c;
+					}
+				}
+			}
+
+			if (orientationOptimale) {
+				if (nbFront == 0)
+					continue;
+				int nb = OrientationOptimale.parcourir(sequence, nbTaches, i, graphe, entreTaches,
+						capacitecamion, tournees);
+				for (int m = 0; m < nb; m++)
+					relacher(labelsParTournees, predecesseursParTournees, premieres, dernieres, largeur,
+							front, coutsFront, nbFront, i, i + 1 + m, tournees[m]);
+				continue;
+			}
+
+			currentTask = sequence[i];
+
+			// Les tournées sont construites comme par la découpe sans limite
+			capacite = demandes[currentTask];
+			if (capacite > capacitecamion)
+				continue;
+
+			currentEtat = DistancierTaches.getEtat(currentTask, inversions[i]);
+			longueur = entreTaches.getDepuisDepot(currentEtat);
+			longueur += couts[currentTask];
+
+			relacher(labelsParTournees, predecesseursParTournees, premieres, dernieres, largeur,
+					front, coutsFront, nbFront, i, i + 1, longueur + entreTaches.getVersDepot(currentEtat));
+
+			for (int j = i + 2; j <= nbTaches; j++) {
+
+				nextTask = sequence[j - 1];
+
+				capacite += demandes[nextTask];
+				if (capacite > capacitecamion)
+					break;
+
+				nextEtat = DistancierTaches.getEtat(nextTask, inversions[j - 1]);
+				if (entreTaches.getFin(currentEtat) == entreTaches.getFin(nextEtat)) {
+					inversions[j - 1] = !inversions[j - 1];
+					nextEtat ^= 1;
+				}
+
+				longueur += entreTaches.getDistance(currentEtat, nextEtat);
+				longueur += couts[nextTask];
+
+				currentEtat = nextEtat;
+
+				relacher(labelsParTournees, predecesseursParTournees, premieres, dernieres, largeur,
+						front, coutsFront, nbFront, i, j, longueur + entreTaches.getVersDepot(currentEtat));
+			}
+		}
+
+		// Meilleur label du dernier noeud, à moins de tournées en cas d'égalité
+		FitnessCARP.initialiserLabels(labels, predecesseurs, nbTaches);
+		int meilleurK = -1;
+		float meilleur = Float.POSITIVE_INFINITY;
+		for (int k = premieres[nbTaches]; k <= dernieres[nbTaches]; k++)
+			if (labelsParTournees[k * largeur + nbTaches] < meilleur) {
+				meilleur = labelsParTournees[k * largeur + nbTaches];
+				meilleurK = k;
+			}
+
+		if (meilleurK < 0)
+			return false;
+
+		// Recopie du chemin retenu dans les labels de la découpe sans limite
+		for (int j = nbTaches, k = meilleurK; j > 0; k--) {
+			labels[j] = labelsParTournees[k * largeur + j];
+			predecesseurs[j] = predecesseursParTournees[k * largeur + j];
+			j = predecesseurs[j];
+		}
+
+		if (orientationOptimale)
+			OrientationOptimale.orienterChemin(sequence, nbTaches, graphe, entreTaches, inversions,
+					predecesseurs, espace.getChoix());
+
+		return true;
+	}
+
+	/**
+	 * <p>
+	 * Relâche l'arc (i, j) du graphe auxiliaire depuis chaque label non
+	 * dominé du noeud i : le label en k tournées de i donne un label en k+1
+	 * tournées de j.
+	 * </p>
+	 */
+	private static void relacher(float[] labels, int[] predecesseurs, int[] premieres, int[] dernieres,
+			int largeur, int[] front, float[] coutsFront, int nbFront, int i, int j, float cout) {
+		for (int f = 0; f < nbFront; f++) {
+			int k = front[f] + 1;
+			int indice = k * largeur + j;
+			float c = coutsFront[f] + cout;
+			if (c < labels[indice]) {
+				labels[indice] = c;
+				predecesseurs[indice] = i;
+				if (k < premieres[j])
+					premieres[j] = k;
+				if (k > dernieres[j])
+					dernieres[j] = k;
+			}
+		}
+	}
+}
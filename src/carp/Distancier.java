@@ -0,0 +1,353 @@
+package carp;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Matrice des plus courtes distances entre les noeuds d'un {@link GrapheCARP}.
+ * Les noeuds y sont numérotés à partir de 0.
+ * </p>
+ * <p>
+ * Les distances sont rangées ligne par ligne dans un seul bloc contigu :
+ * un tableau <code>float[]</code> sur le tas, ou un {@link FloatBuffer} hors
+ * du tas pour les grandes instances (voir {@link #creer(int)}).
+ * </p>
+ *
+ * @version 2012
+ * @see ProblemeCARP#initialiserDistancier()
+ */
+public abstract class Distancier {
+
+	/**
+	 * Nombre de cases au-delà duquel {@link #creer(int)} range les
+	 * distances hors du tas (64 Mo de distances).
+	 */
+	public static final long SEUIL_HORS_TAS = 1L << 24;
+
+	protected final int nbNoeuds;
+
+	/**
+	 * <p>Instancie un {@link Distancier} vide.
+	 *
+	 * @param nbNoeuds le nombre de noeuds du graphe
+	 * @since 2012
+	 */
+	protected Distancier(int nbNoeuds) {
+		this.nbNoeuds = nbNoeuds;
+	}
+
+	/**
+	 * <p>
+	 * Crée un {@link Distancier} contenant les distances d'une matrice carrée,
+	 * rangé sur le tas ou hors du tas selon {@link #SEUIL_HORS_TAS}.
+	 * </p>
+	 *
+	 * @param matrice
+	 *		les distances, <code>matrice[i][j]</code> étant la distance de i à j
+	 * @return un {@link Distancier} contenant une copie de la matrice
+	 * @since 2012
+	 */
+	public static Distancier creer(float[][] matrice) {
+		int n = matrice.length;
+		Distancier d = creer(n);
+
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < n; j++)
+				d.setDistance(i, j, matrice[i][j]);
+
+		return d;
+	}
+
+	/**
+	 * <p>
+	 * Crée un {@link Distancier} rempli de zéros, rangé sur le tas ou hors du
+	 * tas selon {@link #SEUIL_HORS_TAS}.
+	 * </p>
+	 *
+	 * @param nbNoeuds le nombre de noeuds du graphe
+	 * @return un {@link Distancier} vide
+	 * @since 2012
+	 */
+	public static Distancier creer(int nbNoeuds) {
+		return creer(nbNoeuds, nbNoeuds);
+	}
+
+	/**
+	 * <p>
+	 * Crée un {@link Distancier} rempli de zéros ne contenant que les
+	 * distances depuis les nbLignes premiers noeuds, rangé sur le tas ou hors
+	 * du tas selon {@link #SEUIL_HORS_TAS}.
+	 * </p>
+	 *
+	 * @param nbLignes le nombre de lignes de la matrice
+	 * @param nbNoeuds le nombre de noeuds du graphe (colonnes de la matrice)
+	 * @return un {@link Distancier} vide
+	 * @since 2012
+	 */
+	public static Distancier creer(int nbLignes, int nbNoeuds) {
+		if ((long) nbLignes * nbNoeuds > SEUIL_HORS_TAS)
+			return new HorsTas(nbLignes, nbNoeuds);
+
+		return new Plat(nbLignes, nbNoeuds);
+	}
+
+	/**
+	 * <p>Retourne le nombre de noeuds du graphe.
+	 *
+	 * @return le nombre de colonnes de la matrice
+	 * @since 2012
+	 */
+	public int getNbNoeuds() {
+		return nbNoeuds;
+	}
+
+	/**
+	 * <p>Retourne la plus courte distance d'un noeud à un autre.
+	 *
+	 * @param depart le noeud de départ, numéroté à partir de 0
+	 * @param arrivee le noeud d'arrivée, numéroté à partir de 0
+	 * @return la distance de depart à arrivee
+	 * @since 2012
+	 */
+	public abstract float getDistance(int depart, int arrivee);
+
+	/**
+	 * <p>Remplace la plus courte distance d'un noeud à un autre.
+	 *
+	 * @param depart le noeud de départ, numéroté à partir de 0
+	 * @param arrivee le noeud d'arrivée, numéroté à partir de 0
+	 * @param distance la nouvelle distance de depart à arrivee
+	 * @since 2012
+	 */
+	public abstract void setDistance(int depart, int arrivee, float distance);
+
+	/**
+	 * <p>Distances rangées ligne par ligne dans un unique <code>float[]</code>.
+	 *
+	 * @since 2012
+	 */
+	public static class Plat extends Distancier {
+
+		private final float[] distances;
+
+		/**
+		 * <p>Instancie un {@link Distancier} sur le tas, rempli de zéros.
+		 *
+		 * @param nbNoeuds le nombre de noeuds du graphe
+		 * @throws IllegalArgumentException
+		 *		si la matrice ne tient pas dans un tableau (plus de 46340 noeuds)
+		 * @since 2012
+		 */
+		public Plat(int nbNoeuds) {
+			this(nbNoeuds, nbNoeuds);
+		}
+
+		/**
+		 * <p>Instancie un {@link Distancier} sur le tas de nbLignes lignes, rempli de zéros.
+		 *
+		 * @param nbLignes le nombre de lignes de la matrice
+		 * @param nbNoeuds le nombre de noeuds du graphe (colonnes de la matrice)
+		 * @throws IllegalArgumentException
+		 *		si la matrice ne tient pas dans un tableau
+		 * @since 2012
+		 */
+		public Plat(int nbLignes, int nbNoeuds) {
+			super(nbNoeuds);
+
+			if ((long) nbLignes * nbNoeuds > Integer.MAX_VALUE - 8)
+				throw new IllegalArgumentException("Trop de noeuds pour un distancier sur le tas : " + nbNoeuds);
+
+			distances = new float[nbLignes * nbNoeuds];
+		}
+
+		@Override
+		public float getDistance(int depart, int arrivee) {
+			return distances[depart * nbNoeuds + arrivee];
+		}
+
+		@Override
+		public void setDistance(int depart, int arrivee, float distance) {
+			distances[depart * nbNoeuds + arrivee] = distance;
+		}
+
+		/**
+		 * <p>
+		 * Retourne le tableau des distances, la distance de i à j étant à
+		 * l'indice <code>i * nbNoeuds + j</code>.
+		 * </p>
+		 *
+		 * @return le tableau des distances, à ne pas modifier
+		 * @since 2012
+		 */
+		float[] getDistances() {
+			return distances;
+		}
+	}
+
+	/**
+	 * <p>
+	 * Distances rangées ligne par ligne dans des {@link FloatBuffer} directs,
+	 * hors du tas : elles ne comptent pas dans la taille maximale du tas et
+	 * ne sont jamais déplacées par le ramasse-miettes. La matrice est découpée
+	 * en blocs de 2^28 distances (1 Go) pour dépasser la limite de taille d'un
+	 * buffer.
+	 * </p>
+	 *
+	 * @since 2012
+	 */
+	public static class HorsTas extends Distancier {
+
+		static final int BITS_BLOC = 28;
+		static final long MASQUE_BLOC = (1L << BITS_BLOC) - 1;
+
+		private final FloatBuffer[] blocs;
+
+		/**
+		 * <p>Instancie un {@link Distancier} hors du tas, rempli de zéros.
+		 *
+		 * @param nbNoeuds le nombre de noeuds du graphe
+		 * @since 2012
+		 */
+		public HorsTas(int nbNoeuds) {
+			this(nbNoeuds, nbNoeuds);
+		}
+
+		/**
+		 * <p>Instancie un {@link Distancier} hors du tas de nbLignes lignes, rempli de zéros.
+		 *
+		 * @param nbLignes le nombre de lignes de la matrice
+		 * @param nbNoeuds le nombre de noeuds du graphe (colonnes de la matrice)
+		 * @since 2012
+		 */
+		public HorsTas(int nbLignes, int nbNoeuds) {
+			super(nbNoeuds);
+
+			long taille = (long) nbLignes * nbNoeuds;
+			blocs = new FloatBuffer[getNbBlocs(taille)];
+			for (int b = 0; b < blocs.length; b++)
+				blocs[b] = ByteBuffer.allocateDirect(getTailleBloc(taille, b) * 4)
+						.order(ByteOrder.nativeOrder()).asFloatBuffer();
+		}
+
+		/**
+		 * <p>
+		 * Instancie un {@link Distancier} sur des blocs déjà remplis, par
+		 * exemple projetés en mémoire depuis un fichier.
+		 * </p>
+		 *
+		 * @param nbNoeuds le nombre de noeuds du graphe (colonnes de la matrice)
+		 * @param blocs les distances, découpées comme par {@link #getTailleBloc(long, int)}
+		 * @since 2012
+		 * @see CacheDistancier
+		 */
+		HorsTas(int nbNoeuds, FloatBuffer[] blocs) {
+			super(nbNoeuds);
+			this.blocs = blocs;
+		}
+
+		/**
+		 * <p>Retourne le nombre de blocs nécessaires pour ranger une matrice.
+		 *
+		 * @param taille le nombre de distances de la matrice
+		 * @return le nombre de blocs
+		 * @since 2012
+		 */
+		static int getNbBlocs(long taille) {
+			return (int) ((taille + MASQUE_BLOC) >>> BITS_BLOC);
+		}
+
+		/**
+		 * <p>Retourne le nombre de distances d'un bloc.
+		 *
+		 * @param taille le nombre de distances de la matrice
+		 * @param bloc le numéro du bloc
+		 * @return le nombre de distances rangées dans ce bloc
+		 * @since 2012
+		 */
+		static int getTailleBloc(long taille, int bloc) {
+			return (int) Math.min(taille - ((long) bloc << BITS_BLOC), 1L << BITS_BLOC);
+		}
+
+		@Override
+		public float getDistance(int depart, int arrivee) {
+			long indice = (long) depart * nbNoeuds + arrivee;
+			return blocs[(int) (indice >>> BITS_BLOC)].get((int) (indice & MASQUE_BLOC));
+		}
+
+		@Override
+		public void setDistance(int depart, int arrivee, float distance) {
+			long indice = (long) depart * nbNoeuds + arrivee;
+			blocs[(int) (indice >>> BITS_BLOC)].put((int) (indice & MASQUE_BLOC), distance);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Distances depuis une partie seulement des noeuds : une ligne n'existe
+	 * que pour les noeuds sources donnés à la construction. Le graphe étant
+	 * supposé non orienté, une distance dont le départ n'a pas de ligne est
+	 * lue dans la ligne de l'arrivée.
+	 * </p>
+	 *
+	 * @since 2012
+	 * @see ConstructeurDistancier#construirePourTaches(carp.GrapheCARP, int)
+	 */
+	public static class Lignes extends Distancier {
+
+		private final int[] lignesParNoeud;
+		private final Distancier lignes;
+
+		/**
+		 * <p>Instancie un {@link Distancier} réduit, rempli de zéros.
+		 *
+		 * @param nbNoeuds le nombre de noeuds du graphe
+		 * @param sources les noeuds qui possèdent une ligne, dans l'ordre des lignes
+		 * @since 2012
+		 */
+		public Lignes(int nbNoeuds, int[] sources) {
+			super(nbNoeuds);
+
+			lignesParNoeud = new int[nbNoeuds];
+			Arrays.fill(lignesParNoeud, -1);
+			for (int k = 0; k < sources.length; k++)
+				lignesParNoeud[sources[k]] = k;
+
+			lignes = creer(sources.length, nbNoeuds);
+		}
+
+		/**
+		 * <p>Retourne les lignes du distancier, la k-ième étant celle de la k-ième source.
+		 *
+		 * @return un {@link Distancier} de sources.length lignes
+		 * @since 2012
+		 */
+		Distancier getLignes() {
+			return lignes;
+		}
+
+		@Override
+		public float getDistance(int depart, int arrivee) {
+			int ligne = lignesParNoeud[depart];
+			if (ligne >= 0)
+				return lignes.getDistance(ligne, arrivee);
+
+			ligne = lignesParNoeud[arrivee];
+			if (ligne >= 0)
+				return lignes.getDistance(ligne, depart);
+
+			throw new IllegalArgumentException("Aucune ligne pour les noeuds " + depart + " et " + arrivee);
+		}
+
+		@Override
+		public void setDistance(int depart, int arrivee, float distance) {
+			int ligne = lignesParNoeud[depart];
+			if (ligne < 0)
+				throw new IllegalArgumentException("Aucune ligne pour le noeud " + depart);
+
+			lignes.setDistance(ligne, arrivee, distance);
+		}
+	}
+}
@@ -0,0 +1,342 @@
+package carp;
+
+/**
+ * <p>
+ * Distances à vide entre les tâches d'un {@link GrapheCARP}, calculées une
+ * fois pour toutes à partir du {@link Distancier} des noeuds.
+ * </p>
+ * <p>
+ * Chaque tâche t peut être parcourue dans deux sens, d'où deux états :
+ * <code>2t</code> (du départ vers l'arrivée) et <code>2t+1</code> (de
+ * l'arrivée vers le départ). La distance d'un état e1 à un état e2 est celle
+ * qui sépare la fin de la tâche e1 du début de la tâche e2. La table fait
+ * donc 2T x 2T cases, T étant le nombre de tâches, auxquelles s'ajoutent les
+ * trajets depuis et vers le dépôt.
+ * </p>
+ * <p>
+ * Le problème peut compter plusieurs dépôts : chaque tournée part alors du
+ * dépôt le plus proche de sa première tâche et rentre au dépôt le plus
+ * proche de sa dernière. Ces plus proches dépôts sont calculés une fois par
+ * état, la découpe lit donc toujours une seule distance par trajet.
+ * </p>
+ * <p>
+ * Un {@link DistancierTaches} n'est jamais modifié et peut être lu par
+ * plusieurs threads. Changer de dépôts en crée un nouveau, qui partage la
+ * table entre tâches (voir {@link #avecDepots(carp.Distancier, int[])}).
+ * </p>
+ * <p>
+ * Au-delà de {@link #SEUIL_TABLE} cases, la table n'est pas construite et
+ * les distances entre tâches sont lues dans le {@link Distancier} des noeuds.
+ * </p>
+ *
+ * @version 2012
+ * @see ProblemeCARP#getDistancierTaches()
+ */
+public class DistancierTaches {
+
+	/**
+	 * Nombre maximal de cases de la table entre tâches (64 Mo de distances,
+	 * soit un peu plus de 2000 tâches).
+	 */
+	public static final long SEUIL_TABLE = 1L << 24;
+
+	private final int[] departs;
+	private final int[] arrivees;
+	private final int[] fins;
+	private final Distancier distancier;
+	private final Distancier entreTaches;
+	private final float[] depuisDepot;
+	private final float[] versDepot;
+	private final int[] depotsDepart;
+	private final int[] depotsArrivee;
+
+	/**
+	 * <p>Construit la table des distances entre les tâches d'un graphe.
+	 *
+	 * @param graphe
+	 *		le {@link GrapheCARP} dont les tâches sont reliées
+	 * @param distancier
+	 *		les plus courtes distances entre les noeuds de graphe
+	 * @param noeudDepot
+	 *		le noeud du dépôt, numéroté à partir de 0
+	 * @since 2012
+	 */
+	public DistancierTaches(GrapheCARP graphe, Distancier distancier, int noeudDepot) {
+		this(graphe, distancier, new int[] { noeudDepot });
+	}
+
+	/**
+	 * <p>Construit la table des distances entre les tâches d'un graphe à plusieurs dépôts.
+	 *
+	 * @param graphe
+	 *		le {@link GrapheCARP} dont les tâches sont reliées
+	 * @param distancier
+	 *		les plus courtes distances entre les noeuds de graphe
+	 * @param noeudsDepots
+	 *		les noeuds des dépôts, numérotés à partir de 0 (au moins un)
+	 * @throws IllegalArgumentException si aucun dépôt n'est donné
+	 * @since 2012
+	 * @see #avecDepots(carp.Distancier, int[])
+	 */
+	public DistancierTaches(GrapheCARP graphe, Distancier distancier, int[] noeudsDepots) {
+		departs = graphe.getDeparts();
+		arrivees = graphe.getArrivees();
+
+		this.distancier = distancier;
+
+		int nbEtats = 2 * graphe.getNbTaches();
+		fins = new int[nbEtats];
+		for (int e = 0; e < nbEtats; e++)
+			fins[e] = getFin(e);
+
+		if ((long) nbEtats * nbEtats <= SEUIL_TABLE) {
+			entreTaches = Distancier.creer(nbEtats);
+			for (int e1 = 0; e1 < nbEtats; e1++) {
+				int fin = getFin(e1);
+				for (int e2 = 0; e2 < nbEtats; e2++)
+					entreTaches.setDistance(e1, e2, distancier.getDistance(fin, getDebut(e2)));
+			}
+		} else
+			entreTaches = null;
+
+		depuisDepot = new float[nbEtats];
+		versDepot = new float[nbEtats];
+		depotsDepart = new int[nbEtats];
+		depotsArrivee = new int[nbEtats];
+		calculerDepots(distancier, noeudsDepots);
+	}
+
+	/**
+	 * <p>Construit les trajets vers d'autres dépôts en partageant la table d'un distancier existant.
+	 *
+	 * @param source le {@link DistancierTaches} dont la table est reprise
+	 * @param distancier les plus courtes distances entre les noeuds du graphe
+	 * @param noeudsDepots les noeuds des dépôts, numérotés à partir de 0
+	 * @since 2012
+	 */
+	private DistancierTaches(DistancierTaches source, Distancier distancier, int[] noeudsDepots) {
+		departs = source.departs;
+		arrivees = source.arrivees;
+		fins = source.fins;
+		entreTaches = source.entreTaches;
+		this.distancier = distancier;
+
+		int nbEtats = fins.length;
+		depuisDepot = new float[nbEtats];
+		versDepot = new float[nbEtats];
+		depotsDepart = new int[nbEtats];
+		depotsArrivee = new int[nbEtats];
+		calculerDepots(distancier, noeudsDepots);
+	}
+
+	/**
+	 * <p>Retourne l'état correspondant à une tâche parcourue dans un sens donné.
+	 *
+	 * @param tache le numéro de la tâche
+	 * @param inversee <b>true</b> si la tâche est parcourue de l'arrivée vers le départ
+	 * @return l'état de la tâche, entre 0 et 2T exclu
+	 * @since 2012
+	 */
+	public static int getEtat(int tache, boolean inversee) {
+		return inversee ? 2 * tache + 1 : 2 * tache;
+	}
+
+	/**
+	 * <p>Retourne le noeud par lequel commence une tâche dans un état donné.
+	 *
+	 * @param etat l'état de la tâche
+	 * @return le noeud de début, numéroté à partir de 0
+	 * @since 2012
+	 */
+	public int getDebut(int etat) {
+		return (etat & 1) == 0 ? departs[etat >> 1] : arrivees[etat >> 1];
+	}
+
+	/**
+	 * <p>Retourne le noeud par lequel se termine une tâche dans un état donné.
+	 *
+	 * @param etat l'état de la tâche
+	 * @return le noeud de fin, numéroté à partir de 0
+	 * @since 2012
+	 */
+	public int getFin(int etat) {
+		return (etat & 1) == 0 ? arrivees[etat >> 1] : departs[etat >> 1];
+	}
+
+	/**
+	 * <p>Retourne la distance à vide de la fin d'une tâche au début d'une autre.
+	 *
+	 * @param etatDepart l'état de la tâche qui vient d'être terminée
+	 * @param etatArrivee l'état de la tâche à commencer
+	 * @return la distance à parcourir entre les deux tâches
+	 * @since 2012
+	 */
+	public float getDistance(int etatDepart, int etatArrivee) {
+		if (entreTaches == null)
+			return distancier.getDistance(getFin(etatDepart), getDebut(etatArrivee));
+
+		return entreTaches.getDistance(etatDepart, etatArrivee);
+	}
+
+	/**
+	 * <p>Retourne la distance du plus proche dépôt au début d'une tâche.
+	 *
+	 * @param etat l'état de la tâche
+	 * @return la distance du dépôt au noeud de début de la tâche
+	 * @since 2012
+	 */
+	public float getDepuisDepot(int etat) {
+		return depuisDepot[etat];
+	}
+
+	/**
+	 * <p>Retourne la distance de la fin d'une tâche au plus proche dépôt.
+	 *
+	 * @param etat l'état de la tâche
+	 * @return la distance du noeud de fin de la tâche au dépôt
+	 * @since 2012
+	 */
+	public float getVersDepot(int etat) {
+		return versDepot[etat];
+	}
+
+	/**
+	 * <p>Retourne le dépôt d'où part une tournée qui commence par une tâche.
+	 *
+	 * @param etat l'état de la première tâche de la tournée
+	 * @return le noeud du plus proche dépôt, numéroté à partir de 0
+	 * @since 2012
+	 * @see #getDepuisDepot(int)
+	 */
+	public int getDepotDepart(int etat) {
+		return depotsDepart[etat];
+	}
+
+	/**
+	 * <p>Retourne le dépôt où rentre une tournée qui finit par une tâche.
+	 *
+	 * @param etat l'état de la dernière tâche de la tournée
+	 * @return le noeud du plus proche dépôt, numéroté à partir de 0
+	 * @since 2012
+	 * @see #getVersDepot(int)
+	 */
+	public int getDepotArrivee(int etat) {
+		return depotsArrivee[etat];
+	}
+
+	/**
+	 * <p>Retourne le noeud de fin de chaque état (voir {@link #getFin(int)}).
+	 *
+	 * @return un tableau indexé par état, à ne pas modifier
+	 * @since 2012
+	 */
+	int[] getFins() {
+		return fins;
+	}
+
+	/**
+	 * <p>
+	 * Retourne la table des distances entre états, la distance de e1 à e2
+	 * étant à l'indice <code>e1 * 2T + e2</code>, si elle est construite et
+	 * rangée sur le tas.
+	 * </p>
+	 *
+	 * @return la table des distances à ne pas modifier, ou <b>null</b>
+	 * @since 2012
+	 * @see #SEUIL_TABLE
+	 */
+	float[] getTable() {
+		if (entreTaches instanceof Distancier.Plat)
+			return ((Distancier.Plat) entreTaches).getDistances();
+
+		return null;
+	}
+
+	/**
+	 * <p>Retourne la distance du plus proche dépôt au début de chaque état.
+	 *
+	 * @return un tableau indexé par état, à ne pas modifier
+	 * @since 2012
+	 * @see #getDepuisDepot(int)
+	 */
+	float[] getDepuisDepots() {
+		return depuisDepot;
+	}
+
+	/**
+	 * <p>Retourne la distance de la fin de chaque état au plus proche dépôt.
+	 *
+	 * @return un tableau indexé par état, à ne pas modifier
+	 * @since 2012
+	 * @see #getVersDepot(int)
+	 */
+	float[] getVersDepots() {
+		return versDepot;
+	}
+
+	/**
+	 * <p>
+	 * Retourne un {@link DistancierTaches} dont les trajets partent du plus
+	 * proche des nouveaux dépôts et y rentrent, pour chaque état. La table
+	 * entre tâches est partagée, le distancier courant n'est pas modifié et
+	 * peut continuer à servir aux découpes en cours.
+	 * </p>
+	 *
+	 * @param distancier
+	 *		les plus courtes distances entre les noeuds du graphe
+	 * @param noeudsDepots
+	 *		les noeuds des dépôts, numérotés à partir de 0
+	 * @return le distancier des tâches avec les nouveaux dépôts
+	 * @throws IllegalArgumentException si aucun dépôt n'est donné
+	 * @since 2012
+	 */
+	public DistancierTaches avecDepots(Distancier distancier, int[] noeudsDepots) {
+		return new DistancierTaches(this, distancier, noeudsDepots);
+	}
+
+	/**
+	 * <p>
+	 * Calcule les trajets depuis et vers le plus proche des dépôts, pour
+	 * chaque état. À distance égale, le premier dépôt de noeudsDepots est
+	 * retenu.
+	 * </p>
+	 *
+	 * @param distancier
+	 *		les plus courtes distances entre les noeuds du graphe
+	 * @param noeudsDepots
+	 *		les noeuds des dépôts, numérotés à partir de 0
+	 * @throws IllegalArgumentException si aucun dépôt n'est donné
+	 * @since 2012
+	 */
+	private void calculerDepots(Distancier distancier, int[] noeudsDepots) {
+		if (noeudsDepots.length == 0)
+			throw new IllegalArgumentException("Il faut au moins un dépôt");
+
+		for (int e = 0; e < depuisDepot.length; e++) {
+			int debut = getDebut(e);
+			int fin = getFin(e);
+			float depuis = Float.POSITIVE_INFINITY;
+			float vers = Float.POSITIVE_INFINITY;
+			int depart = noeudsDepots[0];
+			int arrivee = noeudsDepots[0];
+
+			for (int depot : noeudsDepots) {
+				float d = distancier.getDistance(depot, debut);
+				if (d < depuis) {
+					depuis = d;
+					depart = depot;
+				}
+				d = distancier.getDistance(fin, depot);
+				if (d < vers) {
+					vers = d;
+					arrivee = depot;
+				}
+			}
+
+			depuisDepot[e] = depuis;
+			versDepot[e] = vers;
+			depotsDepart[e] = depart;
+			depotsArrivee[e] = arrivee;
+		}
+	}
+}
@@ -0,0 +1,263 @@
+package carp;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Tableaux de travail réutilisés d'une découpe à l'autre par un même thread,
+ * pour éviter de les réallouer à chaque évaluation. Leur taille suit la plus
+ * grande {@link SolutionCARP} rencontrée.
+ * </p>
+ *
+ * @version 2012
+ * @see ProblemeCARP#split(carp.SolutionCARP)
+ */
+class EspaceTravail {
+
+	private static final ThreadLocal<EspaceTravail> ESPACES = new ThreadLocal<EspaceTravail>() {
+		@Override
+		protected EspaceTravail initialValue() {
+			return new EspaceTravail();
+		}
+	};
+
+	private float[] labels = new float[0];
+	private int[] predecesseurs = new int[0];
+	private boolean[] inversions = new boolean[0];
+	private int[] sequence = new int[0];
+	private float[] tournees = new float[0];
+	private boolean[] choix = new boolean[0];
+	private long[] tachesVues = new long[0];
+
+	// Découpe à flotte limitée : labels par nombre de tournées et labels non dominés d'un noeud
+	private float[] labelsFlotte = new float[0];
+	private int[] predecesseursFlotte = new int[0];
+	private int[] premieresTournees = new int[0];
+	private int[] dernieresTournees = new int[0];
+	private int[] tourneesRestantes = new int[0];
+	private int[] front = new int[0];
+	private float[] coutsFront = new float[0];
+
+	/**
+	 * <p>Retourne l'espace de travail du thread courant.
+	 *
+	 * @return l'{@link EspaceTravail} propre au thread courant
+	 * @since 2012
+	 */
+	static EspaceTravail courant() {
+		return ESPACES.get();
+	}
+
+	/**
+	 * <p>
+	 * S'assure que les tableaux peuvent contenir le graphe auxiliaire d'une
+	 * solution de <code>nbTaches</code> tâches (soit nbTaches+1 noeuds).
+	 * </p>
+	 *
+	 * @param nbTaches
+	 *		le nombre de tâches de la solution à découper
+	 * @return l'espace de travail lui-même
+	 * @since 2012
+	 */
+	EspaceTravail reserver(int nbTaches) {
+		if (labels.length < nbTaches + 1) {
+			labels = new float[nbTaches + 1];
+			predecesseurs = new int[nbTaches + 1];
+			inversions = new boolean[nbTaches + 1];
+			sequence = new int[nbTaches + 1];
+			tournees = new float[nbTaches + 1];
+			choix = new boolean[nbTaches + 1];
+		}
+
+		return this;
+	}
+
+	/**
+	 * <p>
+	 * S'assure que les tableaux de la découpe à flotte limitée peuvent
+	 * contenir une solution de nbTaches tâches découpée en au plus
+	 * nbTournees tournées.
+	 * </p>
+	 *
+	 * @param nbTaches le nombre de tâches de la solution à découper
+	 * @param nbTournees le nombre maximal de tournées
+	 * @return l'espace de travail lui-même
+	 * @throws IllegalArgumentException si les labels ne tiennent pas dans un tableau
+	 * @since 2012
+	 * @see DecoupeFlotteLimitee
+	 */
+	EspaceTravail reserverFlotte(int nbTaches, int nbTournees) {
+		long taille = (long) (nbTournees + 1) * (nbTaches + 1);
+		if (taille > Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException("Trop de tournées pour la découpe à flotte limitée : " + nbTournees);
+
+		if (labelsFlotte.length < taille) {
+			labelsFlotte = new float[(int) taille];
+			predecesseursFlotte = new int[(int) taille];
+		}
+		if (premieresTournees.length < nbTaches + 1) {
+			premieresTournees = new int[nbTaches + 1];
+			dernieresTournees = new int[nbTaches + 1];
+			tourneesRestantes = new int[nbTaches + 1];
+		}
+		if (front.length < nbTournees + 1) {
+			front = new int[nbTournees + 1];
+			coutsFront = new float[nbTournees + 1];
+		}
+
+		return this;
+	}
+
+	/**
+	 * <p>Retourne les labels par nombre de tournées, rangés par seau : (k, j) en k*(nbTaches+1)+j.
+	 *
+	 * @return un tableau d'au moins (nbTournees+1)*(nbTaches+1) cases
+	 * @since 2012
+	 */
+	float[] getLabelsFlotte() {
+		return labelsFlotte;
+	}
+
+	/**
+	 * <p>Retourne les prédécesseurs des labels par nombre de tournées.
+	 *
+	 * @return un tableau d'au moins (nbTournees+1)*(nbTaches+1) cases
+	 * @since 2012
+	 */
+	int[] getPredecesseursFlotte() {
+		return predecesseursFlotte;
+	}
+
+	/**
+	 * <p>Retourne le plus petit nombre de tournées de chaque noeud qui porte un label.
+	 *
+	 * @return un tableau d'au moins nbTaches+1 cases
+	 * @since 2012
+	 */
+	int[] getPremieresTournees() {
+		return premieresTournees;
+	}
+
+	/**
+	 * <p>Retourne le plus grand nombre de tournées de chaque noeud qui porte un label.
+	 *
+	 * @return un tableau d'au moins nbTaches+1 cases
+	 * @since 2012
+	 */
+	int[] getDernieresTournees() {
+		return dernieresTournees;
+	}
+
+	/**
+	 * <p>Retourne le nombre minimum de tournées nécessaires après chaque noeud.
+	 *
+	 * @return un tableau d'au moins nbTaches+1 cases
+	 * @since 2012
+	 */
+	int[] getTourneesRestantes() {
+		return tourneesRestantes;
+	}
+
+	/**
+	 * <p>Retourne le nombre de tournées des labels non dominés d'un noeud.
+	 *
+	 * @return un tableau d'au moins nbTournees+1 cases
+	 * @since 2012
+	 */
+	int[] getFront() {
+		return front;
+	}
+
+	/**
+	 * <p>Retourne le coût des labels non dominés d'un noeud.
+	 *
+	 * @return un tableau d'au moins nbTournees+1 cases
+	 * @since 2012
+	 */
+	float[] getCoutsFront() {
+		return coutsFront;
+	}
+
+	/**
+	 * <p>Retourne les labels du plus court chemin dans le graphe auxiliaire.
+	 *
+	 * @return un tableau d'au moins nbTaches+1 cases
+	 * @since 2012
+	 */
+	float[] getLabels() {
+		return labels;
+	}
+
+	/**
+	 * <p>Retourne les prédécesseurs du plus court chemin dans le graphe auxiliaire.
+	 *
+	 * @return un tableau d'au moins nbTaches+1 cases
+	 * @since 2012
+	 */
+	int[] getPredecesseurs() {
+		return predecesseurs;
+	}
+
+	/**
+	 * <p>Retourne le sens de parcours des tâches, lorsqu'il n'est pas conservé.
+	 *
+	 * @return un tableau d'au moins nbTaches cases
+	 * @since 2012
+	 */
+	boolean[] getInversions() {
+		return inversions;
+	}
+
+	/**
+	 * <p>Retourne le coût des tournées partant d'une même tâche.
+	 *
+	 * @return un tableau d'au moins nbTaches cases
+	 * @since 2012
+	 * @see OrientationOptimale
+	 */
+	float[] getTournees() {
+		return tournees;
+	}
+
+	/**
+	 * <p>Retourne les choix de sens mémorisés pour orienter une tournée.
+	 *
+	 * @return un tableau d'au moins nbTaches cases
+	 * @since 2012
+	 * @see OrientationOptimale
+	 */
+	boolean[] getChoix() {
+		return choix;
+	}
+
+	/**
+	 * <p>
+	 * Retourne un ensemble de bits vide, indexé par numéro de tâche, pour
+	 * marquer les tâches déjà rencontrées dans une solution.
+	 * </p>
+	 *
+	 * @param nbTaches le nombre de tâches du graphe
+	 * @return un tableau d'au moins (nbTaches+63)/64 mots, tous nuls
+	 * @since 2012
+	 * @see ProblemeCARP#estRealisable(seisco.probleme.Solution)
+	 */
+	long[] getTachesVues(int nbTaches) {
+		int nbMots = (nbTaches + 63) >>> 6;
+		if (tachesVues.length < nbMots)
+			tachesVues = new long[nbMots];
+		else
+			Arrays.fill(tachesVues, 0, nbMots, 0L);
+
+		return tachesVues;
+	}
+
+	/**
+	 * <p>Retourne la tournée géante à découper, lorsqu'elle n'est pas conservée.
+	 *
+	 * @return un tableau d'au moins nbTaches cases
+	 * @since 2012
+	 */
+	int[] getSequence() {
+		return sequence;
+	}
+}
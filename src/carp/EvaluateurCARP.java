@@ -0,0 +1,61 @@
+package carp;
+
+/**
+ * <p>
+ * Moteur d'évaluation des {@link SolutionCARP} d'un {@link ProblemeCARP},
+ * utilisé par {@link ProblemeCARP#fonctionObjectif(seisco.probleme.Solution)}
+ * et par l'évaluation des populations.
+ * </p>
+ * <p>
+ * Un évaluateur doit donner le même coût que l'évaluateur de référence
+ * ({@link EvaluateursCARP#REFERENCE}, c'est-à-dire
+ * {@link ProblemeCARP#split(carp.SolutionCARP)}) en respectant les options du
+ * problème (flotte limitée, pénalité, orientation, dépôts). Il ne reçoit que
+ * des solutions réalisables et peut être appelé par plusieurs threads en
+ * même temps. Les évaluateurs sont déclarés dans {@link EvaluateursCARP},
+ * directement ou comme service
+ * (<code>META-INF/services/carp.EvaluateurCARP</code>).
+ * </p>
+ *
+ * @version 2012
+ * @see ProblemeCARP#setEvaluateur(carp.EvaluateurCARP)
+ * @see ProblemeCARP#setVerificationEvaluateur(boolean)
+ */
+public interface EvaluateurCARP {
+
+	/**
+	 * <p>Retourne le nom sous lequel l'évaluateur est enregistré.
+	 *
+	 * @return le nom de l'évaluateur
+	 * @since 2012
+	 * @see EvaluateursCARP#trouver(java.lang.String)
+	 */
+	String getNom();
+
+	/**
+	 * <p>
+	 * Évalue une solution comme {@link ProblemeCARP#split(carp.SolutionCARP)} :
+	 * son {@link ResultatCARP} et le sens de parcours de ses tâches sont
+	 * remplacés.
+	 * </p>
+	 *
+	 * @param probleme le problème auquel appartient la solution
+	 * @param sol une {@link SolutionCARP} réalisable
+	 * @return le coût de la solution
+	 * @since 2012
+	 */
+	float evaluer(ProblemeCARP probleme, SolutionCARP sol);
+
+	/**
+	 * <p>
+	 * Calcule le coût d'une solution comme
+	 * {@link ProblemeCARP#evaluerCout(carp.SolutionCARP)}, sans la modifier.
+	 * </p>
+	 *
+	 * @param probleme le problème auquel appartient la solution
+	 * @param sol une {@link SolutionCARP} réalisable
+	 * @return le coût de la solution
+	 * @since 2012
+	 */
+	float evaluerCout(ProblemeCARP probleme, SolutionCARP sol);
+}
@@ -0,0 +1,61 @@
+package carp;
+
+/**
+ * <p>
+ * {@link EvaluateurCARP} capable d'évaluer plusieurs solutions d'un même
+ * problème en un seul appel, par exemple en découpant une solution par
+ * voie d'un registre vectoriel.
+ * </p>
+ * <p>
+ * {@link ProblemeCARP#evaluerPopulation(java.util.List)} et
+ * {@link ProblemeCARP#evaluerCoutsPopulation(java.util.List)} lui confient
+ * la population par groupes de {@link #getTailleGroupe()} solutions
+ * réalisables, sauf si le cache des évaluations est activé (pour
+ * l'évaluation complète) ou si un seuil est donné. Chaque coût doit être
+ * celui que donnerait {@link #evaluer(carp.ProblemeCARP, carp.SolutionCARP)}
+ * ou {@link #evaluerCout(carp.ProblemeCARP, carp.SolutionCARP)} pour la
+ * solution seule.
+ * </p>
+ *
+ * @version 2012
+ * @see EvaluateursCARP
+ */
+public interface EvaluateurGroupeCARP extends EvaluateurCARP {
+
+	/**
+	 * <p>Retourne le nombre de solutions que l'évaluateur traite au mieux en un appel.
+	 *
+	 * @return la taille d'un groupe, au moins 1
+	 * @since 2012
+	 */
+	int getTailleGroupe();
+
+	/**
+	 * <p>
+	 * Évalue un groupe de solutions comme
+	 * {@link #evaluer(carp.ProblemeCARP, carp.SolutionCARP)} : le
+	 * {@link ResultatCARP} et le sens de parcours des tâches de chacune sont
+	 * remplacés.
+	 * </p>
+	 *
+	 * @param probleme le problème auquel appartiennent les solutions
+	 * @param solutions des {@link SolutionCARP} réalisables
+	 * @param couts reçoit le coût de chaque solution, dans l'ordre de solutions
+	 * @since 2012
+	 */
+	void evaluerGroupe(ProblemeCARP probleme, SolutionCARP[] solutions, float[] couts);
+
+	/**
+	 * <p>
+	 * Calcule le coût d'un groupe de solutions comme
+	 * {@link #evaluerCout(carp.ProblemeCARP, carp.SolutionCARP)}, sans les
+	 * modifier.
+	 * </p>
+	 *
+	 * @param probleme le problème auquel appartiennent les solutions
+	 * @param solutions des {@link SolutionCARP} réalisables
+	 * @param couts reçoit le coût de chaque solution, dans l'ordre de solutions
+	 * @since 2012
+	 */
+	void evaluerCoutsGroupe(ProblemeCARP probleme, SolutionCARP[] solutions, float[] couts);
+}
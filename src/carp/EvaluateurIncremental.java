@@ -0,0 +1,596 @@
+package carp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import seisco.util.graphe.Arc;
+
+/**
+ * <p>
+ * Évalue les mouvements d'une recherche locale (échange, déplacement et
+ * inversion de tâches) sur la tournée géante d'une {@link SolutionCARP} sans
+ * refaire toute la découpe.
+ * </p>
+ * <p>
+ * L'évaluateur conserve, pour chaque position de départ i, les tournées du
+ * graphe auxiliaire qui en partent (coût et sens de parcours des tâches),
+ * les labels du plus court chemin depuis le dépôt et ceux du plus court
+ * chemin vers la fin de la tournée géante. Un mouvement ne recalcule que les
+ * tournées dont il modifie les tâches lues ou le sens de départ des tâches,
+ * puis joint les labels avant et après cette fenêtre. Cette jonction somme
+ * les coûts des tournées dans un autre ordre que la découpe : le coût d'un
+ * mouvement en attente peut s'écarter de celui de
+ * {@link ProblemeCARP#split(int[])} d'au plus {@link #getTolerance(float)}.
+ * Une fois le mouvement validé, les labels sont recalculés dans l'ordre de
+ * la découpe et {@link #getCout()} lui est identique au bit près.
+ * </p>
+ * <p>
+ * Un seul mouvement est en attente à la fois : il est conservé par
+ * {@link #valider()} et oublié par {@link #annuler()} ou par l'évaluation
+ * d'un autre mouvement. Un évaluateur ne doit être utilisé que par un seul
+ * thread.
+ * </p>
+ * <p>
+ * L'évaluateur reproduit la découpe sans limite du nombre de tournées, avec
+ * le sens de parcours glouton. Il ne peut pas être créé pour un problème
+ * dont la flotte est limitée ou pénalisée, ou qui oriente au mieux ses
+ * tournées : son coût serait différent de celui de
+ * {@link ProblemeCARP#split(carp.SolutionCARP)}.
+ * </p>
+ *
+ * @version 2012
+ * @see ProblemeCARP#split(carp.SolutionCARP)
+ */
+public class EvaluateurIncremental {
+
+	private final SolutionCARP solution;
+	private final int nbTaches;
+	private final float[] couts;
+	private final float[] demandes;
+	private final DistancierTaches entreTaches;
+	private final float capacite;
+
+	// Tournée géante courante
+	private final int[] sequence;
+	private final Arc[] arcs;
+
+	// Tournées partant de chaque position : coût de l'arc (i, i+1+m) et sens de la tâche i+m
+	private final float[][] tournees;
+	private final boolean[][] sens;
+	private int porteeMax;
+
+	// Plus courts chemins depuis le noeud 0 et vers le noeud nbTaches du graphe auxiliaire
+	private final float[] labels;
+	private final int[] predecesseurs;
+	private final float[] restants;
+
+	// Mouvement en attente : la position debutFenetre+k reçoit l'ancienne position origines[k]
+	private boolean enAttente;
+	private int debutFenetre = -1;
+	private int finFenetre = -2;
+	private final int[] origines;
+	private final int[] fenetre;
+	private int premierDepart;
+	private int dernierDepart;
+
+	// Tableaux de travail des tournées recalculées
+	private final int[] nbTournees;
+	private final int[] debuts;
+	private float[] tourneesTmp = new float[64];
+	private boolean[] sensTmp = new boolean[64];
+	private final float[] labelsTmp;
+	private final boolean[] inversions;
+	private final boolean[] inversionsAnciennes;
+
+	/**
+	 * <p>
+	 * Découpe une première fois la tournée géante de <b>sol</b> et prépare
+	 * l'évaluation de ses mouvements. Le problème doit avoir son
+	 * {@link DistancierTaches} initialisé et une capacité de camion.
+	 * </p>
+	 *
+	 * @param probleme le {@link ProblemeCARP} auquel appartient la solution
+	 * @param sol la {@link SolutionCARP} à améliorer
+	 * @throws IllegalStateException si la flotte du problème est limitée ou
+	 *		pénalisée, ou si ses tournées sont orientées au mieux
+	 * @since 2012
+	 * @see ProblemeCARP#setFlotteLimitee(boolean)
+	 * @see ProblemeCARP#setPenaliteFlotte(float)
+	 * @see ProblemeCARP#setOrientationOptimale(boolean)
+	 */
+	public EvaluateurIncremental(ProblemeCARP probleme, SolutionCARP sol) {
+		if (probleme.isFlotteLimitee() || probleme.getPenaliteFlotte() != 0)
+			throw new IllegalStateException("L'évaluateur incrémental ne gère pas la flotte limitée ni sa pénalité");
+		if (probleme.isOrientationOptimale())
+			throw new IllegalStateException("L'évaluateur incrémental ne gère pas l'orientation optimale");
+
+		GrapheCARP graphe = probleme.getGrapheCARP();
+
+		solution = sol;
+		couts = graphe.getCouts();
+		demandes = graphe.getDemandes();
+		entreTaches = probleme.getDistancierTaches();
+		capacite = (Integer) probleme.getCondition(ProblemeCARP.NOM_CONDITION_CAPACITE_CAMION).getValeur();
+
+		sequence = sol.getSequence(graphe);
+		arcs = sol.getTaches().toArray(new Arc[0]);
+		nbTaches = sequence.length;
+
+		tournees = new float[nbTaches][];
+		sens = new boolean[nbTaches][];
+		labels = new float[nbTaches + 1];
+		predecesseurs = new int[nbTaches + 1];
+		restants = new float[nbTaches + 1];
+
+		origines = new int[nbTaches];
+		fenetre = new int[nbTaches];
+		nbTournees = new int[nbTaches];
+		debuts = new int[nbTaches];
+		labelsTmp = new float[nbTaches + 1];
+		inversions = new boolean[nbTaches];
+		inversionsAnciennes = new boolean[nbTaches];
+
+		// Première découpe complète, tournée par tournée
+		for (int i = 0; i < nbTaches; i++) {
+			int nb = parcourir(i, 0);
+			tournees[i] = Arrays.copyOf(tourneesTmp, nb);
+			sens[i] = Arrays.copyOf(sensTmp, nb);
+			porteeMax = Math.max(porteeMax, nb);
+		}
+		Arrays.fill(inversions, false);
+
+		FitnessCARP.initialiserLabels(labels, predecesseurs, nbTaches);
+		recalculerLabels(0);
+		recalculerRestants(nbTaches - 1);
+	}
+
+	/**
+	 * <p>Retourne le coût de la découpe de la tournée géante courante.
+	 *
+	 * @return le coût, identique à celui de {@link ProblemeCARP#split(int[])}
+	 * @since 2012
+	 */
+	public float getCout() {
+		return predecesseurs[nbTaches] != Integer.MIN_VALUE ? labels[nbTaches] : 0;
+	}
+
+	/**
+	 * <p>
+	 * Retourne l'écart maximal entre le coût d'un mouvement en attente et
+	 * celui que donnerait {@link ProblemeCARP#split(int[])} sur la même
+	 * tournée géante. Les deux coûts somment les mêmes tournées, au plus une
+	 * par tâche, dans un ordre différent : chaque somme est à moins de
+	 * nbTaches arrondis du coût exact, et un arrondi vaut au plus l'écart
+	 * entre deux flottants consécutifs (ulp) à ce coût. La borne retenue,
+	 * <code>4 * nbTaches * Math.ulp(cout)</code>, couvre les deux sommes et
+	 * le passage éventuel à la puissance de deux supérieure.
+	 * </p>
+	 *
+	 * @param cout le coût rendu par l'évaluation d'un mouvement
+	 * @return l'écart maximal, positif ou nul
+	 * @since 2012
+	 * @see #evaluerEchange(int, int)
+	 * @see #evaluerDeplacement(int, int)
+	 * @see #evaluerInversion(int, int)
+	 */
+	public float getTolerance(float cout) {
+		return 4 * nbTaches * Math.ulp(cout);
+	}
+
+	/**
+	 * <p>Retourne le nombre de tâches de la tournée géante.
+	 *
+	 * @return le nombre de tâches
+	 * @since 2012
+	 */
+	public int getNbTaches() {
+		return nbTaches;
+	}
+
+	/**
+	 * <p>Retourne une copie de la tournée géante courante.
+	 *
+	 * @return les numéros de tâche de la tournée géante, dans l'ordre de parcours
+	 * @since 2012
+	 * @see GrapheCARP#getIndice(seisco.util.graphe.Arc)
+	 */
+	public int[] getSequence() {
+		return sequence.clone();
+	}
+
+	/**
+	 * <p>Évalue l'échange des tâches aux positions <b>a</b> et <b>b</b>.
+	 *
+	 * @param a position d'une tâche
+	 * @param b position de l'autre tâche
+	 * @return le coût de la tournée géante après l'échange, à
+	 *		{@link #getTolerance(float)} près
+	 * @since 2012
+	 */
+	public float evaluerEchange(int a, int b) {
+		int debut = Math.min(a, b);
+		int fin = Math.max(a, b);
+		for (int k = debut; k <= fin; k++)
+			origines[k - debut] = k;
+		origines[0] = fin;
+		origines[fin - debut] = debut;
+
+		return evaluer(debut, fin);
+	}
+
+	/**
+	 * <p>
+	 * Évalue le déplacement de la tâche en position <b>depuis</b> vers la
+	 * position <b>vers</b>, les tâches intermédiaires étant décalées d'un cran.
+	 * </p>
+	 *
+	 * @param depuis position actuelle de la tâche
+	 * @param vers position de la tâche après le déplacement
+	 * @return le coût de la tournée géante après le déplacement, à
+	 *		{@link #getTolerance(float)} près
+	 * @since 2012
+	 */
+	public float evaluerDeplacement(int depuis, int vers) {
+		int debut = Math.min(depuis, vers);
+		int fin = Math.max(depuis, vers);
+		if (depuis < vers) {
+			for (int k = debut; k < fin; k++)
+				origines[k - debut] = k + 1;
+			origines[fin - debut] = depuis;
+		} else {
+			for (int k = debut + 1; k <= fin; k++)
+				origines[k - debut] = k - 1;
+			origines[0] = depuis;
+		}
+
+		return evaluer(debut, fin);
+	}
+
+	/**
+	 * <p>
+	 * Évalue l'inversion de l'ordre des tâches entre les positions <b>a</b>
+	 * et <b>b</b> incluses (mouvement 2-opt). Le sens de parcours des tâches
+	 * reste choisi par la découpe.
+	 * </p>
+	 *
+	 * @param a première position du segment
+	 * @param b dernière position du segment
+	 * @return le coût de la tournée géante après l'inversion, à
+	 *		{@link #getTolerance(float)} près
+	 * @since 2012
+	 */
+	public float evaluerInversion(int a, int b) {
+		int debut = Math.min(a, b);
+		int fin = Math.max(a, b);
+		for (int k = debut; k <= fin; k++)
+			origines[k - debut] = fin - (k - debut);
+
+		return evaluer(debut, fin);
+	}
+
+	/**
+	 * <p>
+	 * Conserve le dernier mouvement évalué. Les tournées recalculées
+	 * remplacent les anciennes, puis les labels sont mis à jour à partir de
+	 * la fenêtre modifiée.
+	 * </p>
+	 *
+	 * @return le coût exact de la nouvelle tournée géante
+	 * @throws IllegalStateException si aucun mouvement n'est en attente
+	 * @since 2012
+	 */
+	public float valider() {
+		if (!enAttente)
+			throw new IllegalStateException("Aucun mouvement à valider");
+
+		int longueurFenetre = finFenetre - debutFenetre + 1;
+		Arc[] arcsFenetre = new Arc[longueurFenetre];
+		for (int k = 0; k < longueurFenetre; k++)
+			arcsFenetre[k] = arcs[origines[k]];
+		System.arraycopy(arcsFenetre, 0, arcs, debutFenetre, longueurFenetre);
+		System.arraycopy(fenetre, 0, sequence, debutFenetre, longueurFenetre);
+
+		for (int i = premierDepart; i < dernierDepart; i++) {
+			int debut = debuts[i - premierDepart];
+			int nb = nbTournees[i - premierDepart];
+			tournees[i] = Arrays.copyOfRange(tourneesTmp, debut, debut + nb);
+			sens[i] = Arrays.copyOfRange(sensTmp, debut, debut + nb);
+		}
+
+		porteeMax = 0;
+		for (int i = 0; i < nbTaches; i++)
+			porteeMax = Math.max(porteeMax, tournees[i].length);
+
+		recalculerLabels(premierDepart);
+		recalculerRestants(dernierDepart - 1);
+		annuler();
+
+		return getCout();
+	}
+
+	/**
+	 * <p>Oublie le mouvement en attente, la tournée géante n'est pas modifiée.
+	 *
+	 * @since 2012
+	 */
+	public void annuler() {
+		enAttente = false;
+		debutFenetre = -1;
+		finFenetre = -2;
+	}
+
+	/**
+	 * <p>
+	 * Reporte la tournée géante courante dans la solution : ordre des
+	 * tâches, sens de parcours et {@link ResultatCARP}, comme le ferait
+	 * {@link ProblemeCARP#split(carp.SolutionCARP)}.
+	 * </p>
+	 *
+	 * @return le coût de la solution
+	 * @since 2012
+	 */
+	public float mettreAJourSolution() {
+		boolean[] sensFinal = new boolean[nbTaches];
+		for (int i = 0; i < nbTaches; i++)
+			for (int m = 1; m < sens[i].length; m++)
+				sensFinal[i + m] = sens[i][m];
+
+		solution.setTaches(new ArrayList<Arc>(Arrays.asList(arcs)));
+		solution.setInversions(sensFinal);
+
+		return FitnessCARP.evaluer(labels, predecesseurs, solution, sequence, couts, entreTaches);
+	}
+
+	/**
+	 * <p>
+	 * Évalue la tournée géante dans laquelle les positions <b>debut</b> à
+	 * <b>fin</b> ont reçu les tâches désignées par {@link #origines}.
+	 * </p>
+	 * <p>
+	 * Les tournées sont recalculées à partir de la première position dont
+	 * une tournée lit la fenêtre, et jusqu'à ce que, au-delà de la fenêtre,
+	 * les sens laissés aux tâches suivantes soient les mêmes qu'avant le
+	 * mouvement : les tournées suivantes sont alors inchangées. Le coût est
+	 * le minimum, sur les tournées recalculées qui franchissent cette
+	 * limite, du label de départ, du coût de la tournée et du label restant
+	 * à l'arrivée.
+	 * </p>
+	 *
+	 * @param debut première position modifiée par le mouvement
+	 * @param fin dernière position modifiée par le mouvement
+	 * @return le coût de la tournée géante après le mouvement, à
+	 *		{@link #getTolerance(float)} près, 0 si elle n'a pas de découpe
+	 */
+	private float evaluer(int debut, int fin) {
+		for (int k = debut; k <= fin; k++)
+			fenetre[k - debut] = sequence[origines[k - debut]];
+		debutFenetre = debut;
+		finFenetre = fin;
+		enAttente = true;
+
+		// Premier départ dont les tournées lisent la fenêtre
+		int depart = debut;
+		for (int t = Math.max(0, debut - porteeMax - 1); t < debut; t++)
+			if (Math.min(nbTaches - 1, t + tournees[t].length) >= debut) {
+				depart = t;
+				break;
+			}
+		premierDepart = depart;
+
+		// Sens laissés par les départs précédents, et labels qu'ils fixent au-delà
+		int premier = Math.max(0, depart - porteeMax - 1);
+		int borneLabels = depart;
+		int borneInversions = depart;
+		labelsTmp[depart] = labels[depart];
+		for (int t = premier; t < depart; t++) {
+			for (int m = 1; m < sens[t].length; m++)
+				if (t + m >= depart) {
+					inversions[t + m] = sens[t][m];
+					inversionsAnciennes[t + m] = sens[t][m];
+					borneInversions = Math.max(borneInversions, t + m + 1);
+				}
+
+			for (int m = 0; m < tournees[t].length; m++) {
+				int j = t + 1 + m;
+				if (j > depart) {
+					for (; borneLabels < j; borneLabels++)
+						labelsTmp[borneLabels + 1] = Float.POSITIVE_INFINITY;
+					float label = labels[t] + tournees[t][m];
+					if (label < labelsTmp[j])
+						labelsTmp[j] = label;
+				}
+			}
+		}
+
+		// Nouvelles tournées, jusqu'à ce que les sens laissés soient inchangés
+		int occupe = 0;
+		int nbMax = 0;
+		int i = depart;
+		for (; i < nbTaches; i++) {
+			for (; borneLabels < i; borneLabels++)
+				labelsTmp[borneLabels + 1] = Float.POSITIVE_INFINITY;
+
+			int nb = parcourir(i, occupe);
+			debuts[i - depart] = occupe;
+			nbTournees[i - depart] = nb;
+			nbMax = Math.max(nbMax, nb);
+			borneInversions = Math.max(borneInversions, i + nb);
+
+			for (int m = 0; m < nb; m++) {
+				int j = i + 1 + m;
+				for (; borneLabels < j; borneLabels++)
+					labelsTmp[borneLabels + 1] = Float.POSITIVE_INFINITY;
+				float label = labelsTmp[i] + tourneesTmp[occupe + m];
+				if (label < labelsTmp[j])
+					labelsTmp[j] = label;
+			}
+			occupe += nb;
+
+			for (int m = 1; m < sens[i].length; m++)
+				inversionsAnciennes[i + m] = sens[i][m];
+			borneInversions = Math.max(borneInversions, i + sens[i].length);
+
+			if (i >= fin && memesInversions(i + 1, borneInversions))
+				break;
+		}
+		dernierDepart = Math.min(i + 1, nbTaches);
+
+		Arrays.fill(inversions, depart, borneInversions, false);
+		Arrays.fill(inversionsAnciennes, depart, borneInversions, false);
+
+		// Jonction avec les labels restants au-delà des tournées recalculées
+		float cout;
+		if (dernierDepart == nbTaches)
+			cout = borneLabels == nbTaches ? labelsTmp[nbTaches] : Float.POSITIVE_INFINITY;
+		else {
+			cout = Float.POSITIVE_INFINITY;
+			for (int t = Math.max(depart, dernierDepart - nbMax); t < dernierDepart; t++) {
+				int debutTournees = debuts[t - depart];
+				for (int m = dernierDepart - t - 1; m < nbTournees[t - depart]; m++) {
+					float total = labelsTmp[t] + tourneesTmp[debutTournees + m] + restants[t + 1 + m];
+					if (total < cout)
+						cout = total;
+				}
+			}
+		}
+
+		return cout == Float.POSITIVE_INFINITY ? 0 : cout;
+	}
+
+	/**
+	 * <p>
+	 * Indique si les sens laissés par les tournées recalculées aux positions
+	 * <b>debut</b> à <b>fin</b> exclue sont ceux qu'elles avaient avant le
+	 * mouvement.
+	 * </p>
+	 *
+	 * @param debut première position comparée
+	 * @param fin position suivant la dernière position comparée
+	 * @return <b>true</b> si tous les sens sont inchangés
+	 */
+	private boolean memesInversions(int debut, int fin) {
+		for (int k = debut; k < fin; k++)
+			if (inversions[k] != inversionsAnciennes[k])
+				return false;
+
+		return true;
+	}
+
+	/**
+	 * <p>
+	 * Calcule les tournées partant de la position <b>i</b>, comme le fait
+	 * {@link ProblemeCARP#split(int[])}, en partant des sens courants de
+	 * {@link #inversions}. Le coût et le sens de la dernière tâche de
+	 * chaque tournée sont rangés à partir de <b>debut</b> dans les tableaux
+	 * de travail.
+	 * </p>
+	 *
+	 * @param i position de la première tâche des tournées
+	 * @param debut premier indice libre des tableaux de travail
+	 * @return le nombre de tournées viables partant de i
+	 */
+	private int parcourir(int i, int debut) {
+		int currentTask = tache(i);
+
+		float charge = demandes[currentTask];
+		if (charge > capacite)
+			return 0;
+
+		int currentEtat = DistancierTaches.getEtat(currentTask, inversions[i]);
+		float longueur = entreTaches.getDepuisDepot(currentEtat);
+		longueur += couts[currentTask];
+		reserver(debut + 1);
+		tourneesTmp[debut] = longueur + entreTaches.getVersDepot(currentEtat);
+		sensTmp[debut] = inversions[i];
+
+		int nb = 1;
+		for (int j = i + 2; j <= nbTaches; j++, nb++) {
+			int nextTask = tache(j - 1);
+
+			charge += demandes[nextTask];
+			if (charge > capacite)
+				break;
+
+			int nextEtat = DistancierTaches.getEtat(nextTask, inversions[j - 1]);
+			if (entreTaches.getFin(currentEtat) == entreTaches.getFin(nextEtat)) {
+				inversions[j - 1] = !inversions[j - 1];
+				nextEtat ^= 1;
+			}
+
+			longueur += entreTaches.getDistance(currentEtat, nextEtat);
+			longueur += couts[nextTask];
+			currentEtat = nextEtat;
+
+			reserver(debut + nb + 1);
+			tourneesTmp[debut + nb] = longueur + entreTaches.getVersDepot(currentEtat);
+			sensTmp[debut + nb] = inversions[j - 1];
+		}
+
+		return nb;
+	}
+
+	/**
+	 * <p>Retourne la tâche en <b>position</b>, mouvement en attente compris.
+	 *
+	 * @param position une position de la tournée géante
+	 * @return le numéro de la tâche
+	 */
+	private int tache(int position) {
+		if (position >= debutFenetre && position <= finFenetre)
+			return fenetre[position - debutFenetre];
+
+		return sequence[position];
+	}
+
+	/**
+	 * <p>Agrandit au besoin les tableaux de travail des tournées recalculées.
+	 *
+	 * @param taille le nombre de cases nécessaires
+	 */
+	private void reserver(int taille) {
+		if (taille > tourneesTmp.length) {
+			int nouvelleTaille = Math.max(taille, 2 * tourneesTmp.length);
+			tourneesTmp = Arrays.copyOf(tourneesTmp, nouvelleTaille);
+			sensTmp = Arrays.copyOf(sensTmp, nouvelleTaille);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Recalcule les labels des noeuds situés après <b>depuis</b>, ceux des
+	 * noeuds précédents étant inchangés. Les arcs sont relâchés dans le même
+	 * ordre que la découpe complète, ce qui donne les mêmes valeurs.
+	 * </p>
+	 *
+	 * @param depuis le dernier noeud dont le label est inchangé
+	 */
+	private void recalculerLabels(int depuis) {
+		Arrays.fill(labels, depuis + 1, nbTaches + 1, Float.POSITIVE_INFINITY);
+		Arrays.fill(predecesseurs, depuis + 1, nbTaches + 1, Integer.MIN_VALUE);
+
+		for (int t = Math.max(0, depuis - porteeMax - 1); t < nbTaches; t++)
+			for (int m = 0; m < tournees[t].length; m++)
+				if (t + 1 + m > depuis)
+					FitnessCARP.relacher(labels, predecesseurs, t, t + 1 + m, tournees[t][m]);
+	}
+
+	/**
+	 * <p>
+	 * Recalcule, de <b>depuis</b> jusqu'au noeud 0, le coût minimum pour
+	 * terminer la tournée géante à partir de chaque noeud du graphe auxiliaire.
+	 * </p>
+	 *
+	 * @param depuis le dernier noeud dont le coût restant a changé
+	 */
+	private void recalculerRestants(int depuis) {
+		restants[nbTaches] = 0;
+		for (int t = depuis; t >= 0; t--) {
+			float restant = Float.POSITIVE_INFINITY;
+			for (int m = 0; m < tournees[t].length; m++) {
+				float total = tournees[t][m] + restants[t + 1 + m];
+				if (total < restant)
+					restant = total;
+			}
+			restants[t] = restant;
+		}
+	}
+}
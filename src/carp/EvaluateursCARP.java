@@ -0,0 +1,162 @@
+package carp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * Registre des {@link EvaluateurCARP} disponibles, désignés par leur nom.
+ * </p>
+ * <p>
+ * Le registre contient toujours l'évaluateur de référence, puis les
+ * évaluateurs déclarés comme service
+ * (<code>META-INF/services/carp.EvaluateurCARP</code>) dans le classpath au
+ * premier accès, et enfin ceux ajoutés par {@link #enregistrer(carp.EvaluateurCARP)}.
+ * L'évaluateur d'un nouveau {@link ProblemeCARP} est désigné par la
+ * propriété système {@link #PROPRIETE_EVALUATEUR}, la référence par défaut.
+ * </p>
+ *
+ * @version 2012
+ * @see ProblemeCARP#setEvaluateur(java.lang.String)
+ */
+public final class EvaluateursCARP {
+
+	/** Propriété système donnant le nom de l'évaluateur par défaut. */
+	public static final String PROPRIETE_EVALUATEUR = "carp.evaluateur";
+
+	/**
+	 * Propriété système qui, à <code>true</code>, fait vérifier par défaut
+	 * chaque évaluation par la référence.
+	 */
+	public static final String PROPRIETE_VERIFICATION = "carp.evaluateur.verification";
+
+	/** Nom de l'évaluateur de référence. */
+	public static final String NOM_REFERENCE = "reference";
+
+	/**
+	 * Évaluateur de référence : {@link ProblemeCARP#split(carp.SolutionCARP)}
+	 * et {@link ProblemeCARP#evaluerCout(carp.SolutionCARP)}.
+	 */
+	public static final EvaluateurCARP REFERENCE = new EvaluateurCARP() {
+
+		@Override
+		public String getNom() {
+			return NOM_REFERENCE;
+		}
+
+		@Override
+		public float evaluer(ProblemeCARP probleme, SolutionCARP sol) {
+			return probleme.evaluerDecoupe(sol);
+		}
+
+		@Override
+		public float evaluerCout(ProblemeCARP probleme, SolutionCARP sol) {
+			return probleme.evaluerCout(sol);
+		}
+
+		@Override
+		public String toString() {
+			return NOM_REFERENCE;
+		}
+	};
+
+	private static final ConcurrentHashMap<String, EvaluateurCARP> EVALUATEURS = charger();
+
+	private EvaluateursCARP() {
+	}
+
+	/**
+	 * <p>Charge la référence et les évaluateurs déclarés comme service.
+	 *
+	 * @return le registre initial
+	 * @since 2012
+	 */
+	private static ConcurrentHashMap<String, EvaluateurCARP> charger() {
+		ConcurrentHashMap<String, EvaluateurCARP> evaluateurs = new ConcurrentHashMap<String, EvaluateurCARP>();
+		evaluateurs.put(NOM_REFERENCE, REFERENCE);
+
+		try {
+			for (EvaluateurCARP evaluateur : ServiceLoader.load(EvaluateurCARP.class))
+				if (evaluateurs.putIfAbsent(evaluateur.getNom(), evaluateur) != null)
+					System.out.println("Erreur - évaluateur " + evaluateur.getNom() + " déjà enregistré");
+		} catch (ServiceConfigurationError e) {
+			System.out.println("Erreur - chargement des évaluateurs impossible : " + e.getMessage());
+		}
+
+		return evaluateurs;
+	}
+
+	/**
+	 * <p>Ajoute un évaluateur au registre.
+	 *
+	 * @param evaluateur l'évaluateur à ajouter
+	 * @throws IllegalArgumentException si un évaluateur porte déjà ce nom
+	 * @since 2012
+	 */
+	public static void enregistrer(EvaluateurCARP evaluateur) {
+		if (EVALUATEURS.putIfAbsent(evaluateur.getNom(), evaluateur) != null)
+			throw new IllegalArgumentException("Un évaluateur s'appelle déjà " + evaluateur.getNom());
+	}
+
+	/**
+	 * <p>Retourne l'évaluateur enregistré sous un nom.
+	 *
+	 * @param nom le nom de l'évaluateur
+	 * @return l'évaluateur correspondant
+	 * @throws IllegalArgumentException si aucun évaluateur ne porte ce nom
+	 * @since 2012
+	 */
+	public static EvaluateurCARP trouver(String nom) {
+		EvaluateurCARP evaluateur = EVALUATEURS.get(nom);
+		if (evaluateur == null)
+			throw new IllegalArgumentException("Évaluateur inconnu : " + nom);
+
+		return evaluateur;
+	}
+
+	/**
+	 * <p>Retourne les noms des évaluateurs enregistrés.
+	 *
+	 * @return les noms des évaluateurs, dans un ordre quelconque
+	 * @since 2012
+	 */
+	public static List<String> getNoms() {
+		return new ArrayList<String>(EVALUATEURS.keySet());
+	}
+
+	/**
+	 * <p>
+	 * Retourne l'évaluateur désigné par {@link #PROPRIETE_EVALUATEUR}, ou la
+	 * référence si la propriété est absente ou désigne un évaluateur inconnu.
+	 * </p>
+	 *
+	 * @return l'évaluateur par défaut des nouveaux problèmes
+	 * @since 2012
+	 */
+	public static EvaluateurCARP parDefaut() {
+		String nom = System.getProperty(PROPRIETE_EVALUATEUR);
+		if (nom == null || nom.isEmpty())
+			return REFERENCE;
+
+		EvaluateurCARP evaluateur = EVALUATEURS.get(nom);
+		if (evaluateur == null) {
+			System.out.println("Erreur - évaluateur inconnu : " + nom + ", la référence est utilisée");
+			return REFERENCE;
+		}
+
+		return evaluateur;
+	}
+
+	/**
+	 * <p>Indique si {@link #PROPRIETE_VERIFICATION} demande de vérifier les évaluations.
+	 *
+	 * @return <b>true</b> si la propriété vaut <code>true</code>
+	 * @since 2012
+	 */
+	public static boolean isVerificationParDefaut() {
+		return Boolean.getBoolean(PROPRIETE_VERIFICATION);
+	}
+}
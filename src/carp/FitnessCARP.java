@@ -18,6 +18,11 @@ public class FitnessCARP {
 	 * Retourne la fitness d'une {@link SolutionCARP} en se basant sur la
 	 * solution et les différentes tournées viables de celle-ci.
 	 * </p>
+	 * <p>
+	 * Conservée pour compatibilité : {@link ProblemeCARP#split(carp.SolutionCARP)}
+	 * n'utilise plus de matrice et relâche directement les labels pendant la
+	 * découpe (voir {@link #evaluer(float[], int[], carp.SolutionCARP)}).
+	 * </p>
 	 *
 	 * @param tourneeViable
 	 *		Matrice contenant le coût des différentes tournées viables de sol
@@ -50,100 +55,122 @@ public class FitnessCARP {
 		 * Faites de même pour les suivants, et bon courage !
 		 * ————————————————————————————————————————————————————————————————————————
 		 */
-		List<Arc> taches = sol.getTaches();
-		int nbTaches = taches.size();
+		int nbTaches = sol.getTaches().size();
 
-		/*
-		 * Pour construire le résultat, nous avons besoin de deux tableaux que
-		 * nous appellerons "marques" : tabTemp Contiendra progressivement les
-		 * couts minimums des tournees viables et parfois la somme de celles-ci
-		 * si on peut les faire se succéder marqueur Contiendra les indices des
-		 * taches à récupérer dans tourneeViable Ce tableau se construit
-		 * parallèlement à tabTemp
-		 *
-		 * Pour récupérer le résultat dans tourneeViable, le tableau choix sera
-		 * construit en combinant tabTemp et marqueur. choix contiendra les
-		 * indices des tournées sélectionnées dans la matrice tourneeViable
-		 */
-		float[] tabTemp = new float[nbTaches + 1];
-		int[] marqueur = new int[nbTaches + 1];
-		int[] choix = new int[nbTaches + 1];
+		float[] labels = new float[nbTaches + 1];
+		int[] predecesseurs = new int[nbTaches + 1];
+		initialiserLabels(labels, predecesseurs, nbTaches);
 
 		/*
-		 * Initialisation des marques En gros, copie de la première ligne de
-		 * tournéeViable.
+		 * Le graphe tourneeViable est sans circuit : ses arcs vont toujours de
+		 * i vers j > i. L'ordre des indices est donc un ordre topologique, et un
+		 * seul passage sur les lignes suffit (Bellman sur un DAG) : quand la
+		 * ligne i est parcourue, le label de i est déjà définitif.
 		 */
-		Arrays.fill(marqueur, Integer.MIN_VALUE);
-		for (int i = 0; i <= nbTaches; i++) {
-			tabTemp[i] = tourneeViable[0][i];
-			if (tabTemp[i] != Float.POSITIVE_INFINITY)
-				marqueur[i] = 0;
-		}
+		for (int i = 0; i < nbTaches; i++)
+			for (int j = i + 1; j <= nbTaches; j++)
+				if (tourneeViable[i][j] != Float.POSITIVE_INFINITY)
+					relacher(labels, predecesseurs, i, j, tourneeViable[i][j]);
 
-		/*
-		 * Parcours de la matrice tourneeViable pour construire les tableaux
-		 * tabTemp et marqueur
-		 */
-		int nbVus = 0; // nombre de tournees analysees (max nbTaches)
-		while (nbVus < nbTaches) {
-			int iMin = getIndexOfNextMin(tabTemp, nbVus);
-			if (iMin == nbTaches)
-				// On a tout analysé alors…
-				nbVus = nbTaches;
-			else {
-				nbVus++;
-				for (int i = nbVus + 1; i <= nbTaches; i++)
-					// On recherche un coût minimal…
-					if (tourneeViable[iMin][i] != Float.POSITIVE_INFINITY)
-						if (tabTemp[i] > tabTemp[iMin] + tourneeViable[iMin][i])
-						{
-							tabTemp[i] = tabTemp[iMin] + tourneeViable[iMin][i];
-							marqueur[i] = iMin;
-						}
-			}
-		}
+		return evaluer(labels, predecesseurs, sol);
+	}
+
+	/**
+	 * <p>
+	 * Retourne la fitness d'une {@link SolutionCARP} à partir des labels du
+	 * plus court chemin dans le graphe auxiliaire des tournées viables, et
+	 * construit son {@link ResultatCARP}.
+	 * </p>
+	 * <p>
+	 * Le résultat ne retient que les bornes des tournées dans la liste des
+	 * tâches : les {@link Tournee} ne sont construites que si elles sont
+	 * demandées (voir {@link ResultatCARP#getTournees()}).
+	 * </p>
+	 * <p>
+	 * Le noeud j du graphe auxiliaire correspond à la fin de la j-ième tâche
+	 * de la tournée géante : la tournée (i, j) collecte donc les tâches
+	 * d'indices i à j-1.
+	 * </p>
+	 *
+	 * @param labels
+	 *		coût minimum pour atteindre chaque noeud du graphe auxiliaire
+	 *		(au moins nbTaches+1 cases)
+	 * @param predecesseurs
+	 *		prédécesseur de chaque noeud sur le plus court chemin,
+	 *		<code>Integer.MIN_VALUE</code> s'il n'y en a pas
+	 * @param sol
+	 *		La {@link SolutionCARP} à évaluer
+	 * @return le coût total minimum de la découpe en tournées de sol
+	 * @since 2012
+	 * @see #initialiserLabels(float[], int[], int)
+	 * @see #relacher(float[], int[], int, int, float)
+	 */
+	public static float evaluer(float[] labels, int[] predecesseurs, SolutionCARP sol) {
+		return evaluer(labels, predecesseurs, sol, null, null, null);
+	}
+
+	/**
+	 * <p>
+	 * Retourne la fitness d'une {@link SolutionCARP} comme
+	 * {@link #evaluer(float[], int[], carp.SolutionCARP)}, en calculant le
+	 * coût de chaque tournée à partir des distances entre tâches, dans l'ordre
+	 * des sommes de la découpe, plutôt que par la différence des labels de
+	 * ses bornes : le coût d'une tournée est ainsi exactement celui de l'arc
+	 * relâché, même quand les labels cumulés perdent en précision.
+	 * </p>
+	 *
+	 * @param labels
+	 *		coût minimum pour atteindre chaque noeud du graphe auxiliaire
+	 * @param predecesseurs
+	 *		prédécesseur de chaque noeud sur le plus court chemin
+	 * @param sol
+	 *		La {@link SolutionCARP} à évaluer, avec le sens de parcours de ses
+	 *		tâches (voir {@link SolutionCARP#getInversions()})
+	 * @param sequence
+	 *		les numéros de tâche de la tournée géante, <b>null</b> pour
+	 *		déduire les coûts des labels
+	 * @param couts
+	 *		le coût de parcours de chaque tâche
+	 * @param entreTaches
+	 *		les distances à vide entre les tâches et le dépôt
+	 * @return le coût total minimum de la découpe en tournées de sol
+	 * @since 2012
+	 */
+	static float evaluer(float[] labels, int[] predecesseurs, SolutionCARP sol, int[] sequence,
+			float[] couts, DistancierTaches entreTaches) {
+		List<Arc> taches = sol.getTaches();
+		int nbTaches = taches.size();
 
 		/*
-		 * Combinaison de tabTemp et marqueur pour construire le choix optimal
-		 * des tournées (il sera trié par ordre décroissant)
+		 * Remontée des prédécesseurs depuis le dernier noeud : le nombre de
+		 * noeuds rencontrés donne le nombre de tournées, puis une seconde
+		 * remontée range leurs bornes dans l'ordre croissant.
 		 */
-		int x = nbTaches;
-		Arrays.fill(choix, Integer.MIN_VALUE);
-		choix[0] = x;
-		for (int i = 1; i <= nbTaches; i++)
-			if (x != Integer.MIN_VALUE) {
-				choix[i] = marqueur[x];
-				x = marqueur[x];
-			}
+		int nbChoix = 0;
+		for (int x = nbTaches; x != Integer.MIN_VALUE; x = predecesseurs[x])
+			nbChoix++;
+
+		int[] bornes = new int[nbChoix];
+		for (int x = nbTaches, k = nbChoix - 1; x != Integer.MIN_VALUE; x = predecesseurs[x], k--)
+			bornes[k] = x;
+
+		float[] coutsTournees = new float[Math.max(0, nbChoix - 1)];
+		boolean[] inversions = sol.getInversions();
+		for (int k = 0; k + 1 < nbChoix; k++)
+			coutsTournees[k] = sequence == null || inversions == null
+					? labels[bornes[k + 1]] - labels[bornes[k]]
+					: coutTournee(sequence, inversions, bornes[k], bornes[k + 1], couts, entreTaches);
 
 		/*
-		 * Récupération des tournées sélectionnées et calcul du coût total
+		 * Le coût total est le label du dernier noeud, s'il a pu être atteint
+		 * (il y a alors au moins une tournée).
 		 */
 		float dist = 0;
-		int nbTrips = 0;
-		ResultatCARP resultat = new ResultatCARP();
-		for (int i = nbTaches; i > 0; i--)
-			if (choix[i] != Integer.MIN_VALUE) {
-				int a = choix[i]; // premier indice
-				int b = choix[i - 1]; // second indice
-
-				// cout total des tournees
-				dist += tourneeViable[a][b];
+		if (nbChoix > 1)
+			dist = labels[nbTaches];
 
-				// remplissage du résultat
-				resultat.nouvelleTournee();
-				for (int j = 0; j < (b - a); j++)
-					/*
-					 * NB:	(b-a) = le nombre de taches à
-					 * ———	effectuer pour la tournee courante
-					 */
-					resultat.getTournees().get(nbTrips).addTache(taches.get(a+j));
-
-				// nombre de tournees
-				nbTrips++;
-			}
-		
-                resultat.setCoutTotal(dist);
+		ResultatCARP resultat = new ResultatCARP(taches, inversions, bornes, coutsTournees);
+		resultat.setCoutTotal(dist);
 		sol.setResultat(resultat);
 
 		return dist;
@@ -151,38 +178,88 @@ public class FitnessCARP {
 
 	/**
 	 * <p>
-	 * getIndexOfNextMin permet de choisir le minimum d'un tableau de
-     * {@link Float} en évitant les toSkip premiers éléments.
+	 * Retourne le coût de la tournée collectant les tâches debut à fin-1 dans
+	 * le sens donné par inversions, les sommes étant faites dans le même
+	 * ordre que pendant la découpe.
 	 * </p>
-	 * 
-	 * @param tab
-	 *		tableau de {@link Float} initialisé
-	 * @param toSkip
-	 *		nombre des premiers éléments à ne pas prendre en compte dans tab
-	 * @return
-	 *		l'index de la valeur minimale de tab
-	 *		dans l'intervalle [toSkip, tab.length[
+	 *
+	 * @param sequence
+	 *		les numéros de tâche de la tournée géante
+	 * @param inversions
+	 *		le sens de parcours de chaque tâche
+	 * @param debut
+	 *		la position de la première tâche de la tournée
+	 * @param fin
+	 *		la position suivant la dernière tâche de la tournée
+	 * @param couts
+	 *		le coût de parcours de chaque tâche
+	 * @param entreTaches
+	 *		les distances à vide entre les tâches et le dépôt
+	 * @return le coût de la tournée
 	 * @since 2012
-	 * @see FitnessCARP#evaluer(float[][], carp.SolutionCARP) 
 	 */
-	private static int getIndexOfNextMin(float[] tab, int toSkip) {
-		/*
-		 * iMin commence à toSkip+1 car les toSkip+1 premiers éléments ont déjà
-		 * été examinés. Le +1 vient toujours du fait que la matrice
-		 * tourneeViable est décalée.
-		 */
-		int iMin = toSkip + 1;
+	static float coutTournee(int[] sequence, boolean[] inversions, int debut, int fin, float[] couts,
+			DistancierTaches entreTaches) {
+		int etat = DistancierTaches.getEtat(sequence[debut], inversions[debut]);
+		float longueur = entreTaches.getDepuisDepot(etat);
+		longueur += couts[sequence[debut]];
 
-		/*
-		 * Recherche de la valeur minimale dans le reste du tableau Extraction
-		 * de son index
-		 */
-		if (iMin < tab.length - 1)
-			for (int i = iMin + 1; i < tab.length; i++)
-				if (tab[i] < tab[iMin])
-					iMin = i;
+		for (int j = debut + 1; j < fin; j++) {
+			int suivant = DistancierTaches.getEtat(sequence[j], inversions[j]);
+			longueur += entreTaches.getDistance(etat, suivant);
+			longueur += couts[sequence[j]];
+			etat = suivant;
+		}
+
+		return longueur + entreTaches.getVersDepot(etat);
+	}
+
+	/**
+	 * <p>
+	 * Initialise les labels du graphe auxiliaire : seul le noeud 0 (le
+	 * dépôt, avant la première tâche) est atteint, avec un coût nul.
+	 * Les tableaux peuvent être plus grands que nécessaire, seules les
+	 * nbTaches+1 premières cases sont initialisées.
+	 * </p>
+	 *
+	 * @param labels
+	 *		tableau d'au moins nbTaches+1 cases à initialiser
+	 * @param predecesseurs
+	 *		tableau d'au moins nbTaches+1 cases à initialiser
+	 * @param nbTaches
+	 *		le nombre de tâches de la solution
+	 * @since 2012
+	 */
+	static void initialiserLabels(float[] labels, int[] predecesseurs, int nbTaches) {
+		Arrays.fill(labels, 0, nbTaches + 1, Float.POSITIVE_INFINITY);
+		Arrays.fill(predecesseurs, 0, nbTaches + 1, Integer.MIN_VALUE);
+		labels[0] = 0;
+	}
 
-		return iMin;
+	/**
+	 * <p>
+	 * Relâche l'arc (i, j) du graphe auxiliaire, c'est-à-dire la tournée
+	 * collectant les tâches i à j-1, de coût <code>cout</code>.
+	 * </p>
+	 *
+	 * @param labels
+	 *		les labels courants, celui de i doit être définitif
+	 * @param predecesseurs
+	 *		les prédécesseurs courants
+	 * @param i
+	 *		noeud de départ de l'arc
+	 * @param j
+	 *		noeud d'arrivée de l'arc (j > i)
+	 * @param cout
+	 *		coût de la tournée (i, j)
+	 * @since 2012
+	 */
+	static void relacher(float[] labels, int[] predecesseurs, int i, int j, float cout) {
+		float label = labels[i] + cout;
+		if (label < labels[j]) {
+			labels[j] = label;
+			predecesseurs[j] = i;
+		}
 	}
 }
 //	/**
@@ -0,0 +1,676 @@
+package carp;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import seisco.util.Condition;
+import seisco.util.graphe.Arc;
+import seisco.util.graphe.Noeud;
+
+/**
+ * <p>
+ * Génère des instances CARP synthétiques de grande taille (plusieurs
+ * dizaines de milliers de noeuds), pour les mesures de performances et les
+ * essais de montée en charge.
+ * </p>
+ * <p>
+ * Les noeuds sont placés dans le plan et le coût d'une arête est sa
+ * longueur arrondie, l'espacement moyen entre deux noeuds voisins étant de
+ * 10. Trois formes de graphe sont proposées (voir {@link Topologie}). Parmi
+ * les arêtes du graphe, <b>nbTaches</b> sont tirées au hasard pour devenir
+ * des tâches ; les autres sont des arêtes non requises, qui ne servent
+ * qu'aux trajets à vide. Le graphe produit est toujours connexe.
+ * </p>
+ * <p>
+ * Une même graine donne toujours la même instance. L'instance peut être
+ * écrite au format lu par {@link ProblemeCARP#loadFromFile(java.lang.String)}
+ * ou construite directement en mémoire. Le dépôt y porte toujours le
+ * numéro 1 : les noeuds sont renumérotés pour cela.
+ * </p>
+ *
+ * @version 2012
+ * @see LecteurCARP
+ */
+public class GenerateurCARP {
+
+	/**
+	 * <p>Forme du graphe généré.
+	 */
+	public enum Topologie {
+		/** Grille régulière, chaque noeud étant relié à ses 4 voisins. */
+		GRILLE,
+		/** Points tirés uniformément, chacun relié à ses plus proches voisins. */
+		GEOMETRIQUE,
+		/**
+		 * Grille déformée dont une partie des rues manque, traversée tous les
+		 * 8 noeuds par des axes plus rapides, à l'image d'un réseau routier.
+		 */
+		ROUTIER
+	}
+
+	/**
+	 * <p>Loi de la demande des tâches, entière et comprise entre un minimum et un maximum.
+	 */
+	public enum LoiDemande {
+		/** Toutes les tâches ont la demande minimale. */
+		CONSTANTE,
+		/** Demande uniforme entre le minimum et le maximum. */
+		UNIFORME,
+		/** Beaucoup de petites demandes et quelques grandes, tronquées au maximum. */
+		EXPONENTIELLE
+	}
+
+	/**
+	 * <p>Position du dépôt dans le plan.
+	 */
+	public enum PositionDepot {
+		/** Noeud le plus proche du centre. */
+		CENTRE,
+		/** Noeud le plus proche d'un coin. */
+		COIN,
+		/** Noeud tiré au hasard. */
+		ALEATOIRE
+	}
+
+	private static final double ESPACEMENT = 10;
+	private static final int NB_VOISINS = 4;
+	private static final int PAS_AXES = 8;
+	private static final double FACTEUR_AXES = 0.6;
+	private static final double PROBA_RUE = 0.6;
+
+	private String nom = "synthetique";
+	private int nbNoeuds = 5000;
+	private int nbTaches = 1000;
+	private Topologie topologie = Topologie.ROUTIER;
+	private LoiDemande loiDemande = LoiDemande.UNIFORME;
+	private int demandeMin = 1;
+	private int demandeMax = 10;
+	private int capacite = 100;
+	private int nbCamions = 0;
+	private PositionDepot positionDepot = PositionDepot.CENTRE;
+	private long graine = 0;
+
+	// Instance générée : extrémités (à partir de 0) et coût de chaque arête, les tâches en premier
+	private double[] x;
+	private double[] y;
+	private int nbArretes;
+	private int[] extremites1;
+	private int[] extremites2;
+	private int[] couts;
+	private int[] demandes;
+
+	/**
+	 * <p>Remplace le nom de l'instance.
+	 *
+	 * @param nom le nom écrit après PROBLEME
+	 * @return le générateur lui-même
+	 * @since 2012
+	 */
+	public GenerateurCARP setNom(String nom) {
+		this.nom = nom;
+		return this;
+	}
+
+	/**
+	 * <p>Remplace le nombre de noeuds du graphe.
+	 *
+	 * @param nbNoeuds le nombre de noeuds (au moins 2)
+	 * @return le générateur lui-même
+	 * @throws IllegalArgumentException si nbNoeuds est inférieur à 2
+	 * @since 2012
+	 */
+	public GenerateurCARP setNbNoeuds(int nbNoeuds) {
+		if (nbNoeuds < 2)
+			throw new IllegalArgumentException("Le graphe doit avoir au moins 2 noeuds");
+
+		this.nbNoeuds = nbNoeuds;
+		return this;
+	}
+
+	/**
+	 * <p>
+	 * Remplace le nombre de tâches (arêtes requises). Il ne peut dépasser le
+	 * nombre d'arêtes du graphe, ce qui n'est vérifié qu'à la génération.
+	 * </p>
+	 *
+	 * @param nbTaches le nombre de tâches (au moins 1)
+	 * @return le générateur lui-même
+	 * @throws IllegalArgumentException si nbTaches est inférieur à 1
+	 * @since 2012
+	 */
+	public GenerateurCARP setNbTaches(int nbTaches) {
+		if (nbTaches < 1)
+			throw new IllegalArgumentException("L'instance doit avoir au moins une tâche");
+
+		this.nbTaches = nbTaches;
+		return this;
+	}
+
+	/**
+	 * <p>Remplace la forme du graphe, {@link Topologie#ROUTIER} par défaut.
+	 *
+	 * @param topologie la forme du graphe
+	 * @return le générateur lui-même
+	 * @since 2012
+	 */
+	public GenerateurCARP setTopologie(Topologie topologie) {
+		this.topologie = topologie;
+		return this;
+	}
+
+	/**
+	 * <p>Remplace la loi de la demande des tâches, uniforme entre 1 et 10 par défaut.
+	 *
+	 * @param loi la loi de la demande
+	 * @param min la demande minimale (au moins 1)
+	 * @param max la demande maximale (au moins min)
+	 * @return le générateur lui-même
+	 * @throws IllegalArgumentException si min est inférieur à 1 ou supérieur à max
+	 * @since 2012
+	 */
+	public GenerateurCARP setDemande(LoiDemande loi, int min, int max) {
+		if (min < 1 || max < min)
+			throw new IllegalArgumentException("La demande doit vérifier 1 <= min <= max");
+
+		this.loiDemande = loi;
+		this.demandeMin = min;
+		this.demandeMax = max;
+		return this;
+	}
+
+	/**
+	 * <p>Remplace la capacité des véhicules, 100 par défaut.
+	 *
+	 * @param capacite la capacité, qui doit être au moins la demande maximale à la génération
+	 * @return le générateur lui-même
+	 * @throws IllegalArgumentException si capacite est inférieure à 1
+	 * @since 2012
+	 */
+	public GenerateurCARP setCapacite(int capacite) {
+		if (capacite < 1)
+			throw new IllegalArgumentException("La capacité doit être au moins de 1");
+
+		this.capacite = capacite;
+		return this;
+	}
+
+	/**
+	 * <p>
+	 * Remplace le nombre de véhicules. Par défaut (0), il y en a autant que
+	 * de tâches, ce qui ne limite pas la découpe.
+	 * </p>
+	 *
+	 * @param nbCamions le nombre de véhicules, 0 pour la valeur par défaut
+	 * @return le générateur lui-même
+	 * @throws IllegalArgumentException si nbCamions est négatif
+	 * @since 2012
+	 */
+	public GenerateurCARP setNbCamions(int nbCamions) {
+		if (nbCamions < 0)
+			throw new IllegalArgumentException("Le nombre de véhicules ne peut être négatif");
+
+		this.nbCamions = nbCamions;
+		return this;
+	}
+
+	/**
+	 * <p>Remplace la position du dépôt, {@link PositionDepot#CENTRE} par défaut.
+	 *
+	 * @param positionDepot la position du dépôt
+	 * @return le générateur lui-même
+	 * @since 2012
+	 */
+	public GenerateurCARP setPositionDepot(PositionDepot positionDepot) {
+		this.positionDepot = positionDepot;
+		return this;
+	}
+
+	/**
+	 * <p>Remplace la graine du tirage aléatoire, 0 par défaut.
+	 *
+	 * @param graine la graine
+	 * @return le générateur lui-même
+	 * @since 2012
+	 */
+	public GenerateurCARP setGraine(long graine) {
+		this.graine = graine;
+		return this;
+	}
+
+	/**
+	 * <p>Génère l'instance et l'écrit dans un fichier, en UTF-8.
+	 *
+	 * @param fichier le fichier à écrire
+	 * @throws IOException si le fichier ne peut être écrit
+	 * @throws IllegalArgumentException si le graphe a moins d'arêtes que de tâches
+	 * @since 2012
+	 * @see ProblemeCARP#loadFromFile(java.nio.file.Path)
+	 */
+	public void ecrire(Path fichier) throws IOException {
+		try (Writer ecrivain = Files.newBufferedWriter(fichier, StandardCharsets.UTF_8)) {
+			ecrire(ecrivain);
+		}
+	}
+
+	/**
+	 * <p>Génère l'instance et l'écrit dans un flux, qui n'est pas fermé.
+	 *
+	 * @param ecrivain le flux à écrire
+	 * @throws IOException si le flux ne peut être écrit
+	 * @throws IllegalArgumentException si le graphe a moins d'arêtes que de tâches
+	 * @since 2012
+	 * @see ProblemeCARP#loadFromStream(java.io.InputStream)
+	 */
+	public void ecrire(Writer ecrivain) throws IOException {
+		construire();
+
+		BufferedWriter sortie = new BufferedWriter(ecrivain);
+		sortie.write("PROBLEME : " + nom + "\n");
+		sortie.write("NB_COND : 4\n");
+		sortie.write(ProblemeCARP.NOM_CONDITION_NB_CAMIONS + " : " + getNbCamions() + "\n");
+		sortie.write(ProblemeCARP.NOM_CONDITION_CAPACITE_CAMION + " : " + capacite + "\n");
+		sortie.write(ProblemeCARP.NOM_CONDITION_NUM_DEPOT + " : 1\n");
+		sortie.write(ProblemeCARP.NOM_CONDITION_NB_ARRETE_NOREQ + " : " + (nbArretes - nbTaches) + "\n");
+		sortie.write(ProblemeCARP.NOM_CONDITION_NB_SOMMETS + " : " + nbNoeuds + "\n");
+		sortie.write("NB_TACHES : " + nbTaches + "\n");
+
+		sortie.write("DEPART   ARRIVEE     COUT    DEMANDE\n");
+		for (int t = 0; t < nbTaches; t++)
+			sortie.write((extremites1[t] + 1) + " " + (extremites2[t] + 1) + " " + couts[t] + " " + demandes[t] + "\n");
+
+		sortie.write("DEPART   ARRIVEE     COUT\n");
+		for (int a = nbTaches; a < nbArretes; a++)
+			sortie.write((extremites1[a] + 1) + " " + (extremites2[a] + 1) + " " + couts[a] + "\n");
+
+		sortie.flush();
+	}
+
+	/**
+	 * <p>
+	 * Génère l'instance et construit directement le {@link ProblemeCARP}
+	 * correspondant, identique à celui que donnerait la lecture du fichier
+	 * écrit par {@link #ecrire(java.nio.file.Path)}. Le distancier n'est pas
+	 * initialisé : sur les plus grands graphes, il vaut mieux choisir
+	 * d'abord un distancier réduit.
+	 * </p>
+	 *
+	 * @return le {@link ProblemeCARP} généré, dont le {@link GrapheCARP} est initialisé
+	 * @throws IllegalArgumentException si le graphe a moins d'arêtes que de tâches
+	 * @since 2012
+	 * @see ProblemeCARP#setDistancierReduit(boolean)
+	 * @see ProblemeCARP#initialiserDistancier()
+	 */
+	public ProblemeCARP generer() {
+		construire();
+
+		ProblemeCARP prob = new ProblemeCARP();
+		prob.setNom(nom);
+		prob.getConditions().add(new Condition<Integer>(ProblemeCARP.NOM_CONDITION_NB_CAMIONS, getNbCamions()));
+		prob.getConditions().add(new Condition<Integer>(ProblemeCARP.NOM_CONDITION_CAPACITE_CAMION, capacite));
+		prob.getConditions().add(new Condition<Integer>(ProblemeCARP.NOM_CONDITION_NUM_DEPOT, 1));
+		prob.getConditions().add(new Condition<Integer>(ProblemeCARP.NOM_CONDITION_NB_ARRETE_NOREQ, nbArretes - nbTaches));
+		prob.getConditions().add(new Condition<Integer>(ProblemeCARP.NOM_CONDITION_NB_SOMMETS, nbNoeuds));
+
+		// Remise à 1 du compteur des arcs et des noeuds
+		Noeud.init();
+		Arc.init();
+
+		List<Noeud> noeuds = new ArrayList<Noeud>(nbNoeuds);
+		for (int i = 0; i < nbNoeuds; i++)
+			noeuds.add(new Noeud());
+
+		List<Arc> taches = new ArrayList<Arc>(nbTaches);
+		int[] departs = new int[nbTaches];
+		int[] arrivees = new int[nbTaches];
+		float[] coutsTaches = new float[nbTaches];
+		float[] demandesTaches = new float[nbTaches];
+		for (int t = 0; t < nbTaches; t++) {
+			taches.add(LecteurCARP.creerTache(noeuds.get(extremites1[t]), noeuds.get(extremites2[t]),
+					couts[t], demandes[t]));
+			departs[t] = extremites2[t];
+			arrivees[t] = extremites1[t];
+			coutsTaches[t] = couts[t];
+			demandesTaches[t] = demandes[t];
+		}
+
+		int nbNonRequises = nbArretes - nbTaches;
+		float[] coutsNonRequises = new float[nbNonRequises];
+		for (int a = 0; a < nbNonRequises; a++)
+			coutsNonRequises[a] = couts[nbTaches + a];
+
+		prob.initialiserGraphe(new GrapheCARP(noeuds, taches, departs, arrivees, coutsTaches, demandesTaches,
+				Arrays.copyOfRange(extremites1, nbTaches, nbArretes),
+				Arrays.copyOfRange(extremites2, nbTaches, nbArretes),
+				coutsNonRequises));
+		return prob;
+	}
+
+	private int getNbCamions() {
+		return nbCamions > 0 ? nbCamions : nbTaches;
+	}
+
+	/**
+	 * <p>
+	 * Tire les noeuds et les arêtes, choisit les tâches et leur demande,
+	 * puis renumérote les noeuds pour que le dépôt soit le premier.
+	 * </p>
+	 *
+	 * @throws IllegalArgumentException si le graphe a moins d'arêtes que de
+	 *      tâches, ou si la demande maximale dépasse la capacité
+	 * @since 2012
+	 */
+	private void construire() {
+		if (demandeMax > capacite)
+			throw new IllegalArgumentException("La demande maximale dépasse la capacité des véhicules");
+
+		Random aleatoire = new Random(graine);
+		x = new double[nbNoeuds];
+		y = new double[nbNoeuds];
+		nbArretes = 0;
+		extremites1 = new int[2 * nbNoeuds];
+		extremites2 = new int[2 * nbNoeuds];
+		couts = new int[2 * nbNoeuds];
+
+		switch (topologie) {
+		case GRILLE:
+			construireGrille(aleatoire, false);
+			break;
+		case GEOMETRIQUE:
+			construireGeometrique(aleatoire);
+			break;
+		default:
+			construireGrille(aleatoire, true);
+			break;
+		}
+
+		if (nbArretes < nbTaches)
+			throw new IllegalArgumentException("Le graphe n'a que " + nbArretes + " arêtes pour "
+					+ nbTaches + " tâches");
+
+		// Les tâches sont les nbTaches premières arêtes après un mélange partiel
+		for (int t = 0; t < nbTaches; t++)
+			echanger(t, t + aleatoire.nextInt(nbArretes - t));
+
+		demandes = new int[nbTaches];
+		for (int t = 0; t < nbTaches; t++)
+			demandes[t] = tirerDemande(aleatoire);
+
+		// Le dépôt devient le noeud 0, qui prend la place du dépôt
+		int depot = choisirDepot(aleatoire);
+		for (int a = 0; a < nbArretes; a++) {
+			extremites1[a] = extremites1[a] == depot ? 0 : extremites1[a] == 0 ? depot : extremites1[a];
+			extremites2[a] = extremites2[a] == depot ? 0 : extremites2[a] == 0 ? depot : extremites2[a];
+		}
+	}
+
+	/**
+	 * <p>
+	 * Place les noeuds sur une grille presque carrée et les relie à leurs
+	 * voisins. Pour un réseau routier, la position des noeuds est
+	 * perturbée, un arbre couvrant aléatoire de la grille est conservé avec
+	 * une partie seulement des autres rues, et les axes sont plus rapides.
+	 * </p>
+	 */
+	private void construireGrille(Random aleatoire, boolean routier) {
+		int colonnes = (int) Math.ceil(Math.sqrt(nbNoeuds));
+		for (int i = 0; i < nbNoeuds; i++) {
+			x[i] = (i % colonnes) * ESPACEMENT;
+			y[i] = (i / colonnes) * ESPACEMENT;
+			if (routier) {
+				x[i] += (aleatoire.nextDouble() - 0.5) * 0.6 * ESPACEMENT;
+				y[i] += (aleatoire.nextDouble() - 0.5) * 0.6 * ESPACEMENT;
+			}
+		}
+
+		// Rues de la grille : vers la droite, puis vers le bas
+		int nbRues = 0;
+		int[] rues1 = new int[2 * nbNoeuds];
+		int[] rues2 = new int[2 * nbNoeuds];
+		for (int i = 0; i < nbNoeuds; i++) {
+			if (i % colonnes + 1 < colonnes && i + 1 < nbNoeuds) {
+				rues1[nbRues] = i;
+				rues2[nbRues++] = i + 1;
+			}
+			if (i + colonnes < nbNoeuds) {
+				rues1[nbRues] = i;
+				rues2[nbRues++] = i + colonnes;
+			}
+		}
+
+		if (!routier) {
+			for (int r = 0; r < nbRues; r++)
+				ajouterArrete(rues1[r], rues2[r], 1);
+			return;
+		}
+
+		// Mélange des rues, puis arbre couvrant (Kruskal) et une partie des rues restantes
+		for (int r = nbRues - 1; r > 0; r--) {
+			int s = aleatoire.nextInt(r + 1);
+			int tmp = rues1[r];
+			rues1[r] = rues1[s];
+			rues1[s] = tmp;
+			tmp = rues2[r];
+			rues2[r] = rues2[s];
+			rues2[s] = tmp;
+		}
+
+		int[] parents = initialiserComposantes();
+		for (int r = 0; r < nbRues; r++) {
+			int i = rues1[r], j = rues2[r];
+			boolean axe = (i / colonnes == j / colonnes && (i / colonnes) % PAS_AXES == 0)
+					|| (i % colonnes == j % colonnes && (i % colonnes) % PAS_AXES == 0);
+			if (unir(parents, i, j) || axe || aleatoire.nextDouble() < PROBA_RUE)
+				ajouterArrete(i, j, axe ? FACTEUR_AXES : 1);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Tire les noeuds uniformément dans un carré et relie chacun à ses
+	 * {@link #NB_VOISINS} plus proches voisins, cherchés dans une grille de
+	 * seaux. Les composantes connexes restantes sont ensuite reliées de
+	 * proche en proche.
+	 * </p>
+	 */
+	private void construireGeometrique(Random aleatoire) {
+		int nbSeaux = (int) Math.ceil(Math.sqrt(nbNoeuds));
+		double cote = nbSeaux * ESPACEMENT;
+		for (int i = 0; i < nbNoeuds; i++) {
+			x[i] = aleatoire.nextDouble() * cote;
+			y[i] = aleatoire.nextDouble() * cote;
+		}
+
+		// Noeuds rangés par seau (un noeud par seau en moyenne)
+		int[] debuts = new int[nbSeaux * nbSeaux + 1];
+		int[] seaux = new int[nbNoeuds];
+		for (int i = 0; i < nbNoeuds; i++) {
+			seaux[i] = seau(x[i], nbSeaux) * nbSeaux + seau(y[i], nbSeaux);
+			debuts[seaux[i] + 1]++;
+		}
+		for (int s = 0; s < nbSeaux * nbSeaux; s++)
+			debuts[s + 1] += debuts[s];
+		int[] contenus = new int[nbNoeuds];
+		int[] remplis = Arrays.copyOf(debuts, nbSeaux * nbSeaux);
+		for (int i = 0; i < nbNoeuds; i++)
+			contenus[remplis[seaux[i]]++] = i;
+
+		Set<Long> existantes = new HashSet<Long>();
+		int[] voisins = new int[NB_VOISINS];
+		double[] distances = new double[NB_VOISINS];
+		for (int i = 0; i < nbNoeuds; i++) {
+			int sx = seau(x[i], nbSeaux), sy = seau(y[i], nbSeaux);
+			int nbTrouves = 0;
+
+			// Anneaux de seaux de plus en plus larges, jusqu'à ce que les voisins soient sûrs
+			for (int rayon = 0; rayon < nbSeaux; rayon++) {
+				for (int bx = Math.max(0, sx - rayon); bx <= Math.min(nbSeaux - 1, sx + rayon); bx++)
+					for (int by = Math.max(0, sy - rayon); by <= Math.min(nbSeaux - 1, sy + rayon); by++) {
+						if (Math.max(Math.abs(bx - sx), Math.abs(by - sy)) != rayon)
+							continue;
+						int s = bx * nbSeaux + by;
+						for (int k = debuts[s]; k < debuts[s + 1]; k++) {
+							int j = contenus[k];
+							if (j != i)
+								nbTrouves = inserer(voisins, distances, nbTrouves, j, distance(i, j));
+						}
+					}
+
+				if (nbTrouves == NB_VOISINS && distances[NB_VOISINS - 1] <= rayon * ESPACEMENT)
+					break;
+			}
+
+			for (int v = 0; v < nbTrouves; v++) {
+				int j = voisins[v];
+				if (existantes.add((long) Math.min(i, j) * nbNoeuds + Math.max(i, j)))
+					ajouterArrete(i, j, 1);
+			}
+		}
+
+		// Une composante par représentant, reliées dans l'ordre de leur abscisse
+		int[] parents = initialiserComposantes();
+		for (int a = 0; a < nbArretes; a++)
+			unir(parents, extremites1[a], extremites2[a]);
+
+		List<Integer> representants = new ArrayList<Integer>();
+		for (int i = 0; i < nbNoeuds; i++)
+			if (trouver(parents, i) == i)
+				representants.add(i);
+		Integer[] ordre = representants.toArray(new Integer[representants.size()]);
+		Arrays.sort(ordre, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer i, Integer j) {
+				return Double.compare(x[i], x[j]);
+			}
+		});
+		for (int r = 1; r < ordre.length; r++)
+			ajouterArrete(ordre[r - 1], ordre[r], 1);
+	}
+
+	private static int seau(double coordonnee, int nbSeaux) {
+		return Math.min(nbSeaux - 1, (int) (coordonnee / ESPACEMENT));
+	}
+
+	// Insère j parmi les voisins triés par distance croissante, et retourne leur nouveau nombre
+	private static int inserer(int[] voisins, double[] distances, int nb, int j, double d) {
+		if (nb == voisins.length && d >= distances[nb - 1])
+			return nb;
+
+		int k = nb == voisins.length ? nb - 1 : nb++;
+		while (k > 0 && distances[k - 1] > d) {
+			voisins[k] = voisins[k - 1];
+			distances[k] = distances[k - 1];
+			k--;
+		}
+		voisins[k] = j;
+		distances[k] = d;
+
+		return nb;
+	}
+
+	private double distance(int i, int j) {
+		return Math.hypot(x[i] - x[j], y[i] - y[j]);
+	}
+
+	private void ajouterArrete(int i, int j, double facteur) {
+		if (nbArretes == couts.length) {
+			extremites1 = Arrays.copyOf(extremites1, 2 * nbArretes);
+			extremites2 = Arrays.copyOf(extremites2, 2 * nbArretes);
+			couts = Arrays.copyOf(couts, 2 * nbArretes);
+		}
+
+		extremites1[nbArretes] = i;
+		extremites2[nbArretes] = j;
+		couts[nbArretes++] = (int) Math.max(1, Math.round(distance(i, j) * facteur));
+	}
+
+	private void echanger(int a, int b) {
+		int tmp = extremites1[a];
+		extremites1[a] = extremites1[b];
+		extremites1[b] = tmp;
+		tmp = extremites2[a];
+		extremites2[a] = extremites2[b];
+		extremites2[b] = tmp;
+		tmp = couts[a];
+		couts[a] = couts[b];
+		couts[b] = tmp;
+	}
+
+	private int tirerDemande(Random aleatoire) {
+		switch (loiDemande) {
+		case CONSTANTE:
+			return demandeMin;
+		case EXPONENTIELLE:
+			// Moyenne au quart de l'intervalle au-dessus du minimum
+			double moyenne = Math.max(1, (demandeMax - demandeMin) / 4.0);
+			long d = demandeMin + (long) (-Math.log(1 - aleatoire.nextDouble()) * moyenne);
+			return (int) Math.min(demandeMax, d);
+		default:
+			return demandeMin + aleatoire.nextInt(demandeMax - demandeMin + 1);
+		}
+	}
+
+	private int choisirDepot(Random aleatoire) {
+		if (positionDepot == PositionDepot.ALEATOIRE)
+			return aleatoire.nextInt(nbNoeuds);
+
+		double cibleX = 0, cibleY = 0;
+		if (positionDepot == PositionDepot.CENTRE) {
+			double maxX = 0, maxY = 0;
+			for (int i = 0; i < nbNoeuds; i++) {
+				maxX = Math.max(maxX, x[i]);
+				maxY = Math.max(maxY, y[i]);
+			}
+			cibleX = maxX / 2;
+			cibleY = maxY / 2;
+		}
+
+		int depot = 0;
+		double meilleure = Double.MAX_VALUE;
+		for (int i = 0; i < nbNoeuds; i++) {
+			double d = Math.hypot(x[i] - cibleX, y[i] - cibleY);
+			if (d < meilleure) {
+				meilleure = d;
+				depot = i;
+			}
+		}
+
+		return depot;
+	}
+
+	private int[] initialiserComposantes() {
+		int[] parents = new int[nbNoeuds];
+		for (int i = 0; i < nbNoeuds; i++)
+			parents[i] = i;
+
+		return parents;
+	}
+
+	private static int trouver(int[] parents, int i) {
+		while (parents[i] != i) {
+			parents[i] = parents[parents[i]];
+			i = parents[i];
+		}
+
+		return i;
+	}
+
+	// Réunit les composantes de i et j, et retourne false si elles n'en faisaient déjà qu'une
+	private static boolean unir(int[] parents, int i, int j) {
+		int ri = trouver(parents, i), rj = trouver(parents, j);
+		if (ri == rj)
+			return false;
+
+		parents[ri] = rj;
+		return true;
+	}
+}
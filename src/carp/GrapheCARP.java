@@ -1,6 +1,8 @@
 package carp;
 
+import java.util.Arrays;
 import java.util.List;
+import seisco.util.Propriete;
 import seisco.util.graphe.Graphe;
 import seisco.util.graphe.Noeud;
 import seisco.util.graphe.Arc;
@@ -10,6 +12,19 @@ import seisco.util.graphe.Arc;
  * Représente un {@link Graphe} pour les problèmes de type CARP.
  * Contient un coût de demande pour chaque {@link Arc}.
  * </p>
+ * <p>
+ * À la construction, les tâches sont aussi compilées sous forme de tableaux
+ * primitifs indexés par le numéro de tâche (sa position dans la liste des
+ * {@link Arc}) : noeud de départ, noeud d'arrivée, coût de parcours et
+ * demande. Les noeuds y sont numérotés à partir de 0. C'est cette vue
+ * qu'utilise la découpe, sans accès aux {@link Propriete} ni aux coûts par
+ * leur nom.
+ * </p>
+ * <p>
+ * Le graphe peut aussi contenir des arêtes non requises, de demande nulle,
+ * qui ne sont pas des tâches mais servent aux trajets à vide entre elles.
+ * Elles ne sont connues que par leurs tableaux primitifs.
+ * </p>
  * 
  * @author Bruno Boi
  * @version 2012
@@ -17,6 +32,16 @@ import seisco.util.graphe.Arc;
  */
 public class GrapheCARP extends Graphe {
 	public final static String NOM_PROPRIETE_DEMANDE = "demande";
+
+	private final Arc[] taches;
+	private final int[] departs;
+	private final int[] arrivees;
+	private final float[] couts;
+	private final float[] demandes;
+	private final int[] indicesParNumero;
+	private final int[] departsNonRequises;
+	private final int[] arriveesNonRequises;
+	private final float[] coutsNonRequises;
 	
 	/**
 	 * <p>Crée une instance de {@link GrapheCARP}.
@@ -31,6 +56,276 @@ public class GrapheCARP extends Graphe {
 	 */
 	public GrapheCARP(List<Noeud> noeuds, List<Arc> arcs) {
 		super("CARP", noeuds, arcs);
+
+		int nbTaches = arcs.size();
+		taches = arcs.toArray(new Arc[nbTaches]);
+		departs = new int[nbTaches];
+		arrivees = new int[nbTaches];
+		couts = new float[nbTaches];
+		demandes = new float[nbTaches];
+
+		for (int t = 0; t < nbTaches; t++) {
+			Arc tache = taches[t];
+			departs[t] = tache.getDepart().getNumero() - 1;
+			arrivees[t] = tache.getArrivee().getNumero() - 1;
+
+			if (tache.coutPresent(Arc.NOM_COUT_PARCOURS))
+				couts[t] = tache.getCout(Arc.NOM_COUT_PARCOURS).getValeur();
+
+			Propriete demande = tache.getPropriete(NOM_PROPRIETE_DEMANDE);
+			if (demande != null)
+				demandes[t] = demande.getValeur();
+		}
+
+		indicesParNumero = indexerNumeros(taches);
+		departsNonRequises = new int[0];
+		arriveesNonRequises = new int[0];
+		coutsNonRequises = new float[0];
+	}
+
+	/**
+	 * <p>
+	 * Crée une instance de {@link GrapheCARP} dont la vue primitive des
+	 * tâches est déjà construite, par exemple pendant la lecture du fichier.
+	 * Les tableaux doivent décrire exactement les {@link Arc} donnés.
+	 * </p>
+	 * 
+	 * @param noeuds
+	 *		Une liste de {@link Noeud} initialisée.
+	 * @param arcs
+	 *		Une liste d'{@link Arc} initialisée.
+	 * @param departs
+	 *		le noeud de départ (à partir de 0) de chaque tâche
+	 * @param arrivees
+	 *		le noeud d'arrivée (à partir de 0) de chaque tâche
+	 * @param couts
+	 *		le coût de parcours de chaque tâche
+	 * @param demandes
+	 *		la demande de chaque tâche
+	 * @since 2012
+	 * @see LecteurCARP
+	 */
+	GrapheCARP(List<Noeud> noeuds, List<Arc> arcs, int[] departs, int[] arrivees, float[] couts, float[] demandes) {
+		this(noeuds, arcs, departs, arrivees, couts, demandes, new int[0], new int[0], new float[0]);
+	}
+
+	/**
+	 * <p>
+	 * Crée une instance de {@link GrapheCARP} dont la vue primitive des
+	 * tâches est déjà construite, avec des arêtes non requises.
+	 * </p>
+	 * 
+	 * @param noeuds
+	 *		Une liste de {@link Noeud} initialisée.
+	 * @param arcs
+	 *		Une liste d'{@link Arc} initialisée (les tâches).
+	 * @param departs
+	 *		le noeud de départ (à partir de 0) de chaque tâche
+	 * @param arrivees
+	 *		le noeud d'arrivée (à partir de 0) de chaque tâche
+	 * @param couts
+	 *		le coût de parcours de chaque tâche
+	 * @param demandes
+	 *		la demande de chaque tâche
+	 * @param departsNonRequises
+	 *		une extrémité (à partir de 0) de chaque arête non requise
+	 * @param arriveesNonRequises
+	 *		l'autre extrémité (à partir de 0) de chaque arête non requise
+	 * @param coutsNonRequises
+	 *		le coût de parcours de chaque arête non requise
+	 * @since 2012
+	 * @see LecteurCARP
+	 * @see GenerateurCARP
+	 */
+	GrapheCARP(List<Noeud> noeuds, List<Arc> arcs, int[] departs, int[] arrivees, float[] couts, float[] demandes,
+			int[] departsNonRequises, int[] arriveesNonRequises, float[] coutsNonRequises) {
+		super("CARP", noeuds, arcs);
+
+		this.taches = arcs.toArray(new Arc[arcs.size()]);
+		this.departs = departs;
+		this.arrivees = arrivees;
+		this.couts = couts;
+		this.demandes = demandes;
+		this.indicesParNumero = indexerNumeros(taches);
+		this.departsNonRequises = departsNonRequises;
+		this.arriveesNonRequises = arriveesNonRequises;
+		this.coutsNonRequises = coutsNonRequises;
+	}
+
+	/**
+	 * <p>Associe à chaque numéro d'{@link Arc} sa position dans les tâches.
+	 *
+	 * @param taches les tâches du graphe
+	 * @return la position de chaque numéro d'arc, -1 pour les numéros inutilisés
+	 * @since 2012
+	 */
+	private static int[] indexerNumeros(Arc[] taches) {
+		int numeroMax = 0;
+		for (Arc tache : taches)
+			numeroMax = Math.max(numeroMax, tache.getNumero());
+
+		int[] indices = new int[numeroMax + 1];
+		Arrays.fill(indices, -1);
+		for (int t = 0; t < taches.length; t++)
+			indices[taches[t].getNumero()] = t;
+
+		return indices;
+	}
+
+	/**
+	 * <p>Retourne le nombre de tâches du graphe.
+	 *
+	 * @return le nombre de tâches ({@link Arc}) du graphe
+	 * @since 2012
+	 */
+	public int getNbTaches() {
+		return taches.length;
+	}
+
+	/**
+	 * <p>Retourne la tâche correspondant à un numéro de tâche.
+	 *
+	 * @param indice
+	 *		le numéro de la tâche, entre 0 et {@link #getNbTaches()} exclu
+	 * @return la tâche ({@link Arc}) correspondante
+	 * @since 2012
+	 * @see #getIndice(seisco.util.graphe.Arc)
+	 */
+	public Arc getTache(int indice) {
+		return taches[indice];
+	}
+
+	/**
+	 * <p>Retourne le numéro de tâche d'un {@link Arc} du graphe.
+	 *
+	 * @param tache
+	 *		une tâche ({@link Arc}) du graphe, ou une copie de celle-ci
+	 * @return le numéro de la tâche, ou -1 si elle n'appartient pas au graphe
+	 * @since 2012
+	 * @see #getTache(int)
+	 */
+	public int getIndice(Arc tache) {
+		int numero = tache.getNumero();
+		if (numero < 0 || numero >= indicesParNumero.length)
+			return -1;
+
+		return indicesParNumero[numero];
+	}
+
+	/**
+	 * <p>Retourne les numéros de tâche d'une liste d'{@link Arc} du graphe.
+	 *
+	 * @param liste
+	 *		une liste de tâches ({@link Arc}) du graphe
+	 * @return le numéro de chaque tâche de la liste, dans le même ordre
+	 * @since 2012
+	 * @see #getIndice(seisco.util.graphe.Arc)
+	 */
+	public int[] getIndices(List<Arc> liste) {
+		return getIndices(liste, new int[liste.size()]);
+	}
+
+	/**
+	 * <p>
+	 * Range les numéros de tâche d'une liste d'{@link Arc} du graphe dans un
+	 * tableau existant, sans allocation.
+	 * </p>
+	 *
+	 * @param liste
+	 *		une liste de tâches ({@link Arc}) du graphe
+	 * @param indices
+	 *		reçoit le numéro de chaque tâche (au moins liste.size() cases)
+	 * @return le tableau indices
+	 * @since 2012
+	 * @see #getIndices(java.util.List)
+	 */
+	public int[] getIndices(List<Arc> liste, int[] indices) {
+		for (int k = 0, n = liste.size(); k < n; k++)
+			indices[k] = getIndice(liste.get(k));
+
+		return indices;
+	}
+
+	/**
+	 * <p>Retourne le noeud de départ (numéroté à partir de 0) de chaque tâche.
+	 *
+	 * @return un tableau indexé par numéro de tâche, à ne pas modifier
+	 * @since 2012
+	 */
+	public int[] getDeparts() {
+		return departs;
+	}
+
+	/**
+	 * <p>Retourne le noeud d'arrivée (numéroté à partir de 0) de chaque tâche.
+	 *
+	 * @return un tableau indexé par numéro de tâche, à ne pas modifier
+	 * @since 2012
+	 */
+	public int[] getArrivees() {
+		return arrivees;
+	}
+
+	/**
+	 * <p>Retourne le coût de parcours de chaque tâche (0 s'il est absent).
+	 *
+	 * @return un tableau indexé par numéro de tâche, à ne pas modifier
+	 * @since 2012
+	 * @see Arc#NOM_COUT_PARCOURS
+	 */
+	public float[] getCouts() {
+		return couts;
+	}
+
+	/**
+	 * <p>Retourne la demande de chaque tâche (0 si elle est absente).
+	 *
+	 * @return un tableau indexé par numéro de tâche, à ne pas modifier
+	 * @since 2012
+	 * @see #NOM_PROPRIETE_DEMANDE
+	 */
+	public float[] getDemandes() {
+		return demandes;
+	}
+
+	/**
+	 * <p>Retourne le nombre d'arêtes non requises du graphe.
+	 *
+	 * @return le nombre d'arêtes de demande nulle, qui ne sont pas des tâches
+	 * @since 2012
+	 */
+	public int getNbArretesNonRequises() {
+		return coutsNonRequises.length;
+	}
+
+	/**
+	 * <p>Retourne une extrémité (numérotée à partir de 0) de chaque arête non requise.
+	 *
+	 * @return un tableau indexé par numéro d'arête non requise, à ne pas modifier
+	 * @since 2012
+	 */
+	public int[] getDepartsNonRequises() {
+		return departsNonRequises;
+	}
+
+	/**
+	 * <p>Retourne l'autre extrémité (numérotée à partir de 0) de chaque arête non requise.
+	 *
+	 * @return un tableau indexé par numéro d'arête non requise, à ne pas modifier
+	 * @since 2012
+	 */
+	public int[] getArriveesNonRequises() {
+		return arriveesNonRequises;
+	}
+
+	/**
+	 * <p>Retourne le coût de parcours de chaque arête non requise.
+	 *
+	 * @return un tableau indexé par numéro d'arête non requise, à ne pas modifier
+	 * @since 2012
+	 */
+	public float[] getCoutsNonRequises() {
+		return coutsNonRequises;
 	}
 	
 }
@@ -0,0 +1,182 @@
+package carp;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * Répartition de valeurs entières positives (durées en nanosecondes, nombres
+ * de tournées, octets alloués…), enregistrées par plusieurs threads sans
+ * verrou.
+ * </p>
+ * <p>
+ * Les classes suivent une échelle log-linéaire, comme HdrHistogram : les
+ * valeurs inférieures à 2<sup>5</sup> ont chacune leur classe, puis chaque
+ * puissance de 2 est découpée en 32 classes de même largeur. Un quantile
+ * est donc connu à environ 3 % près, quelle que soit sa valeur.
+ * </p>
+ * <p>
+ * Comme pour {@link Compteur}, les classes sont réparties en bandes selon
+ * le thread qui enregistre, séparées d'une ligne de cache, et additionnées
+ * à la lecture : des threads qui mesurent des durées voisines ne se
+ * disputent pas la même case. Il y a une bande par processeur, arrondi à
+ * la puissance de 2 supérieure, soit environ 15 Ko chacune.
+ * </p>
+ *
+ * @version 2012
+ * @see MesuresCARP
+ */
+public class Histogramme {
+
+	private static final int BITS_PRECISION = 5;
+	private static final int NB_SOUS_CLASSES = 1 << BITS_PRECISION;
+	private static final int NB_CLASSES = (64 - BITS_PRECISION) * NB_SOUS_CLASSES;
+
+	// 8 long = 64 octets entre deux bandes
+	private static final int ESPACEMENT = 8;
+	private static final int LARGEUR_BANDE = NB_CLASSES + ESPACEMENT;
+	private static final int NB_BANDES = bandes();
+
+	private final AtomicLongArray classes = new AtomicLongArray(NB_BANDES * LARGEUR_BANDE);
+	private final Compteur nombre = new Compteur();
+	private final Compteur total = new Compteur();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * <p>Enregistre une valeur, ramenée à 0 si elle est négative.
+	 *
+	 * @param valeur la valeur à enregistrer
+	 * @since 2012
+	 */
+	public void enregistrer(long valeur) {
+		if (valeur < 0)
+			valeur = 0;
+
+		int bande = (int) Thread.currentThread().getId() & (NB_BANDES - 1);
+		classes.incrementAndGet(bande * LARGEUR_BANDE + getClasse(valeur));
+		nombre.incrementer();
+		total.ajouter(valeur);
+
+		long maxCourant = max.get();
+		while (valeur > maxCourant && !max.compareAndSet(maxCourant, valeur))
+			maxCourant = max.get();
+	}
+
+	/**
+	 * <p>Retourne le nombre de valeurs enregistrées.
+	 *
+	 * @return le nombre de valeurs
+	 * @since 2012
+	 */
+	public long getNombre() {
+		return nombre.getValeur();
+	}
+
+	/**
+	 * <p>Retourne la somme des valeurs enregistrées.
+	 *
+	 * @return la somme des valeurs
+	 * @since 2012
+	 */
+	public long getTotal() {
+		return total.getValeur();
+	}
+
+	/**
+	 * <p>Retourne la moyenne des valeurs enregistrées.
+	 *
+	 * @return la moyenne, 0 si aucune valeur n'a été enregistrée
+	 * @since 2012
+	 */
+	public double getMoyenne() {
+		long n = getNombre();
+		return n == 0 ? 0 : (double) getTotal() / n;
+	}
+
+	/**
+	 * <p>Retourne la plus grande valeur enregistrée.
+	 *
+	 * @return le maximum, 0 si aucune valeur n'a été enregistrée
+	 * @since 2012
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * <p>
+	 * Retourne une valeur telle qu'au moins la proportion <b>q</b> des
+	 * valeurs enregistrées lui soient inférieures ou égales, à la largeur
+	 * d'une classe près (la plus grande valeur de la classe est retournée).
+	 * </p>
+	 *
+	 * @param q la proportion, entre 0 et 1 (0,5 pour la médiane)
+	 * @return le quantile, 0 si aucune valeur n'a été enregistrée
+	 * @throws IllegalArgumentException si q n'est pas entre 0 et 1
+	 * @since 2012
+	 */
+	public long getQuantile(double q) {
+		if (q < 0 || q > 1)
+			throw new IllegalArgumentException("Le quantile doit être entre 0 et 1");
+
+		long[] copie = new long[NB_CLASSES];
+		long n = 0;
+		for (int b = 0; b < NB_BANDES; b++)
+			for (int c = 0; c < NB_CLASSES; c++)
+				copie[c] += classes.get(b * LARGEUR_BANDE + c);
+		for (int c = 0; c < NB_CLASSES; c++)
+			n += copie[c];
+		if (n == 0)
+			return 0;
+
+		long rang = Math.max(1, (long) Math.ceil(q * n));
+		long cumul = 0;
+		for (int c = 0; c < NB_CLASSES; c++) {
+			cumul += copie[c];
+			if (cumul >= rang)
+				return Math.min(getMaxClasse(c), getMax());
+		}
+
+		return getMax();
+	}
+
+	/**
+	 * <p>Oublie toutes les valeurs enregistrées.
+	 *
+	 * @since 2012
+	 */
+	public void reinitialiser() {
+		for (int k = 0; k < classes.length(); k++)
+			classes.set(k, 0);
+		nombre.reinitialiser();
+		total.reinitialiser();
+		max.set(0);
+	}
+
+	static int getClasse(long valeur) {
+		if (valeur < NB_SOUS_CLASSES)
+			return (int) valeur;
+
+		int exposant = 63 - Long.numberOfLeadingZeros(valeur);
+		int decalage = exposant - BITS_PRECISION;
+		int sousClasse = (int) (valeur >>> decalage) & (NB_SOUS_CLASSES - 1);
+
+		return (decalage + 1) * NB_SOUS_CLASSES + sousClasse;
+	}
+
+	static long getMaxClasse(int classe) {
+		if (classe < NB_SOUS_CLASSES)
+			return classe;
+
+		int decalage = classe / NB_SOUS_CLASSES - 1;
+		long debut = ((long) (NB_SOUS_CLASSES | classe % NB_SOUS_CLASSES)) << decalage;
+
+		return debut + (1L << decalage) - 1;
+	}
+
+	// Puissance de 2 supérieure ou égale au nombre de processeurs
+	private static int bandes() {
+		int nb = Runtime.getRuntime().availableProcessors();
+		return nb <= 1 ? 1 : Integer.highestOneBit(nb - 1) << 1;
+	}
+}
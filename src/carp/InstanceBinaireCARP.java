@@ -0,0 +1,300 @@
+package carp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import seisco.util.Condition;
+import seisco.util.graphe.Arc;
+import seisco.util.graphe.Noeud;
+
+/**
+ * <p>
+ * Enregistre une instance CARP dans un format binaire compact, beaucoup
+ * plus rapide à relire que le format texte de
+ * {@link ProblemeCARP#loadFromFile(java.lang.String)}, avec si on le
+ * souhaite son {@link Distancier} complet.
+ * </p>
+ * <p>
+ * Le fichier commence par un en-tête de {@link #TAILLE_ENTETE} octets
+ * (signature, version, options, tailles des sections et leurs positions),
+ * suivi du nom et des conditions, puis des tableaux primitifs des tâches et
+ * des arêtes non requises du {@link GrapheCARP}, et enfin des distances
+ * ligne par ligne, le tout en petit-boutiste. Le fichier est relu en le
+ * projetant en mémoire : les tableaux des tâches sont copiés d'un bloc,
+ * mais les distances ne sont pas copiées, et plusieurs JVM lisant le même
+ * fichier partagent les mêmes pages.
+ * </p>
+ *
+ * @version 2012
+ * @see CacheDistancier
+ */
+public final class InstanceBinaireCARP {
+
+	/** Suffixe conseillé pour les fichiers d'instance binaires. */
+	public static final String SUFFIXE = ".carpb";
+
+	static final int SIGNATURE = 0x43415242; // "CARB"
+	static final int VERSION = 1;
+	static final int TAILLE_ENTETE = 64;
+
+	/** Option indiquant que le fichier contient le distancier complet. */
+	static final int OPTION_DISTANCES = 1;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private InstanceBinaireCARP() {
+	}
+
+	/**
+	 * <p>
+	 * Convertit une instance du format texte au format binaire. Si les
+	 * distances sont demandées, le distancier complet est calculé avant
+	 * l'écriture.
+	 * </p>
+	 *
+	 * @param texte le fichier de l'instance au format texte
+	 * @param binaire le fichier binaire à écrire
+	 * @param avecDistances <b>true</b> pour enregistrer aussi le distancier complet
+	 * @throws IOException si un des fichiers ne peut être lu ou écrit
+	 * @since 2012
+	 */
+	public static void convertir(Path texte, Path binaire, boolean avecDistances) throws IOException {
+		ProblemeCARP prob = LecteurCARP.lire(texte);
+		if (avecDistances)
+			prob.initialiserDistancier();
+
+		ecrire(binaire, prob, avecDistances);
+	}
+
+	/**
+	 * <p>
+	 * Enregistre une instance au format binaire. Le fichier est d'abord
+	 * écrit à côté, puis renommé, pour qu'un autre processus ne lise jamais
+	 * un fichier incomplet.
+	 * </p>
+	 *
+	 * @param fichier le fichier binaire à écrire
+	 * @param prob le problème à enregistrer, dont le {@link GrapheCARP} est initialisé
+	 * @param avecDistances <b>true</b> pour enregistrer aussi le distancier complet
+	 * @throws IOException si le fichier ne peut être écrit
+	 * @throws IllegalArgumentException si les distances sont demandées alors
+	 *      que le distancier du problème n'est pas initialisé ou est réduit
+	 * @since 2012
+	 */
+	public static void ecrire(Path fichier, ProblemeCARP prob, boolean avecDistances) throws IOException {
+		Distancier distancier = prob.getDistancier();
+		if (avecDistances && (distancier == null || distancier instanceof Distancier.Lignes))
+			throw new IllegalArgumentException("Seul un distancier complet peut être enregistré");
+
+		GrapheCARP graphe = prob.getGrapheCARP();
+		int nbNoeuds = graphe.getNoeuds().size();
+		int nbTaches = graphe.getNbTaches();
+		int nbNonRequises = graphe.getNbArretesNonRequises();
+
+		// Nom et conditions : longueur et octets UTF-8 de chaque texte
+		List<Condition<?>> conditions = new ArrayList<Condition<?>>();
+		List<byte[]> textes = new ArrayList<byte[]>();
+		textes.add(prob.getNom().getBytes(UTF8));
+		for (Condition<?> condition : prob.getConditions()) {
+			if (!(condition.getValeur() instanceof Integer))
+				throw new IllegalArgumentException("Condition non entière : " + condition.getNom());
+			conditions.add(condition);
+			textes.add(condition.getNom().getBytes(UTF8));
+		}
+
+		int tailleTextes = 4 * conditions.size();
+		for (byte[] t : textes)
+			tailleTextes += 4 + t.length;
+		long positionDonnees = aligner(TAILLE_ENTETE + tailleTextes, 8);
+		long tailleDonnees = 16L * nbTaches + 12L * nbNonRequises;
+		long positionDistances = avecDistances ? aligner(positionDonnees + tailleDonnees, 64) : 0;
+		if (positionDonnees + tailleDonnees > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Instance trop grande pour le format binaire");
+
+		ByteBuffer contenu = ByteBuffer.allocate((int) (positionDistances > 0 ? positionDistances : positionDonnees + tailleDonnees))
+				.order(ByteOrder.LITTLE_ENDIAN);
+		contenu.putInt(SIGNATURE).putInt(VERSION).putInt(avecDistances ? OPTION_DISTANCES : 0)
+				.putInt(nbNoeuds).putInt(nbTaches).putInt(nbNonRequises).putInt(conditions.size())
+				.putInt(tailleTextes).putLong(positionDonnees).putLong(positionDistances);
+
+		contenu.position(TAILLE_ENTETE);
+		ecrireTexte(contenu, textes.get(0));
+		for (int c = 0; c < conditions.size(); c++) {
+			ecrireTexte(contenu, textes.get(c + 1));
+			contenu.putInt((Integer) conditions.get(c).getValeur());
+		}
+
+		contenu.position((int) positionDonnees);
+		contenu.asIntBuffer().put(graphe.getDeparts());
+		contenu.position(contenu.position() + 4 * nbTaches);
+		contenu.asIntBuffer().put(graphe.getArrivees());
+		contenu.position(contenu.position() + 4 * nbTaches);
+		contenu.asFloatBuffer().put(graphe.getCouts());
+		contenu.position(contenu.position() + 4 * nbTaches);
+		contenu.asFloatBuffer().put(graphe.getDemandes());
+		contenu.position(contenu.position() + 4 * nbTaches);
+		contenu.asIntBuffer().put(graphe.getDepartsNonRequises());
+		contenu.position(contenu.position() + 4 * nbNonRequises);
+		contenu.asIntBuffer().put(graphe.getArriveesNonRequises());
+		contenu.position(contenu.position() + 4 * nbNonRequises);
+		contenu.asFloatBuffer().put(graphe.getCoutsNonRequises());
+		contenu.clear();
+
+		Path temporaire = Files.createTempFile(fichier.toAbsolutePath().getParent(), fichier.getFileName().toString(), ".tmp");
+		try {
+			try (FileChannel canal = FileChannel.open(temporaire, StandardOpenOption.WRITE)) {
+				CacheDistancier.ecrire(canal, contenu);
+				if (avecDistances)
+					CacheDistancier.ecrireDistances(canal, distancier);
+			}
+
+			Files.move(temporaire, fichier, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporaire);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Relit une instance enregistrée au format binaire. Si le fichier
+	 * contient le distancier, il est projeté en mémoire (en lecture seule)
+	 * et le problème est prêt à être évalué ; sinon, comme après
+	 * {@link LecteurCARP#lire(java.nio.file.Path)}, le distancier reste à
+	 * initialiser.
+	 * </p>
+	 *
+	 * @param fichier le fichier binaire
+	 * @return le {@link ProblemeCARP} lu
+	 * @throws IOException si le fichier ne peut être lu ou n'est pas une instance binaire valide
+	 * @since 2012
+	 * @see ProblemeCARP#initialiserDistancier()
+	 */
+	public static ProblemeCARP lire(Path fichier) throws IOException {
+		try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.READ)) {
+			long tailleFichier = canal.size();
+			if (tailleFichier < TAILLE_ENTETE)
+				throw invalide(fichier, "en-tête incomplet");
+
+			ByteBuffer entete = canal.map(FileChannel.MapMode.READ_ONLY, 0, TAILLE_ENTETE).order(ByteOrder.LITTLE_ENDIAN);
+			if (entete.getInt() != SIGNATURE)
+				throw invalide(fichier, "signature inconnue");
+			int version = entete.getInt();
+			if (version != VERSION)
+				throw invalide(fichier, "version " + version + " non prise en charge");
+
+			int options = entete.getInt();
+			int nbNoeuds = entete.getInt();
+			int nbTaches = entete.getInt();
+			int nbNonRequises = entete.getInt();
+			int nbConditions = entete.getInt();
+			int tailleTextes = entete.getInt();
+			long positionDonnees = entete.getLong();
+			long positionDistances = entete.getLong();
+
+			long finDonnees = positionDonnees + 16L * nbTaches + 12L * nbNonRequises;
+			boolean avecDistances = (options & OPTION_DISTANCES) != 0;
+			if (nbNoeuds < 1 || nbTaches < 0 || nbNonRequises < 0 || nbConditions < 0 || tailleTextes < 0
+					|| positionDonnees < TAILLE_ENTETE + tailleTextes || finDonnees > Integer.MAX_VALUE
+					|| tailleFichier != (avecDistances ? positionDistances + 4L * nbNoeuds * nbNoeuds : finDonnees)
+					|| (avecDistances && positionDistances < finDonnees))
+				throw invalide(fichier, "tailles incohérentes");
+
+			MappedByteBuffer contenu = canal.map(FileChannel.MapMode.READ_ONLY, 0, finDonnees);
+			contenu.order(ByteOrder.LITTLE_ENDIAN);
+
+			ProblemeCARP prob = new ProblemeCARP();
+			contenu.position(TAILLE_ENTETE);
+			prob.setNom(lireTexte(contenu));
+			for (int c = 0; c < nbConditions; c++) {
+				String nom = lireTexte(contenu);
+				prob.getConditions().add(new Condition<Integer>(nom, contenu.getInt()));
+			}
+
+			int[] departs = new int[nbTaches];
+			int[] arrivees = new int[nbTaches];
+			float[] couts = new float[nbTaches];
+			float[] demandes = new float[nbTaches];
+			int[] departsNonRequises = new int[nbNonRequises];
+			int[] arriveesNonRequises = new int[nbNonRequises];
+			float[] coutsNonRequises = new float[nbNonRequises];
+
+			contenu.position((int) positionDonnees);
+			contenu.asIntBuffer().get(departs);
+			contenu.position(contenu.position() + 4 * nbTaches);
+			contenu.asIntBuffer().get(arrivees);
+			contenu.position(contenu.position() + 4 * nbTaches);
+			contenu.asFloatBuffer().get(couts);
+			contenu.position(contenu.position() + 4 * nbTaches);
+			contenu.asFloatBuffer().get(demandes);
+			contenu.position(contenu.position() + 4 * nbTaches);
+			contenu.asIntBuffer().get(departsNonRequises);
+			contenu.position(contenu.position() + 4 * nbNonRequises);
+			contenu.asIntBuffer().get(arriveesNonRequises);
+			contenu.position(contenu.position() + 4 * nbNonRequises);
+			contenu.asFloatBuffer().get(coutsNonRequises);
+
+			verifierNoeuds(fichier, departs, nbNoeuds);
+			verifierNoeuds(fichier, arrivees, nbNoeuds);
+			verifierNoeuds(fichier, departsNonRequises, nbNoeuds);
+			verifierNoeuds(fichier, arriveesNonRequises, nbNoeuds);
+
+			// Remise à 1 du compteur des arcs et des noeuds
+			Noeud.init();
+			Arc.init();
+
+			List<Noeud> noeuds = new ArrayList<Noeud>(nbNoeuds);
+			for (int i = 0; i < nbNoeuds; i++)
+				noeuds.add(new Noeud());
+
+			// Les tâches sont recréées dans le sens du fichier texte d'origine
+			List<Arc> taches = new ArrayList<Arc>(nbTaches);
+			for (int t = 0; t < nbTaches; t++)
+				taches.add(LecteurCARP.creerTache(noeuds.get(arrivees[t]), noeuds.get(departs[t]), couts[t], demandes[t]));
+
+			prob.initialiserGraphe(new GrapheCARP(noeuds, taches, departs, arrivees, couts, demandes,
+					departsNonRequises, arriveesNonRequises, coutsNonRequises));
+
+			if (avecDistances)
+				prob.utiliserDistancier(CacheDistancier.projeterDistances(canal, positionDistances, nbNoeuds));
+
+			return prob;
+		}
+	}
+
+	private static void ecrireTexte(ByteBuffer contenu, byte[] texte) {
+		contenu.putInt(texte.length).put(texte);
+	}
+
+	private static String lireTexte(ByteBuffer contenu) throws IOException {
+		int longueur = contenu.getInt();
+		if (longueur < 0 || longueur > contenu.remaining())
+			throw new IOException("Fichier binaire invalide : texte tronqué");
+
+		byte[] texte = new byte[longueur];
+		contenu.get(texte);
+		return new String(texte, UTF8);
+	}
+
+	private static void verifierNoeuds(Path fichier, int[] noeuds, int nbNoeuds) throws IOException {
+		for (int n : noeuds)
+			if (n < 0 || n >= nbNoeuds)
+				throw invalide(fichier, "noeud hors de [0, " + nbNoeuds + "[");
+	}
+
+	private static IOException invalide(Path fichier, String message) {
+		return new IOException("Fichier binaire invalide " + fichier + " : " + message);
+	}
+
+	private static long aligner(long position, int alignement) {
+		return (position + alignement - 1) / alignement * alignement;
+	}
+}
@@ -0,0 +1,489 @@
+package carp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import seisco.util.Condition;
+import seisco.util.Propriete;
+import seisco.util.graphe.Arc;
+import seisco.util.graphe.Cout;
+import seisco.util.graphe.Noeud;
+
+/**
+ * <p>
+ * Lit une instance au format décrit dans
+ * {@link ProblemeCARP#loadFromFile(java.lang.String)}.
+ * </p>
+ * <p>
+ * Le fichier est lu par blocs d'octets à travers un canal NIO, et les
+ * nombres sont décodés directement depuis les octets, sans créer de
+ * {@link String} intermédiaire. Les tableaux primitifs des tâches du
+ * {@link GrapheCARP} sont remplis pendant la lecture. Une ligne mal formée
+ * provoque une {@link IOException} indiquant son numéro.
+ * </p>
+ *
+ * @version 2012
+ * @see ProblemeCARP#loadFromFile(java.nio.file.Path)
+ * @see ProblemeCARP#loadFromStream(java.io.InputStream)
+ */
+public class LecteurCARP {
+
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+	private static final int TAILLE_TAMPON = 1 << 16;
+
+	/** Premier mot de la ligne d'en-tête de la section des arêtes non requises. */
+	static final String ENTETE_NON_REQUISES = "DEPART";
+
+	/** Puissances de 10 exactes en float (jusqu'à 10^10). */
+	private static final float[] PUISSANCES_10 = {
+		1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+	};
+
+	private final ReadableByteChannel canal;
+	private final ByteBuffer tampon = ByteBuffer.allocate(TAILLE_TAMPON);
+	private final byte[] octets = tampon.array();
+	private final StringBuilder texte = new StringBuilder(32);
+	private int position = 0;
+	private int limite = 0;
+	private int ligne = 1;
+	private boolean finCanal = false;
+
+	/**
+	 * <p>Instancie un lecteur sur un canal ouvert.
+	 *
+	 * @param canal le canal à lire, qui n'est pas fermé par le lecteur
+	 * @since 2012
+	 */
+	public LecteurCARP(ReadableByteChannel canal) {
+		this.canal = canal;
+	}
+
+	/**
+	 * <p>Lit une instance depuis un fichier.
+	 *
+	 * @param fichier le fichier de l'instance
+	 * @return le {@link ProblemeCARP} lu, sans son distancier
+	 * @throws IOException si le fichier ne peut être lu ou est mal formé
+	 * @since 2012
+	 */
+	public static ProblemeCARP lire(Path fichier) throws IOException {
+		try (FileChannel c = FileChannel.open(fichier, StandardOpenOption.READ)) {
+			return new LecteurCARP(c).lireProbleme();
+		}
+	}
+
+	/**
+	 * <p>Lit une instance depuis un flux, qui n'est pas fermé.
+	 *
+	 * @param flux le flux de l'instance
+	 * @return le {@link ProblemeCARP} lu, sans son distancier
+	 * @throws IOException si le flux ne peut être lu ou est mal formé
+	 * @since 2012
+	 */
+	public static ProblemeCARP lire(InputStream flux) throws IOException {
+		return new LecteurCARP(Channels.newChannel(flux)).lireProbleme();
+	}
+
+	/**
+	 * <p>
+	 * Lit une instance complète : nom, conditions, nombre de noeuds,
+	 * tâches et arêtes non requises éventuelles. Le distancier du problème
+	 * n'est pas initialisé.
+	 * </p>
+	 *
+	 * @return le {@link ProblemeCARP} lu, dont le {@link GrapheCARP} est initialisé
+	 * @throws IOException si le canal ne peut être lu ou est mal formé
+	 * @since 2012
+	 * @see ProblemeCARP#initialiserDistancier()
+	 */
+	public ProblemeCARP lireProbleme() throws IOException {
+		ProblemeCARP prob = new ProblemeCARP();
+
+		// Remise à 1 du compteur des arcs et des noeuds
+		Noeud.init();
+		Arc.init();
+
+		// Premiere ligne = nom
+		lireMot();
+		prob.setNom(lireMot());
+		finirLigne();
+
+		// Conditions
+		lireMot();
+		int nbConditions = lireEntier();
+		finirLigne();
+		for (int i = 0; i < nbConditions; i++) {
+			String nom = lireMot();
+			prob.getConditions().add(new Condition<Integer>(nom, lireEntier()));
+			finirLigne();
+		}
+
+		// Noeuds
+		lireMot();
+		int nbNoeuds = lireEntier();
+		finirLigne();
+		prob.getConditions().add(new Condition<Integer>(ProblemeCARP.NOM_CONDITION_NB_SOMMETS, nbNoeuds));
+
+		List<Noeud> noeuds = new ArrayList<Noeud>(nbNoeuds);
+		for (int i = 0; i < nbNoeuds; i++)
+			noeuds.add(new Noeud());
+
+		// Nombre de taches
+		lireMot();
+		int nbTaches = lireEntier();
+		finirLigne();
+
+		// Labels (Noeud départ, Noeud arrivée, ...)
+		finirLigne();
+
+		// Taches
+		List<Arc> taches = new ArrayList<Arc>(nbTaches);
+		int[] departs = new int[nbTaches];
+		int[] arrivees = new int[nbTaches];
+		float[] couts = new float[nbTaches];
+		float[] demandes = new float[nbTaches];
+
+		for (int t = 0; t < nbTaches; t++) {
+			int noeudDepart = lireEntier();
+			int noeudArrive = lireEntier();
+			float cout = lireReel();
+			float demande = lireReel();
+
+			if (noeudDepart < 1 || noeudDepart > nbNoeuds || noeudArrive < 1 || noeudArrive > nbNoeuds)
+				throw erreur("noeud hors de [1, " + nbNoeuds + "]");
+			finirLigne();
+
+			taches.add(creerTache(noeuds.get(noeudDepart - 1), noeuds.get(noeudArrive - 1), cout, demande));
+			departs[t] = noeudArrive - 1;
+			arrivees[t] = noeudDepart - 1;
+			couts[t] = cout;
+			demandes[t] = demande;
+		}
+
+		/*
+		 * Arêtes non requises, annoncées par NB_ARRETE_NOREQ : la section
+		 * n'est lue que si elle commence par sa ligne d'en-tête. Les anciens
+		 * fichiers donnent le nombre sans la section, et le texte qui suit
+		 * les tâches est alors ignoré comme il l'a toujours été.
+		 */
+		int nbNonRequises = 0;
+		if (prob.conditionPresente(ProblemeCARP.NOM_CONDITION_NB_ARRETE_NOREQ))
+			nbNonRequises = (Integer) prob.getCondition(ProblemeCARP.NOM_CONDITION_NB_ARRETE_NOREQ).getValeur();
+		if (nbNonRequises > 0 && sauterLignesVides() && lireMot().equals(ENTETE_NON_REQUISES))
+			finirLigne();
+		else
+			nbNonRequises = 0;
+
+		int[] departsNonRequises = new int[nbNonRequises];
+		int[] arriveesNonRequises = new int[nbNonRequises];
+		float[] coutsNonRequises = new float[nbNonRequises];
+		for (int a = 0; a < nbNonRequises; a++) {
+			if (!sauterLignesVides())
+				throw erreur("arête non requise attendue");
+			int noeudDepart = lireEntier();
+			int noeudArrive = lireEntier();
+			float cout = lireReel();
+
+			if (noeudDepart < 1 || noeudDepart > nbNoeuds || noeudArrive < 1 || noeudArrive > nbNoeuds)
+				throw erreur("noeud hors de [1, " + nbNoeuds + "]");
+			finirLigne();
+
+			departsNonRequises[a] = noeudDepart - 1;
+			arriveesNonRequises[a] = noeudArrive - 1;
+			coutsNonRequises[a] = cout;
+		}
+
+		prob.initialiserGraphe(new GrapheCARP(noeuds, taches, departs, arrivees, couts, demandes,
+				departsNonRequises, arriveesNonRequises, coutsNonRequises));
+		return prob;
+	}
+
+	/**
+	 * <p>
+	 * Crée la tâche reliant deux noeuds et l'ajoute à leurs adjacences. La
+	 * tâche est orientée de l'arrivée vers le départ, comme l'a toujours
+	 * fait le chargement.
+	 * </p>
+	 *
+	 * @param depart le noeud de départ indiqué dans le fichier
+	 * @param arrivee le noeud d'arrivée indiqué dans le fichier
+	 * @param cout le coût de parcours de la tâche
+	 * @param demande la demande de la tâche
+	 * @return la tâche ({@link Arc}) créée
+	 * @since 2012
+	 */
+	static Arc creerTache(Noeud depart, Noeud arrivee, float cout, float demande) {
+		Arc tache = new Arc(arrivee, depart);
+		tache.ajouterCout(new Cout(Arc.NOM_COUT_PARCOURS, cout));
+		tache.ajouterPropriete(new Propriete(GrapheCARP.NOM_PROPRIETE_DEMANDE, demande));
+
+		// Ajout d'adjacence au noeud
+		arrivee.addAdjacent(tache);
+		depart.addAdjacent(tache.clone().swap());
+
+		return tache;
+	}
+
+	/**
+	 * <p>Retourne le numéro de la ligne en cours de lecture.
+	 *
+	 * @return le numéro de ligne, à partir de 1
+	 * @since 2012
+	 */
+	public int getLigne() {
+		return ligne;
+	}
+
+	/**
+	 * <p>
+	 * Lit un mot, c'est-à-dire une suite de caractères sans espace ni
+	 * deux-points, sur la ligne courante.
+	 * </p>
+	 *
+	 * @return le mot lu
+	 * @throws IOException si la ligne ne contient plus de mot
+	 * @since 2012
+	 */
+	private String lireMot() throws IOException {
+		if (!sauterSeparateurs())
+			throw erreur("mot attendu");
+
+		StringBuilder mot = new StringBuilder();
+		while (remplir() && !estSeparateur(octets[position]) && !estFinLigne(octets[position])) {
+			int debut = position;
+			while (position < limite && !estSeparateur(octets[position]) && !estFinLigne(octets[position]))
+				position++;
+			mot.append(new String(octets, debut, position - debut, ASCII));
+		}
+
+		return mot.toString();
+	}
+
+	/**
+	 * <p>Lit un entier décimal, éventuellement signé, sur la ligne courante.
+	 *
+	 * @return l'entier lu
+	 * @throws IOException si la ligne ne contient pas d'entier à cet endroit
+	 * @since 2012
+	 */
+	private int lireEntier() throws IOException {
+		if (!sauterSeparateurs())
+			throw erreur("entier attendu");
+
+		boolean negatif = lireSigne();
+		long valeur = 0;
+		int nbChiffres = 0;
+		while (remplir() && estChiffre(octets[position])) {
+			valeur = valeur * 10 + (octets[position++] - '0');
+			if (valeur > (long) Integer.MAX_VALUE + 1)
+				throw erreur("entier trop grand");
+			nbChiffres++;
+		}
+
+		if (nbChiffres == 0 || (remplir() && !estSeparateur(octets[position]) && !estFinLigne(octets[position])))
+			throw erreur("entier attendu");
+
+		valeur = negatif ? -valeur : valeur;
+		if (valeur > Integer.MAX_VALUE)
+			throw erreur("entier trop grand");
+
+		return (int) valeur;
+	}
+
+	/**
+	 * <p>
+	 * Lit un réel décimal, éventuellement signé et avec exposant, sur la
+	 * ligne courante. Le résultat est identique à celui de
+	 * {@link Float#parseFloat(java.lang.String)} : si la mantisse tient sur
+	 * 24 bits et que l'exposant est compris entre -10 et 10, la mantisse et
+	 * la puissance de 10 sont exactes en float, et une seule opération
+	 * (donc un seul arrondi) suffit. Les autres valeurs, rares dans les
+	 * instances, sont confiées à Float.parseFloat.
+	 * </p>
+	 *
+	 * @return le réel lu
+	 * @throws IOException si la ligne ne contient pas de réel à cet endroit
+	 * @since 2012
+	 */
+	private float lireReel() throws IOException {
+		if (!sauterSeparateurs())
+			throw erreur("réel attendu");
+
+		texte.setLength(0);
+		boolean negatif = lireSigne();
+		if (negatif)
+			texte.append('-');
+
+		long mantisse = 0;
+		int nbChiffres = 0, exposant = 0;
+		boolean virgule = false;
+		while (remplir()) {
+			byte b = octets[position];
+			if (estChiffre(b)) {
+				if (mantisse < (1L << 24)) {
+					mantisse = mantisse * 10 + (b - '0');
+					if (virgule)
+						exposant--;
+				} else if (b != '0' || !virgule)
+					// Trop de chiffres significatifs : on force le recours à parseFloat
+					mantisse = Long.MAX_VALUE;
+				nbChiffres++;
+			} else if (b == '.' && !virgule)
+				virgule = true;
+			else if ((b == 'e' || b == 'E') && nbChiffres > 0) {
+				texte.append((char) b);
+				position++;
+				boolean exposantNegatif = lireSigne();
+				if (exposantNegatif)
+					texte.append('-');
+
+				int e = 0, nbChiffresExposant = 0;
+				while (remplir() && estChiffre(octets[position])) {
+					texte.append((char) octets[position]);
+					e = Math.min(e * 10 + (octets[position++] - '0'), 1000);
+					nbChiffresExposant++;
+				}
+
+				if (nbChiffresExposant == 0)
+					throw erreur("exposant attendu");
+				exposant += exposantNegatif ? -e : e;
+				break;
+			} else
+				break;
+
+			texte.append((char) b);
+			position++;
+		}
+
+		if (nbChiffres == 0 || (remplir() && !estSeparateur(octets[position]) && !estFinLigne(octets[position])))
+			throw erreur("réel attendu");
+
+		if (mantisse < (1L << 24) && exposant >= -10 && exposant <= 10) {
+			float valeur = exposant >= 0 ? mantisse * PUISSANCES_10[exposant] : mantisse / PUISSANCES_10[-exposant];
+			return negatif ? -valeur : valeur;
+		}
+
+		return Float.parseFloat(texte.toString());
+	}
+
+	/**
+	 * <p>Lit un signe + ou - s'il est présent.
+	 *
+	 * @return <b>true</b> si un signe - a été lu
+	 * @throws IOException si le canal ne peut être lu
+	 * @since 2012
+	 */
+	private boolean lireSigne() throws IOException {
+		if (remplir() && (octets[position] == '-' || octets[position] == '+'))
+			return octets[position++] == '-';
+
+		return false;
+	}
+
+	/**
+	 * <p>Ignore la fin de la ligne courante et passe à la suivante.
+	 *
+	 * @throws IOException si le canal ne peut être lu
+	 * @since 2012
+	 */
+	private void finirLigne() throws IOException {
+		while (remplir()) {
+			byte b = octets[position++];
+			if (b == '\n') {
+				ligne++;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * <p>Passe les lignes vides ou blanches jusqu'à la prochaine ligne utile.
+	 *
+	 * @return <b>false</b> si le canal est terminé
+	 * @throws IOException si le canal ne peut être lu
+	 * @since 2012
+	 */
+	private boolean sauterLignesVides() throws IOException {
+		while (remplir()) {
+			byte b = octets[position];
+			if (b == '\n')
+				ligne++;
+			else if (b != '\r' && !estSeparateur(b))
+				return true;
+			position++;
+		}
+
+		return false;
+	}
+
+	/**
+	 * <p>Avance jusqu'au prochain caractère utile de la ligne courante.
+	 *
+	 * @return <b>false</b> si la ligne (ou le canal) est terminée
+	 * @throws IOException si le canal ne peut être lu
+	 * @since 2012
+	 */
+	private boolean sauterSeparateurs() throws IOException {
+		while (remplir() && estSeparateur(octets[position]))
+			position++;
+
+		return remplir() && !estFinLigne(octets[position]);
+	}
+
+	/**
+	 * <p>S'assure qu'au moins un octet est disponible dans le tampon.
+	 *
+	 * @return <b>false</b> si le canal est épuisé
+	 * @throws IOException si le canal ne peut être lu
+	 * @since 2012
+	 */
+	private boolean remplir() throws IOException {
+		if (position < limite)
+			return true;
+
+		while (!finCanal) {
+			tampon.clear();
+			int lus = canal.read(tampon);
+			if (lus < 0)
+				finCanal = true;
+			else if (lus > 0) {
+				position = 0;
+				limite = lus;
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * <p>Construit l'exception signalant une ligne mal formée.
+	 *
+	 * @param message la nature de l'erreur
+	 * @return l'{@link IOException} à lever
+	 * @since 2012
+	 */
+	private IOException erreur(String message) {
+		return new IOException("Ligne " + ligne + " : " + message);
+	}
+
+	private static boolean estSeparateur(byte b) {
+		return b == ' ' || b == '\t' || b == ':';
+	}
+
+	private static boolean estFinLigne(byte b) {
+		return b == '\n' || b == '\r';
+	}
+
+	private static boolean estChiffre(byte b) {
+		return b >= '0' && b <= '9';
+	}
+}
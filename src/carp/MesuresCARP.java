@@ -0,0 +1,455 @@
+package carp;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * <p>
+ * Mesures des évaluations faites par un {@link ProblemeCARP} : nombre
+ * d'évaluations, durées de la découpe et de la construction du résultat
+ * (en nanosecondes), nombre de tournées par solution, succès du cache des
+ * évaluations et, sur demande, octets alloués par évaluation.
+ * </p>
+ * <p>
+ * Les mesures sont enregistrées sans verrou par les threads d'évaluation
+ * (voir {@link Compteur} et {@link Histogramme}). Elles peuvent être
+ * consultées par JMX ({@link #enregistrerMBean(java.lang.String)}) ou
+ * ajoutées périodiquement à un fichier CSV
+ * ({@link #demarrerExport(java.nio.file.Path, long, java.util.concurrent.TimeUnit)}).
+ * </p>
+ *
+ * @version 2012
+ * @see ProblemeCARP#getMesures()
+ */
+public class MesuresCARP implements MesuresCARPMBean {
+
+	private static final String ENTETE_CSV = "horodatage;evaluations;evaluations_cout;"
+			+ "decoupe_moyenne_ns;decoupe_mediane_ns;decoupe_99_ns;decoupe_max_ns;"
+			+ "resultat_moyen_ns;resultat_99_ns;resultat_max_ns;"
+			+ "tournees_moyenne;allocation_moyenne_octets;cache_succes;cache_echecs";
+
+	private final ProblemeCARP probleme;
+	private final Compteur evaluations = new Compteur();
+	private final Compteur evaluationsCout = new Compteur();
+	private final Histogramme decoupes = new Histogramme();
+	private final Compteur dureeDecoupesCompletes = new Compteur();
+	private final Histogramme resultats = new Histogramme();
+	private final Histogramme tournees = new Histogramme();
+	private final Histogramme allocations = new Histogramme();
+	private volatile boolean mesureAllocations = false;
+	private ObjectName nomMBean;
+	private ScheduledExecutorService export;
+
+	/**
+	 * <p>Crée les mesures, vides, d'un problème.
+	 *
+	 * @param probleme le {@link ProblemeCARP} mesuré
+	 * @since 2012
+	 */
+	MesuresCARP(ProblemeCARP probleme) {
+		this.probleme = probleme;
+	}
+
+	/**
+	 * <p>Enregistre une découpe complète, résultat compris.
+	 *
+	 * @param dureeDecoupe durée de la découpe, en nanosecondes
+	 * @param dureeResultat durée de la construction du résultat, en nanosecondes
+	 * @param nbTournees nombre de tournées de la solution
+	 * @since 2012
+	 */
+	void evaluation(long dureeDecoupe, long dureeResultat, int nbTournees) {
+		evaluations.incrementer();
+		decoupes.enregistrer(dureeDecoupe);
+		dureeDecoupesCompletes.ajouter(dureeDecoupe);
+		resultats.enregistrer(dureeResultat);
+		tournees.enregistrer(nbTournees);
+	}
+
+	/**
+	 * <p>Enregistre une découpe dont seul le coût est calculé.
+	 *
+	 * @param dureeDecoupe durée de la découpe, en nanosecondes
+	 * @since 2012
+	 */
+	void evaluationCout(long dureeDecoupe) {
+		evaluationsCout.incrementer();
+		decoupes.enregistrer(dureeDecoupe);
+	}
+
+	/**
+	 * <p>Relève le nombre d'octets alloués par le thread courant, si les allocations sont mesurées.
+	 *
+	 * @return le nombre d'octets alloués, ou -1 si les allocations ne sont pas mesurées
+	 * @since 2012
+	 */
+	long debutAllocations() {
+		return mesureAllocations ? Allocations.getOctets() : -1;
+	}
+
+	/**
+	 * <p>Enregistre les octets alloués depuis {@link #debutAllocations()}.
+	 *
+	 * @param debut la valeur retournée par {@link #debutAllocations()}
+	 * @since 2012
+	 */
+	void finAllocations(long debut) {
+		if (debut >= 0)
+			allocations.enregistrer(Allocations.getOctets() - debut);
+	}
+
+	/**
+	 * <p>Retourne la répartition des durées de découpe, en nanosecondes.
+	 *
+	 * @return l'{@link Histogramme} des découpes
+	 * @since 2012
+	 */
+	public Histogramme getDecoupes() {
+		return decoupes;
+	}
+
+	/**
+	 * <p>Retourne la répartition des durées de construction des résultats, en nanosecondes.
+	 *
+	 * @return l'{@link Histogramme} des constructions de {@link ResultatCARP}
+	 * @since 2012
+	 */
+	public Histogramme getResultats() {
+		return resultats;
+	}
+
+	/**
+	 * <p>
+	 * Retourne la durée cumulée des découpes complètes, sans les découpes
+	 * dont seul le coût est calculé, que l'{@link Histogramme} des découpes
+	 * compte aussi.
+	 * </p>
+	 *
+	 * @return la durée des découpes complètes, en nanosecondes
+	 * @since 2012
+	 * @see ProblemeCARP#getTimeBoucles()
+	 */
+	long getDureeDecoupesCompletes() {
+		return dureeDecoupesCompletes.getValeur();
+	}
+
+	/**
+	 * <p>Retourne la répartition du nombre de tournées par solution.
+	 *
+	 * @return l'{@link Histogramme} des nombres de tournées
+	 * @since 2012
+	 */
+	public Histogramme getTournees() {
+		return tournees;
+	}
+
+	/**
+	 * <p>Retourne la répartition des octets alloués par évaluation.
+	 *
+	 * @return l'{@link Histogramme} des allocations
+	 * @since 2012
+	 * @see #setMesureAllocations(boolean)
+	 */
+	public Histogramme getAllocations() {
+		return allocations;
+	}
+
+	@Override
+	public long getNbEvaluations() {
+		return evaluations.getValeur();
+	}
+
+	@Override
+	public long getNbEvaluationsCout() {
+		return evaluationsCout.getValeur();
+	}
+
+	@Override
+	public double getDecoupeMoyenne() {
+		return decoupes.getMoyenne();
+	}
+
+	@Override
+	public long getDecoupeMediane() {
+		return decoupes.getQuantile(0.5);
+	}
+
+	@Override
+	public long getDecoupe99() {
+		return decoupes.getQuantile(0.99);
+	}
+
+	@Override
+	public long getDecoupeMax() {
+		return decoupes.getMax();
+	}
+
+	@Override
+	public double getResultatMoyen() {
+		return resultats.getMoyenne();
+	}
+
+	@Override
+	public long getResultat99() {
+		return resultats.getQuantile(0.99);
+	}
+
+	@Override
+	public long getResultatMax() {
+		return resultats.getMax();
+	}
+
+	@Override
+	public double getTourneesMoyenne() {
+		return tournees.getMoyenne();
+	}
+
+	@Override
+	public double getAllocationMoyenne() {
+		return allocations.getMoyenne();
+	}
+
+	@Override
+	public long getNbSuccesCache() {
+		CacheEvaluations cache = probleme.getCacheEvaluations();
+		return cache == null ? 0 : cache.getNbSucces();
+	}
+
+	@Override
+	public long getNbEchecsCache() {
+		CacheEvaluations cache = probleme.getCacheEvaluations();
+		return cache == null ? 0 : cache.getNbEchecs();
+	}
+
+	@Override
+	public boolean isMesureAllocations() {
+		return mesureAllocations;
+	}
+
+	/**
+	 * <p>
+	 * Active ou désactive la mesure des octets alloués par évaluation,
+	 * désactivée par défaut. Elle repose sur
+	 * <code>com.sun.management.ThreadMXBean</code> et reste désactivée si la
+	 * JVM ne le fournit pas.
+	 * </p>
+	 *
+	 * @param mesure <b>true</b> pour mesurer les allocations
+	 * @since 2012
+	 */
+	@Override
+	public void setMesureAllocations(boolean mesure) {
+		if (mesure && !Allocations.estDisponible()) {
+			System.out.println("Erreur - la JVM ne permet pas de mesurer les allocations");
+			mesure = false;
+		}
+
+		mesureAllocations = mesure;
+	}
+
+	/**
+	 * <p>Remet toutes les mesures à zéro, sauf les compteurs du cache des évaluations.
+	 *
+	 * @since 2012
+	 */
+	@Override
+	public void reinitialiser() {
+		evaluations.reinitialiser();
+		evaluationsCout.reinitialiser();
+		decoupes.reinitialiser();
+		dureeDecoupesCompletes.reinitialiser();
+		resultats.reinitialiser();
+		tournees.reinitialiser();
+		allocations.reinitialiser();
+	}
+
+	/**
+	 * <p>
+	 * Publie les mesures dans le serveur JMX de la plateforme, sous le nom
+	 * <code>carp:type=MesuresCARP,name=<b>nom</b></code>.
+	 * </p>
+	 *
+	 * @param nom le nom distinguant ce problème des autres
+	 * @throws JMException si le nom est invalide ou déjà utilisé
+	 * @since 2012
+	 */
+	public synchronized void enregistrerMBean(String nom) throws JMException {
+		desenregistrerMBean();
+
+		ObjectName objectName = new ObjectName("carp:type=MesuresCARP,name=" + ObjectName.quote(nom));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		nomMBean = objectName;
+	}
+
+	/**
+	 * <p>Retire les mesures du serveur JMX, si elles y ont été publiées.
+	 *
+	 * @throws JMException si le retrait échoue
+	 * @since 2012
+	 */
+	public synchronized void desenregistrerMBean() throws JMException {
+		if (nomMBean != null) {
+			MBeanServer serveur = ManagementFactory.getPlatformMBeanServer();
+			if (serveur.isRegistered(nomMBean))
+				serveur.unregisterMBean(nomMBean);
+			nomMBean = null;
+		}
+	}
+
+	/**
+	 * <p>Retourne les noms des colonnes des lignes CSV, séparés par des points-virgules.
+	 *
+	 * @return l'entête du fichier CSV
+	 * @since 2012
+	 * @see #getLigneCSV()
+	 */
+	public String getEnteteCSV() {
+		return ENTETE_CSV;
+	}
+
+	/**
+	 * <p>Retourne l'état courant des mesures sous la forme d'une ligne CSV.
+	 *
+	 * @return les mesures, séparées par des points-virgules
+	 * @since 2012
+	 * @see #getEnteteCSV()
+	 */
+	public String getLigneCSV() {
+		return String.format(Locale.ROOT, "%d;%d;%d;%.1f;%d;%d;%d;%.1f;%d;%d;%.2f;%.1f;%d;%d",
+				System.currentTimeMillis(), getNbEvaluations(), getNbEvaluationsCout(),
+				getDecoupeMoyenne(), getDecoupeMediane(), getDecoupe99(), getDecoupeMax(),
+				getResultatMoyen(), getResultat99(), getResultatMax(),
+				getTourneesMoyenne(), getAllocationMoyenne(), getNbSuccesCache(), getNbEchecsCache());
+	}
+
+	/**
+	 * <p>
+	 * Ajoute périodiquement une ligne CSV à un fichier, depuis un thread
+	 * démon. L'entête est écrit si le fichier est vide ou n'existe pas. Un
+	 * export déjà en cours est arrêté.
+	 * </p>
+	 *
+	 * @param fichier le fichier CSV
+	 * @param periode l'intervalle entre deux lignes
+	 * @param unite l'unité de la période
+	 * @since 2012
+	 * @see #arreterExport()
+	 */
+	public synchronized void demarrerExport(final Path fichier, long periode, TimeUnit unite) {
+		arreterExport();
+
+		export = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "carp-mesures");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		export.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				exporter(fichier);
+			}
+		}, periode, periode, unite);
+	}
+
+	/**
+	 * <p>Arrête l'export périodique des mesures, s'il est en cours.
+	 *
+	 * @since 2012
+	 */
+	public synchronized void arreterExport() {
+		if (export != null) {
+			export.shutdown();
+			export = null;
+		}
+	}
+
+	/**
+	 * <p>Ajoute une ligne CSV au fichier, précédée de l'entête s'il est vide.
+	 *
+	 * @param fichier le fichier CSV
+	 * @since 2012
+	 */
+	private void exporter(Path fichier) {
+		try {
+			boolean vide = !Files.exists(fichier) || Files.size(fichier) == 0;
+			try (Writer ecrivain = Files.newBufferedWriter(fichier, StandardCharsets.UTF_8,
+					StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+				if (vide)
+					ecrivain.write(ENTETE_CSV + "\n");
+				ecrivain.write(getLigneCSV() + "\n");
+			}
+		} catch (IOException e) {
+			System.out.println("Erreur - export des mesures impossible : " + e.getMessage());
+		}
+	}
+
+	/**
+	 * <p>Retourne les mesures sous une forme lisible, une par ligne.
+	 *
+	 * @return les mesures sous la forme d'un {@link String}
+	 * @since 2012
+	 */
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT,
+				"Evaluations : %d (coût seul : %d)%n"
+				+ "Découpe (ns) : moyenne %.1f, médiane %d, 99%% %d, max %d%n"
+				+ "Résultat (ns) : moyenne %.1f, 99%% %d, max %d%n"
+				+ "Tournées par solution : %.2f%n"
+				+ "Octets alloués par évaluation : %.1f%n"
+				+ "Cache : %d succès, %d échecs%n",
+				getNbEvaluations(), getNbEvaluationsCout(),
+				getDecoupeMoyenne(), getDecoupeMediane(), getDecoupe99(), getDecoupeMax(),
+				getResultatMoyen(), getResultat99(), getResultatMax(),
+				getTourneesMoyenne(), getAllocationMoyenne(), getNbSuccesCache(), getNbEchecsCache());
+	}
+
+	/**
+	 * <p>Accès aux octets alloués par thread, chargé à la première mesure.
+	 */
+	private static final class Allocations {
+
+		private static final com.sun.management.ThreadMXBean THREADS = charger();
+
+		private static com.sun.management.ThreadMXBean charger() {
+			try {
+				java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+				if (threads instanceof com.sun.management.ThreadMXBean) {
+					com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) threads;
+					if (sun.isThreadAllocatedMemorySupported()) {
+						sun.setThreadAllocatedMemoryEnabled(true);
+						return sun;
+					}
+				}
+			} catch (UnsupportedOperationException e) {
+				// mesure indisponible
+			}
+
+			return null;
+		}
+
+		static boolean estDisponible() {
+			return THREADS != null;
+		}
+
+		static long getOctets() {
+			return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+	}
+}
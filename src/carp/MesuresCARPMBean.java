@@ -0,0 +1,45 @@
+package carp;
+
+/**
+ * <p>
+ * Interface JMX des mesures d'un {@link ProblemeCARP}. Les durées sont en
+ * nanosecondes.
+ * </p>
+ *
+ * @version 2012
+ * @see MesuresCARP#enregistrerMBean(java.lang.String)
+ */
+public interface MesuresCARPMBean {
+
+	long getNbEvaluations();
+
+	long getNbEvaluationsCout();
+
+	double getDecoupeMoyenne();
+
+	long getDecoupeMediane();
+
+	long getDecoupe99();
+
+	long getDecoupeMax();
+
+	double getResultatMoyen();
+
+	long getResultat99();
+
+	long getResultatMax();
+
+	double getTourneesMoyenne();
+
+	double getAllocationMoyenne();
+
+	long getNbSuccesCache();
+
+	long getNbEchecsCache();
+
+	boolean isMesureAllocations();
+
+	void setMesureAllocations(boolean mesure);
+
+	void reinitialiser();
+}
@@ -0,0 +1,201 @@
+package carp;
+
+/**
+ * <p>
+ * Découpe d'une tournée géante dans laquelle chaque tournée parcourt ses
+ * tâches dans le meilleur sens possible, au lieu du sens glouton de la
+ * découpe par défaut.
+ * </p>
+ * <p>
+ * Pour une tâche de départ i, la tournée est prolongée tâche par tâche en
+ * conservant deux coûts : celui du meilleur parcours depuis le dépôt dont la
+ * dernière tâche est prise dans son sens, et celui dont elle est prise à
+ * l'envers. Passer à la tâche suivante ne demande que quatre distances
+ * entre tâches : la découpe reste en O(n.k). Les sens retenus ne sont
+ * reconstruits que pour les tournées du plus court chemin, et sont rangés
+ * dans le tableau des inversions de la solution ; les {@link seisco.util.graphe.Arc}
+ * ne sont jamais modifiés, et le résultat ne dépend pas de l'ordre dans
+ * lequel les tournées sont calculées. En cas d'égalité, le sens de la
+ * tâche est conservé.
+ * </p>
+ *
+ * @version 2012
+ * @see ProblemeCARP#setOrientationOptimale(boolean)
+ */
+final class OrientationOptimale {
+
+	private OrientationOptimale() {
+	}
+
+	/**
+	 * <p>
+	 * Découpe une tournée géante en orientant au mieux chaque tournée. En
+	 * sortie, labels et predecesseurs décrivent le plus court chemin comme
+	 * après la découpe par défaut, et inversions le sens de parcours des
+	 * tâches de ses tournées.
+	 * </p>
+	 *
+	 * @param sequence les numéros de tâche de la tournée géante
+	 * @param nbTaches le nombre de tâches de la tournée géante
+	 * @param graphe le graphe des tâches
+	 * @param entreTaches les distances à vide entre les tâches et le dépôt
+	 * @param capacitecamion la capacité d'un camion
+	 * @param inversions reçoit le sens de parcours de chaque tâche (au moins nbTaches cases)
+	 * @param labels reçoit le coût minimum pour atteindre chaque noeud (au moins nbTaches+1 cases)
+	 * @param predecesseurs reçoit le prédécesseur de chaque noeud (au moins nbTaches+1 cases)
+	 * @param espace les tableaux de travail du thread courant
+	 * @since 2012
+	 */
+	static void decouper(int[] sequence, int nbTaches, GrapheCARP graphe, DistancierTaches entreTaches,
+			float capacitecamion, boolean[] inversions, float[] labels, int[] predecesseurs, EspaceTravail espace) {
+
+		float[] tournees = espace.reserver(nbTaches).getTournees();
+		FitnessCARP.initialiserLabels(labels, predecesseurs, nbTaches);
+
+		for (int i = 0; i < nbTaches; i++) {
+			int nb = parcourir(sequence, nbTaches, i, graphe, entreTaches, capacitecamion, tournees);
+			for (int m = 0; m < nb; m++)
+				FitnessCARP.relacher(labels, predecesseurs, i, i + 1 + m, tournees[m]);
+		}
+
+		orienterChemin(sequence, nbTaches, graphe, entreTaches, inversions, predecesseurs, espace.getChoix());
+	}
+
+	/**
+	 * <p>
+	 * Calcule le coût de chaque tournée viable partant de la tâche i, chaque
+	 * tournée étant orientée au mieux.
+	 * </p>
+	 *
+	 * @param sequence les numéros de tâche de la tournée géante
+	 * @param nbTaches le nombre de tâches de la tournée géante
+	 * @param i la position de la première tâche des tournées
+	 * @param graphe le graphe des tâches
+	 * @param entreTaches les distances à vide entre les tâches et le dépôt
+	 * @param capacitecamion la capacité d'un camion
+	 * @param tournees reçoit en m le coût de la tournée des tâches i à i+m (arc (i, i+1+m))
+	 * @return le nombre de tournées viables partant de i
+	 * @since 2012
+	 */
+	static int parcourir(int[] sequence, int nbTaches, int i, GrapheCARP graphe, DistancierTaches entreTaches,
+			float capacitecamion, float[] tournees) {
+		float[] couts = graphe.getCouts();
+		float[] demandes = graphe.getDemandes();
+
+		int tache = sequence[i];
+		float capacite = demandes[tache];
+		if (capacite > capacitecamion)
+			return 0;
+
+		// Meilleur coût depuis le dépôt, la dernière tâche étant dans son sens (0) ou à l'envers (1)
+		int etat0 = DistancierTaches.getEtat(tache, false);
+		int etat1 = etat0 ^ 1;
+		float cout0 = entreTaches.getDepuisDepot(etat0) + couts[tache];
+		float cout1 = entreTaches.getDepuisDepot(etat1) + couts[tache];
+
+		int nb = 0;
+		tournees[nb++] = Math.min(cout0 + entreTaches.getVersDepot(etat0), cout1 + entreTaches.getVersDepot(etat1));
+
+		for (int j = i + 1; j < nbTaches; j++) {
+			int suivante = sequence[j];
+			capacite += demandes[suivante];
+			if (capacite > capacitecamion)
+				break;
+
+			int suivant0 = DistancierTaches.getEtat(suivante, false);
+			int suivant1 = suivant0 ^ 1;
+			float nouveau0 = Math.min(cout0 + entreTaches.getDistance(etat0, suivant0),
+					cout1 + entreTaches.getDistance(etat1, suivant0)) + couts[suivante];
+			float nouveau1 = Math.min(cout0 + entreTaches.getDistance(etat0, suivant1),
+					cout1 + entreTaches.getDistance(etat1, suivant1)) + couts[suivante];
+
+			etat0 = suivant0;
+			etat1 = suivant1;
+			cout0 = nouveau0;
+			cout1 = nouveau1;
+			tournees[nb++] = Math.min(cout0 + entreTaches.getVersDepot(etat0), cout1 + entreTaches.getVersDepot(etat1));
+		}
+
+		return nb;
+	}
+
+	/**
+	 * <p>
+	 * Range dans inversions le meilleur sens des tâches de chaque tournée du
+	 * plus court chemin décrit par predecesseurs. Les tâches des noeuds non
+	 * atteints gardent leur sens.
+	 * </p>
+	 *
+	 * @param sequence les numéros de tâche de la tournée géante
+	 * @param nbTaches le nombre de tâches de la tournée géante
+	 * @param graphe le graphe des tâches
+	 * @param entreTaches les distances à vide entre les tâches et le dépôt
+	 * @param inversions reçoit le sens de parcours de chaque tâche
+	 * @param predecesseurs les prédécesseurs du plus court chemin
+	 * @param choix tableau de travail d'au moins nbTaches cases
+	 * @since 2012
+	 */
+	static void orienterChemin(int[] sequence, int nbTaches, GrapheCARP graphe, DistancierTaches entreTaches,
+			boolean[] inversions, int[] predecesseurs, boolean[] choix) {
+		for (int k = 0; k < nbTaches; k++)
+			inversions[k] = false;
+
+		if (predecesseurs[nbTaches] == Integer.MIN_VALUE)
+			return;
+
+		for (int j = nbTaches; j > 0; j = predecesseurs[j])
+			orienter(sequence, predecesseurs[j], j, graphe, entreTaches, inversions, choix);
+	}
+
+	/**
+	 * <p>
+	 * Range dans inversions le meilleur sens des tâches debut à fin-1,
+	 * parcourues en une seule tournée, en refaisant le calcul de
+	 * {@link #parcourir(int[], int, int, carp.GrapheCARP, carp.DistancierTaches, float, float[])}
+	 * avec la mémoire des choix.
+	 * </p>
+	 */
+	private static void orienter(int[] sequence, int debut, int fin, GrapheCARP graphe,
+			DistancierTaches entreTaches, boolean[] inversions, boolean[] choix1) {
+		float[] couts = graphe.getCouts();
+
+		int tache = sequence[debut];
+		int etat0 = DistancierTaches.getEtat(tache, false);
+		int etat1 = etat0 ^ 1;
+		float cout0 = entreTaches.getDepuisDepot(etat0) + couts[tache];
+		float cout1 = entreTaches.getDepuisDepot(etat1) + couts[tache];
+
+		/*
+		 * Pour chaque tâche et chaque sens, sens de la tâche précédente sur le
+		 * meilleur parcours : noté dans inversions si la tâche est dans son
+		 * sens, dans choix1 sinon, puis remplacé par le sens retenu en
+		 * remontant la tournée.
+		 */
+		for (int j = debut + 1; j < fin; j++) {
+			int suivante = sequence[j];
+			int suivant0 = DistancierTaches.getEtat(suivante, false);
+			int suivant1 = suivant0 ^ 1;
+
+			float par00 = cout0 + entreTaches.getDistance(etat0, suivant0);
+			float par10 = cout1 + entreTaches.getDistance(etat1, suivant0);
+			float par01 = cout0 + entreTaches.getDistance(etat0, suivant1);
+			float par11 = cout1 + entreTaches.getDistance(etat1, suivant1);
+
+			inversions[j] = par10 < par00;
+			choix1[j] = par11 < par01;
+
+			etat0 = suivant0;
+			etat1 = suivant1;
+			cout0 = Math.min(par00, par10) + couts[suivante];
+			cout1 = Math.min(par01, par11) + couts[suivante];
+		}
+
+		boolean sens = cout1 + entreTaches.getVersDepot(etat1) < cout0 + entreTaches.getVersDepot(etat0);
+		for (int j = fin - 1; j > debut; j--) {
+			boolean precedent = sens ? choix1[j] : inversions[j];
+			inversions[j] = sens;
+			sens = precedent;
+		}
+		inversions[debut] = sens;
+	}
+}
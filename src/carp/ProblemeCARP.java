@@ -1,9 +1,13 @@
 package carp;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
 import seisco.probleme.Probleme;
 import seisco.probleme.Solution;
 import seisco.util.Condition;
@@ -12,6 +16,11 @@ import seisco.util.graphe.*;
 
 /**
  * <p>Contient le problème à traiter. Chaque agent de calcul en possède un.
+ * <p>
+ * L'évaluation d'une {@link SolutionCARP} ne modifie ni le problème ni son
+ * {@link GrapheCARP} : une même instance peut donc être partagée par
+ * plusieurs threads d'évaluation.
+ * </p>
  *
  * @author Kamel Belkhelladi
  * @author Frank Réveillère
@@ -23,15 +32,31 @@ import seisco.util.graphe.*;
 public class ProblemeCARP extends Probleme {
 
     public static final String NOM_CONDITION_NB_SOMMETS = "NB_SOMMETS";
+    public static final String NOM_CONDITION_NB_CAMIONS = "NB_CAMIONS";
     public static final String NOM_CONDITION_NB_ARRETE_NOREQ = "NB_ARRETE_NOREQ";
     public static final String NOM_CONDITION_CAPACITE_CAMION = "CAPACITE";
     public static final String NOM_CONDITION_NUM_DEPOT = "NUM_DEPOT";
-    private static GrapheCARP graphe;
-    private float[][] distancier;
-    private int depot = 1;
-    private float l_cost = 0;
-    private long timeBoucles = 0;
-    private long timeCalculDist = 0;
+    /** Coût donné aux solutions rejetées par {@link #estRealisable(seisco.probleme.Solution)}. */
+    public static final float COUT_IRREALISABLE = Float.POSITIVE_INFINITY;
+    /** Écart relatif toléré entre un évaluateur vérifié et la référence. */
+    public static final float ECART_TOLERE = 1e-5f;
+    private static volatile GrapheCARP dernierGraphe;
+    private GrapheCARP graphe;
+    private Distancier distancier;
+    private volatile DistancierTaches distancierTaches;
+    private boolean distancierReduit = false;
+    private int[] depots = { 1 };
+    private final MesuresCARP mesures = new MesuresCARP(this);
+    private int parallelisme = Runtime.getRuntime().availableProcessors();
+    private ForkJoinPool pool;
+    private volatile CacheEvaluations cacheEvaluations;
+    private volatile float penaliteFlotte = 0;
+    private volatile boolean flotteLimitee = false;
+    private volatile boolean orientationOptimale = false;
+    private volatile EvaluateurCARP evaluateur = EvaluateursCARP.parDefaut();
+    private volatile boolean verificationEvaluateur = EvaluateursCARP.isVerificationParDefaut();
+    private final AtomicLong nbEcartsEvaluateur = new AtomicLong();
+    private final AtomicLong nbSolutionsEcartees = new AtomicLong();
 
     /**
      * <p>Instancie un nouveau {@link ProblemeCARP}
@@ -43,182 +68,1217 @@ public class ProblemeCARP extends Probleme {
         super("CARP");
     }
 
+    /**
+     * <p>Retourne le {@link Graphe} du dernier {@link ProblemeCARP} chargé
+     *
+     * @return le {@link GrapheCARP} du dernier {@link ProblemeCARP} chargé
+     * @since 2012
+     * @deprecated le graphe est propre à chaque problème,
+     *      utiliser {@link #getGrapheCARP()}
+     * @see GrapheCARP
+     * @see Graphe
+     */
+    @Deprecated
+    public static GrapheCARP getGraphe() {
+        return dernierGraphe;
+    }
+
     /**
      * <p>Retourne le {@link Graphe} représentant le {@link ProblemeCARP}
      *
-     * @return le {@link GrapheCARP} représentant le {@link ProblemeCARP}
+     * @return le {@link GrapheCARP} représentant le {@link ProblemeCARP}
+     * @since 2012
+     * @see GrapheCARP
+     * @see Graphe
+     */
+    public GrapheCARP getGrapheCARP() {
+        return graphe;
+    }
+
+    /**
+     * <p>Permet d'évaluer la {@link Solution}
+     *
+     * <p>
+     * Une solution qui n'est pas réalisable (voir
+     * {@link #estRealisable(seisco.probleme.Solution)}) n'est pas découpée :
+     * son coût est {@link #COUT_IRREALISABLE}. Si un cache est activé (voir
+     * {@link #setCacheEvaluations(int)}), une tournée géante déjà découpée
+     * n'est pas découpée à nouveau. Sinon la solution est évaluée par
+     * l'évaluateur du problème (voir {@link #setEvaluateur(carp.EvaluateurCARP)}).
+     * </p>
+     *
+     * @param s Une {@link Solution} au problème
+     * @return L'évaluation de <b>s</b> sous forme de {@link Float}.
+     * @since 2012
+     * @see ProblemeCARP#split(carp.SolutionCARP)
+     * @see SolutionCARP
+     * @see Solution
+     */
+    @Override
+    public float fonctionObjectif(Solution s) {
+        if (s != null && s instanceof SolutionCARP) {
+            if (!estRealisable(s))
+                return COUT_IRREALISABLE;
+
+            return evaluer((SolutionCARP) s);
+        }
+
+        return 0;
+    }
+
+    /**
+     * <p>Évalue une solution, en passant par le cache des évaluations s'il est activé.
+     *
+     * @param sol la {@link SolutionCARP} à évaluer
+     * @return le coût de la solution
+     * @since 2012
+     */
+    private float evaluer(SolutionCARP sol) {
+        CacheEvaluations cache = cacheEvaluations;
+        if (cache != null)
+            return cache.evaluer(this, sol);
+
+        return evaluerSansCache(sol);
+    }
+
+    /**
+     * <p>
+     * Évalue une solution réalisable par l'évaluateur du problème puis, si la
+     * vérification est activée, compare son coût à celui de la référence. En
+     * cas d'écart, l'erreur est signalée et la solution est réévaluée par la
+     * référence, dont le coût est retourné.
+     * </p>
+     *
+     * @param sol la {@link SolutionCARP} à évaluer
+     * @return le coût de la solution
+     * @since 2012
+     * @see CacheEvaluations#evaluer(carp.ProblemeCARP, carp.SolutionCARP)
+     */
+    float evaluerSansCache(SolutionCARP sol) {
+        EvaluateurCARP moteur = evaluateur;
+
+        return verifier(moteur, sol, moteur.evaluer(this, sol), false);
+    }
+
+    /**
+     * <p>
+     * Calcule le coût d'une solution réalisable par l'évaluateur du
+     * problème, vérifié comme par {@link #evaluerSansCache(carp.SolutionCARP)}.
+     * </p>
+     *
+     * @param sol la {@link SolutionCARP} à évaluer
+     * @return le coût de la solution
+     * @since 2012
+     */
+    private float coutSansCache(SolutionCARP sol) {
+        EvaluateurCARP moteur = evaluateur;
+
+        return verifier(moteur, sol, moteur.evaluerCout(this, sol), true);
+    }
+
+    /**
+     * <p>
+     * Si la vérification est activée, compare le coût donné par un évaluateur
+     * à celui de la référence. En cas d'écart, l'erreur est signalée et le
+     * coût de la référence est retourné ; pour une évaluation complète, la
+     * solution est alors réévaluée par la référence.
+     * </p>
+     *
+     * @param moteur l'évaluateur qui a donné le coût
+     * @param sol la {@link SolutionCARP} évaluée
+     * @param cout le coût donné par moteur
+     * @param coutSeul <b>true</b> si seul le coût a été calculé
+     * @return le coût de la solution
+     * @since 2012
+     */
+    private float verifier(EvaluateurCARP moteur, SolutionCARP sol, float cout, boolean coutSeul) {
+        if (verificationEvaluateur && moteur != EvaluateursCARP.REFERENCE) {
+            float reference = evaluerCout(sol);
+            if (!egaux(cout, reference)) {
+                signalerEcart(moteur, cout, reference);
+                cout = coutSeul ? reference : evaluerDecoupe(sol);
+            }
+        }
+
+        return cout;
+    }
+
+    /**
+     * <p>Compare deux coûts à {@link #ECART_TOLERE} près.
+     *
+     * @param cout le coût donné par un évaluateur
+     * @param reference le coût donné par la référence
+     * @return <b>true</b> si les coûts sont égaux à la tolérance près
+     * @since 2012
+     */
+    private static boolean egaux(float cout, float reference) {
+        if (cout == reference)
+            return true;
+
+        return Math.abs(cout - reference) <= ECART_TOLERE * Math.max(1, Math.abs(reference));
+    }
+
+    /**
+     * <p>Compte et signale un écart entre un évaluateur et la référence.
+     *
+     * @param moteur l'évaluateur vérifié
+     * @param cout le coût qu'il a donné
+     * @param reference le coût de la référence
+     * @since 2012
+     */
+    private void signalerEcart(EvaluateurCARP moteur, float cout, float reference) {
+        nbEcartsEvaluateur.incrementAndGet();
+        System.out.println("Erreur - l'évaluateur " + moteur.getNom() + " donne " + cout
+                + " au lieu de " + reference);
+    }
+
+    /**
+     * <p>Retourne l'évaluateur du problème.
+     *
+     * @return l'évaluateur utilisé, {@link EvaluateursCARP#parDefaut()} à la création
+     * @since 2012
+     * @see #setEvaluateur(carp.EvaluateurCARP)
+     */
+    public EvaluateurCARP getEvaluateur() {
+        return evaluateur;
+    }
+
+    /**
+     * <p>
+     * Remplace l'évaluateur utilisé par {@link #fonctionObjectif(seisco.probleme.Solution)},
+     * {@link #evaluerPopulation(java.util.List)} et
+     * {@link #evaluerCoutsPopulation(java.util.List)}. Les méthodes
+     * {@link #split(carp.SolutionCARP)} et {@link #evaluerCout(carp.SolutionCARP)}
+     * restent celles de la référence. Le cache des évaluations est vidé.
+     * </p>
+     *
+     * @param evaluateur le nouvel évaluateur
+     * @throws IllegalArgumentException si evaluateur est <b>null</b>
+     * @since 2012
+     * @see EvaluateursCARP
+     */
+    public void setEvaluateur(EvaluateurCARP evaluateur) {
+        if (evaluateur == null)
+            throw new IllegalArgumentException("L'évaluateur ne peut pas être null");
+
+        this.evaluateur = evaluateur;
+
+        CacheEvaluations cache = cacheEvaluations;
+        if (cache != null)
+            cache.vider();
+    }
+
+    /**
+     * <p>Remplace l'évaluateur du problème par un évaluateur enregistré.
+     *
+     * @param nom le nom de l'évaluateur dans {@link EvaluateursCARP}
+     * @throws IllegalArgumentException si aucun évaluateur ne porte ce nom
+     * @since 2012
+     * @see #setEvaluateur(carp.EvaluateurCARP)
+     */
+    public void setEvaluateur(String nom) {
+        setEvaluateur(EvaluateursCARP.trouver(nom));
+    }
+
+    /**
+     * <p>Indique si les évaluations sont vérifiées par la référence.
+     *
+     * @return <b>true</b> si chaque évaluation est comparée à la référence
+     * @since 2012
+     * @see #setVerificationEvaluateur(boolean)
+     */
+    public boolean isVerificationEvaluateur() {
+        return verificationEvaluateur;
+    }
+
+    /**
+     * <p>
+     * Active ou désactive la vérification de l'évaluateur : chaque coût qu'il
+     * donne est recalculé par la référence, et tout écart au-delà de
+     * {@link #ECART_TOLERE} est compté, signalé, puis corrigé par le coût de
+     * la référence. Cela double au moins le temps d'évaluation : c'est un
+     * mode de mise au point, pour adopter un évaluateur en confiance. Par
+     * défaut, voir {@link EvaluateursCARP#PROPRIETE_VERIFICATION}.
+     * </p>
+     *
+     * @param verificationEvaluateur <b>true</b> pour vérifier chaque évaluation
+     * @since 2012
+     * @see #getNbEcartsEvaluateur()
+     */
+    public void setVerificationEvaluateur(boolean verificationEvaluateur) {
+        this.verificationEvaluateur = verificationEvaluateur;
+    }
+
+    /**
+     * <p>Retourne le nombre d'écarts relevés par la vérification de l'évaluateur.
+     *
+     * @return le nombre d'évaluations dont le coût différait de la référence
+     * @since 2012
+     * @see #setVerificationEvaluateur(boolean)
+     */
+    public long getNbEcartsEvaluateur() {
+        return nbEcartsEvaluateur.get();
+    }
+
+    /**
+     * <p>Retourne le cache des évaluations du problème.
+     *
+     * @return le {@link CacheEvaluations} utilisé, ou <b>null</b> s'il est désactivé
+     * @since 2012
+     * @see #setCacheEvaluations(int)
+     */
+    public CacheEvaluations getCacheEvaluations() {
+        return cacheEvaluations;
+    }
+
+    /**
+     * <p>
+     * Active un cache des évaluations devant {@link #fonctionObjectif(seisco.probleme.Solution)}
+     * et {@link #evaluerPopulation(java.util.List)}, ou le désactive. Il est
+     * désactivé par défaut.
+     * </p>
+     *
+     * @param capacite
+     *      le nombre de tournées géantes mémorisées, 0 pour désactiver le cache
+     * @throws IllegalArgumentException si capacite est négative
+     * @since 2012
+     * @see CacheEvaluations
+     */
+    public void setCacheEvaluations(int capacite) {
+        if (capacite < 0)
+            throw new IllegalArgumentException("La capacité du cache ne peut pas être négative");
+
+        cacheEvaluations = capacite == 0 ? null : new CacheEvaluations(capacite);
+    }
+
+    /**
+     * <p>
+     * Retourne <b>true</b> ou <b>false</b> selon que
+     * la {@link Solution} est réalisable ou non.
+     * </p>
+     * <p>
+     * La tournée géante doit contenir chaque tâche du {@link GrapheCARP}
+     * exactement une fois (sans case nulle, comme en laisse
+     * {@link SolutionCARP#setNbTaches(int)}), aucune tâche ne doit dépasser
+     * à elle seule la capacité d'un camion, et la demande totale doit tenir
+     * dans les {@link #NOM_CONDITION_NB_CAMIONS} camions s'ils sont limités.
+     * La vérification est en O(n), sans allocation : les tâches rencontrées
+     * sont marquées dans un ensemble de bits propre au thread courant. Le
+     * nombre de tournées de la découpe n'est pas vérifié ici, voir
+     * {@link #setPenaliteFlotte(float)}.
+     * </p>
+     *
+     * @param s une {@link Solution} au {@link ProblemeCARP}
+     * @return
+     *  <p><b>true</b> si la {@link Solution} est réalisable.
+     *  <p><b>false</b> sinon.
+     * @since 2008
+     * @see SolutionCARP
+     * @see Solution
+     */
+    @Override
+    public boolean estRealisable(Solution s) {
+        if (!(s instanceof SolutionCARP) || graphe == null)
+            return false;
+
+        List<Arc> taches = ((SolutionCARP) s).getTaches();
+        int nbTaches = graphe.getNbTaches();
+        if (taches.size() != nbTaches)
+            return false;
+
+        float capacitecamion = Float.POSITIVE_INFINITY;
+        if (conditionPresente(NOM_CONDITION_CAPACITE_CAMION))
+            capacitecamion = (Integer) getCondition(NOM_CONDITION_CAPACITE_CAMION).getValeur();
+
+        float[] demandes = graphe.getDemandes();
+        long[] vues = EspaceTravail.courant().getTachesVues(nbTaches);
+        double demandeTotale = 0;
+        for (int k = 0; k < nbTaches; k++) {
+            Arc tache = taches.get(k);
+            if (tache == null)
+                return false;
+
+            // Tâche étrangère au graphe ou déjà rencontrée
+            int t = graphe.getIndice(tache);
+            if (t < 0 || (vues[t >>> 6] & 1L << t) != 0)
+                return false;
+            vues[t >>> 6] |= 1L << t;
+
+            if (demandes[t] > capacitecamion)
+                return false;
+            demandeTotale += demandes[t];
+        }
+
+        if (conditionPresente(NOM_CONDITION_NB_CAMIONS)) {
+            int nbCamions = (Integer) getCondition(NOM_CONDITION_NB_CAMIONS).getValeur();
+            if (demandeTotale > (double) nbCamions * capacitecamion)
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * <p>Retourne la pénalité appliquée à chaque tournée au-delà du nombre de camions.
+     *
+     * @return la pénalité par tournée en trop, 0 si la flotte n'est pas limitée
+     * @since 2012
+     * @see #setPenaliteFlotte(float)
+     */
+    public float getPenaliteFlotte() {
+        return penaliteFlotte;
+    }
+
+    /**
+     * <p>
+     * Fait respecter le nombre de camions ({@link #NOM_CONDITION_NB_CAMIONS})
+     * par pénalité : le coût d'une découpe qui compte plus de tournées que
+     * de camions est augmenté de <b>penalite</b> par tournée en trop. Le
+     * {@link ResultatCARP} conserve les tournées et leurs coûts réels. Par
+     * défaut (0), le nombre de tournées n'est pas limité.
+     * </p>
+     *
+     * @param penalite la pénalité par tournée en trop, 0 pour ne pas limiter la flotte
+     * @throws IllegalArgumentException si penalite est négative ou n'est pas un nombre
+     * @since 2012
+     * @see #split(carp.SolutionCARP)
+     * @see #evaluerCout(carp.SolutionCARP)
+     */
+    public void setPenaliteFlotte(float penalite) {
+        if (!(penalite >= 0))
+            throw new IllegalArgumentException("La pénalité doit être positive ou nulle");
+
+        penaliteFlotte = penalite;
+
+        CacheEvaluations cache = cacheEvaluations;
+        if (cache != null)
+            cache.vider();
+    }
+
+    /**
+     * <p>Indique si la découpe respecte le nombre de camions.
+     *
+     * @return <b>true</b> si les découpes comptent au plus
+     *      {@link #NOM_CONDITION_NB_CAMIONS} tournées, <b>false</b> (par défaut) sinon
+     * @since 2012
+     * @see #setFlotteLimitee(boolean)
+     */
+    public boolean isFlotteLimitee() {
+        return flotteLimitee;
+    }
+
+    /**
+     * <p>
+     * Choisit la découpe utilisée par {@link #split(carp.SolutionCARP)} et
+     * {@link #evaluerCout(carp.SolutionCARP)} : sans limite (par défaut), ou
+     * en au plus {@link #NOM_CONDITION_NB_CAMIONS} tournées. Dans le second
+     * cas, la découpe sans limite est d'abord calculée ; si elle respecte
+     * déjà la flotte elle est optimale, sinon la tournée géante est
+     * redécoupée par {@link DecoupeFlotteLimitee}. Une tournée géante
+     * qu'aucune découpe ne peut servir avec la flotte coûte
+     * {@link #COUT_IRREALISABLE}.
+     * </p>
+     *
+     * @param flotteLimitee <b>true</b> pour limiter le nombre de tournées au nombre de camions
+     * @since 2012
+     * @see #setPenaliteFlotte(float)
+     */
+    public void setFlotteLimitee(boolean flotteLimitee) {
+        this.flotteLimitee = flotteLimitee;
+
+        CacheEvaluations cache = cacheEvaluations;
+        if (cache != null)
+            cache.vider();
+    }
+
+    /**
+     * <p>Indique si la découpe oriente au mieux les tâches de chaque tournée.
+     *
+     * @return <b>true</b> si le sens des tâches est optimal dans chaque
+     *      tournée, <b>false</b> (par défaut) s'il est choisi de proche en proche
+     * @since 2012
+     * @see #setOrientationOptimale(boolean)
+     */
+    public boolean isOrientationOptimale() {
+        return orientationOptimale;
+    }
+
+    /**
+     * <p>
+     * Choisit le sens de parcours des tâches dans les découpes de
+     * {@link #split(carp.SolutionCARP)} et {@link #evaluerCout(carp.SolutionCARP)}.
+     * Par défaut, une tâche est retournée quand elle commence là où finit la
+     * précédente. Avec l'orientation optimale, chaque tournée est parcourue
+     * dans le meilleur sens pour chacune de ses tâches (voir
+     * {@link OrientationOptimale}) : la découpe reste en O(n.k), pour un
+     * coût au plus égal. Les sens retenus sont rangés dans les inversions de
+     * la solution, les {@link Arc} ne sont pas modifiés.
+     * </p>
+     *
+     * @param orientationOptimale <b>true</b> pour orienter au mieux chaque tournée
+     * @since 2012
+     * @see SolutionCARP#getInversions()
+     */
+    public void setOrientationOptimale(boolean orientationOptimale) {
+        this.orientationOptimale = orientationOptimale;
+
+        CacheEvaluations cache = cacheEvaluations;
+        if (cache != null)
+            cache.vider();
+    }
+
+    /**
+     * <p>
+     * Découpe une tournée géante sans limite puis, si la flotte est limitée
+     * et que la découpe compte trop de tournées, en au plus
+     * {@link #NOM_CONDITION_NB_CAMIONS} tournées.
+     * </p>
+     *
+     * @param sequence les numéros de tâche de la tournée géante
+     * @param nbTaches le nombre de tâches de la tournée géante
+     * @param entreTaches les distances entre tâches, lues une seule fois pour toute la découpe
+     * @param inversions reçoit le sens de parcours de chaque tâche
+     * @param labels reçoit les labels du plus court chemin
+     * @param predecesseurs reçoit les prédécesseurs du plus court chemin
+     * @return <b>false</b> si la flotte est limitée et qu'aucune découpe ne la respecte
+     * @since 2012
+     * @see #decouper(int[], int, carp.DistancierTaches, boolean[], float[], int[])
+     */
+    private boolean decouperFlotte(int[] sequence, int nbTaches, DistancierTaches entreTaches,
+            boolean[] inversions, float[] labels, int[] predecesseurs) {
+        boolean optimale = orientationOptimale;
+        if (optimale)
+            OrientationOptimale.decouper(sequence, nbTaches, graphe, entreTaches,
+                    (Integer) getCondition(NOM_CONDITION_CAPACITE_CAMION).getValeur(), inversions, labels,
+                    predecesseurs, EspaceTravail.courant());
+        else
+            decouper(sequence, nbTaches, entreTaches, inversions, labels, predecesseurs);
+
+        if (!flotteLimitee || !conditionPresente(NOM_CONDITION_NB_CAMIONS)
+                || predecesseurs[nbTaches] == Integer.MIN_VALUE)
+            return true;
+
+        int nbCamions = (Integer) getCondition(NOM_CONDITION_NB_CAMIONS).getValeur();
+        if (compterTournees(predecesseurs, nbTaches) <= nbCamions)
+            return true;
+        if (nbCamions < 1)
+            return false;
+
+        float capacitecamion = (Integer) getCondition(NOM_CONDITION_CAPACITE_CAMION).getValeur();
+        return DecoupeFlotteLimitee.decouper(sequence, nbTaches, nbCamions, graphe, entreTaches,
+                capacitecamion, optimale, inversions, labels, predecesseurs, EspaceTravail.courant());
+    }
+
+    /**
+     * <p>Compte les tournées du plus court chemin en remontant ses prédécesseurs.
+     *
+     * @param predecesseurs les prédécesseurs d'un chemin atteignant le dernier noeud
+     * @param nbTaches le nombre de tâches de la tournée géante
+     * @return le nombre de tournées
+     * @since 2012
+     */
+    private static int compterTournees(int[] predecesseurs, int nbTaches) {
+        int nbTournees = 0;
+        for (int x = nbTaches; x > 0; x = predecesseurs[x])
+            nbTournees++;
+
+        return nbTournees;
+    }
+
+    /**
+     * <p>Retourne la pénalité d'une découpe en nbTournees tournées.
+     *
+     * @param nbTournees le nombre de tournées de la découpe
+     * @return la pénalité à ajouter au coût, 0 si la flotte suffit ou n'est pas limitée
+     * @since 2012
+     */
+    private float penaliser(int nbTournees) {
+        float penalite = penaliteFlotte;
+        if (penalite == 0 || !conditionPresente(NOM_CONDITION_NB_CAMIONS))
+            return 0;
+
+        int enTrop = nbTournees - (Integer) getCondition(NOM_CONDITION_NB_CAMIONS).getValeur();
+        return enTrop > 0 ? enTrop * penalite : 0;
+    }
+
+    /**
+     * <p>Partitionne une tournée géante en un ensemble de tournées faisables.
+     * <p>
+     * Les {@link Arc} de la solution ne sont pas modifiés : le sens de
+     * parcours choisi pour chaque tâche est enregistré dans la solution
+     * (voir {@link SolutionCARP#getInversions()}). Plusieurs threads peuvent
+     * donc découper des solutions différentes en même temps.
+     * </p>
+     *
+     * @param sol une {@link SolutionCARP} contenant une tournée géante.
+     * @throws IllegalArgumentException si une tâche de sol n'appartient pas au graphe
+     * @since 2008
+     * @see SolutionCARP
+     * @see ProblemeCARP#fonctionObjectif(seisco.probleme.Solution)
+     */
+    public void split(SolutionCARP sol) {
+        evaluerDecoupe(sol);
+    }
+
+    /**
+     * <p>
+     * Partitionne une tournée géante comme {@link #split(carp.SolutionCARP)}
+     * et retourne le coût total de la découpe.
+     * </p>
+     *
+     * @param sol une {@link SolutionCARP} contenant une tournée géante.
+     * @return le coût total minimum de la découpe en tournées de sol
+     * @throws IllegalArgumentException si une tâche de sol n'appartient pas au graphe
+     * @since 2012
+     */
+    float evaluerDecoupe(SolutionCARP sol) {
+        float cout = 0;
+
+        if (conditionPresente(NOM_CONDITION_CAPACITE_CAMION)) {
+            long allocations = mesures.debutAllocations();
+            int[] sequence = sol.getSequence(graphe);
+            int nbTaches = sequence.length;
+            verifierSequence(sequence, nbTaches);
+
+            /*
+             * WHY+1 Le graphe auxiliaire contient nbTaches+1 noeuds : le noeud
+             * j correspond à la fin de la j-ième tâche. Pour plus de détails, je
+             * vous invite à lire le commentaire contenant le mot-clé WHY+1 dans
+             * la classe FitnessCARP
+             */
+            EspaceTravail espace = EspaceTravail.courant().reserver(nbTaches);
+            float[] labels = espace.getLabels();
+            int[] predecesseurs = espace.getPredecesseurs();
+
+            // Sens de parcours de chaque tâche, propre à cette solution
+            boolean[] inversions = new boolean[nbTaches];
+            DistancierTaches entreTaches = distancierTaches;
+
+            long debut = System.nanoTime();
+            boolean realisable = decouperFlotte(sequence, nbTaches, entreTaches, inversions, labels, predecesseurs);
+            long milieu = System.nanoTime();
+
+            // Construction du résultat à partir du plus court chemin
+            sol.setInversions(inversions);
+            cout = FitnessCARP.evaluer(labels, predecesseurs, sol, sequence, graphe.getCouts(), entreTaches);
+            cout = realisable ? cout + penaliser(sol.getResultat().getNbTournees()) : COUT_IRREALISABLE;
+
+            mesures.evaluation(milieu - debut, System.nanoTime() - milieu, sol.getResultat().getNbTournees());
+            mesures.finAllocations(allocations);
+
+        } else
+            System.out.println("Erreur - la capacité du camion est inaccessible");
+
+        return cout;
+    }
+
+    /**
+     * <p>
+     * Partitionne une tournée géante, donnée par la suite de ses numéros de
+     * tâche, et retourne uniquement son coût. Aucun {@link ResultatCARP}
+     * n'est construit.
+     * </p>
+     *
+     * @param sequence
+     *      les numéros de tâche de la tournée géante, dans l'ordre de parcours
+     *      (voir {@link GrapheCARP#getIndice(seisco.util.graphe.Arc)})
+     * @return le coût total minimum de la découpe en tournées de la séquence
+     * @since 2012
+     * @see #split(carp.SolutionCARP)
+     * @see SolutionCARP#getSequence(carp.GrapheCARP)
+     */
+    public float split(int[] sequence) {
+        return couper(sequence, sequence.length);
+    }
+
+    /**
+     * <p>
+     * Partitionne la tournée géante d'une solution et retourne uniquement son
+     * coût. Ni la solution ni ses {@link Arc} ne sont modifiés : aucun
+     * {@link ResultatCARP} n'est construit et le sens de parcours des tâches
+     * n'est pas conservé.
+     * </p>
+     * <p>
+     * Tous les tableaux de travail, y compris la tournée géante, sont ceux du
+     * thread courant : une fois ceux-ci dimensionnés pour la plus grande
+     * solution rencontrée, l'évaluation n'alloue plus rien. Le résultat
+     * complet d'une solution que l'on souhaite conserver s'obtient ensuite
+     * par {@link #split(carp.SolutionCARP)}. Le cache des évaluations n'est
+     * pas consulté.
+     * </p>
+     *
+     * @param sol une {@link SolutionCARP} contenant une tournée géante.
+     * @return le coût total minimum de la découpe en tournées de sol
+     * @since 2012
+     * @see #split(carp.SolutionCARP)
+     * @see #evaluerCoutsPopulation(java.util.List)
+     */
+    public float evaluerCout(SolutionCARP sol) {
+        List<Arc> taches = sol.getTaches();
+        int nbTaches = taches.size();
+        int[] sequence = EspaceTravail.courant().reserver(nbTaches).getSequence();
+
+        return couper(graphe.getIndices(taches, sequence), nbTaches);
+    }
+
+    /**
+     * <p>
+     * Retourne en O(n), sans découpe ni allocation, un minorant du coût que
+     * {@link #fonctionObjectif(seisco.probleme.Solution)} donnerait à une
+     * solution, à l'arrondi des sommes près.
+     * </p>
+     * <p>
+     * Le minorant additionne le coût des tâches, le trajet du plus proche
+     * dépôt à la première tâche et de la dernière au plus proche dépôt, et
+     * pour chaque couple de tâches consécutives le moins cher de leurs
+     * enchaînements, dans la même tournée (meilleur sens de chacune) ou par
+     * un retour au dépôt. Un second minorant, calculé dans le même passage,
+     * impose à chaque tâche un même sens avant et après elle : le plus grand
+     * des deux est retenu. Couper entre deux tâches coûte au moins le
+     * surcoût du retour au dépôt sur leur meilleur enchaînement : le
+     * minorant ajoute les surcoûts de la moins chère des suites de coupures
+     * dont les tournées respectent la capacité, trouvée en un seul passage
+     * par un minimum glissant, puis la pénalité de flotte des
+     * ceil(demande / capacité) tournées nécessaires. Le minorant reste
+     * valable quels que soient la découpe, la flotte limitée ou non,
+     * l'orientation et les dépôts choisis.
+     * </p>
+     *
+     * @param sol une {@link SolutionCARP} contenant une tournée géante
+     * @return un minorant du coût de sol, {@link #COUT_IRREALISABLE} si elle n'est pas réalisable
+     * @since 2012
+     * @see #evaluerSiPrometteuse(carp.SolutionCARP, float)
+     */
+    public float borneInferieure(SolutionCARP sol) {
+        if (!estRealisable(sol))
+            return COUT_IRREALISABLE;
+
+        List<Arc> taches = sol.getTaches();
+        int nbTaches = taches.size();
+        if (nbTaches == 0 || !conditionPresente(NOM_CONDITION_CAPACITE_CAMION))
+            return 0;
+
+        EspaceTravail espace = EspaceTravail.courant().reserver(nbTaches);
+        int[] sequence = graphe.getIndices(taches, espace.getSequence());
+        float[] surcouts = espace.getTournees();
+        float[] couts = graphe.getCouts();
+        float[] demandes = graphe.getDemandes();
+        DistancierTaches entreTaches = distancierTaches;
+
+        /*
+         * borne : chaque liaison entre deux tâches au moins chère, sens
+         * compris. chaine0 et chaine1 : meilleur coût jusqu'à la tâche
+         * courante prise dans son sens ou à l'envers, chaque liaison étant
+         * un enchaînement direct ou un passage au dépôt.
+         */
+        int tache = sequence[0];
+        int etat = DistancierTaches.getEtat(tache, false);
+        float depuis0 = entreTaches.getDepuisDepot(etat);
+        float depuis1 = entreTaches.getDepuisDepot(etat ^ 1);
+        double borne = Math.min(depuis0, depuis1) + couts[tache];
+        double chaine0 = depuis0 + couts[tache];
+        double chaine1 = depuis1 + couts[tache];
+        double demande = demandes[tache];
+
+        for (int j = 1; j < nbTaches; j++) {
+            int suivante = sequence[j];
+            int suivant = DistancierTaches.getEtat(suivante, false);
+
+            float vers0 = entreTaches.getVersDepot(etat);
+            float vers1 = entreTaches.getVersDepot(etat ^ 1);
+            depuis0 = entreTaches.getDepuisDepot(suivant);
+            depuis1 = entreTaches.getDepuisDepot(suivant ^ 1);
+            float liaison00 = Math.min(entreTaches.getDistance(etat, suivant), vers0 + depuis0);
+            float liaison01 = Math.min(entreTaches.getDistance(etat, suivant ^ 1), vers0 + depuis1);
+            float liaison10 = Math.min(entreTaches.getDistance(etat ^ 1, suivant), vers1 + depuis0);
+            float liaison11 = Math.min(entreTaches.getDistance(etat ^ 1, suivant ^ 1), vers1 + depuis1);
+
+            float coupure = Math.min(vers0, vers1) + Math.min(depuis0, depuis1);
+            float liaison = Math.min(Math.min(liaison00, liaison01), Math.min(liaison10, liaison11));
+            double nouvelle0 = Math.min(chaine0 + liaison00, chaine1 + liaison10) + couts[suivante];
+            double nouvelle1 = Math.min(chaine0 + liaison01, chaine1 + liaison11) + couts[suivante];
+
+            borne += liaison + couts[suivante];
+            chaine0 = nouvelle0;
+            chaine1 = nouvelle1;
+            demande += demandes[suivante];
+            surcouts[j - 1] = coupure - liaison;
+            etat = suivant;
+        }
+        borne += Math.min(entreTaches.getVersDepot(etat), entreTaches.getVersDepot(etat ^ 1));
+        double chaine = Math.min(chaine0 + entreTaches.getVersDepot(etat), chaine1 + entreTaches.getVersDepot(etat ^ 1));
+
+        /*
+         * Coupures : minima[j] est le plus petit surcoût des coupures jusqu'au
+         * noeud j du graphe auxiliaire, les tâches entre deux coupures tenant
+         * dans un camion. Le noeud i précède j si les tâches i à j-1 tiennent
+         * dans un camion : ces noeuds forment une fenêtre glissante dont le
+         * minimum est tenu par une file de noeuds aux minima croissants.
+         */
+        float capacitecamion = (Integer) getCondition(NOM_CONDITION_CAPACITE_CAMION).getValeur();
+        double tolere = capacitecamion * (1 + 1e-6);
+        float[] minima = espace.getLabels();
+        int[] fenetre = espace.getPredecesseurs();
+        int tete = 0, queue = 0;
+        fenetre[queue++] = 0;
+        minima[0] = 0;
+
+        double charge = 0;
+        int premier = 0;
+        for (int j = 1; j <= nbTaches; j++) {
+            charge += demandes[sequence[j - 1]];
+            while (charge > tolere)
+                charge -= demandes[sequence[premier++]];
+            while (fenetre[tete] < premier)
+                tete++;
+
+            float minimum = minima[fenetre[tete]] + (j < nbTaches ? surcouts[j - 1] : 0);
+            minima[j] = minimum;
+            while (queue > tete && minima[fenetre[queue - 1]] >= minimum)
+                queue--;
+            fenetre[queue++] = j;
+        }
+        borne += minima[nbTaches];
+
+        int nbTournees = Math.max(1, (int) Math.ceil(demande / capacitecamion - 1e-9));
+        return (float) Math.max(borne, chaine) + penaliser(nbTournees);
+    }
+
+    /**
+     * <p>
+     * Évalue une solution comme {@link #fonctionObjectif(seisco.probleme.Solution)},
+     * mais seulement si son minorant ({@link #borneInferieure(carp.SolutionCARP)})
+     * est inférieur au seuil : sinon la solution ne peut pas faire mieux que
+     * le seuil, elle n'est pas découpée et son minorant est retourné. Un
+     * algorithme génétique peut ainsi écarter les descendants plus mauvais
+     * que sa population sans les découper.
+     * </p>
+     *
+     * @param sol une {@link SolutionCARP} contenant une tournée géante
+     * @param seuil le coût à battre, par exemple celui de la pire solution de la population
+     * @return le coût de sol s'il est inférieur au seuil, sinon une valeur
+     *      supérieure ou égale au seuil ; dans ce cas, le {@link ResultatCARP}
+     *      de sol n'est pas remplacé
+     * @since 2012
+     * @see #getNbSolutionsEcartees()
+     */
+    public float evaluerSiPrometteuse(SolutionCARP sol, float seuil) {
+        float borne = borneInferieure(sol);
+        if (borne >= seuil) {
+            nbSolutionsEcartees.incrementAndGet();
+            return borne;
+        }
+
+        return evaluer(sol);
+    }
+
+    /**
+     * <p>Retourne le nombre de solutions écartées par leur minorant sans être découpées.
+     *
+     * @return le nombre de solutions écartées depuis la création du problème
+     * @since 2012
+     * @see #evaluerSiPrometteuse(carp.SolutionCARP, float)
+     */
+    public long getNbSolutionsEcartees() {
+        return nbSolutionsEcartees.get();
+    }
+
+    /**
+     * <p>Vérifie que les nbTaches premières tâches d'une séquence appartiennent au graphe.
+     *
+     * @param sequence les numéros de tâche de la tournée géante
+     * @param nbTaches le nombre de tâches de la tournée géante
+     * @throws IllegalArgumentException si un numéro de tâche est hors du graphe
+     * @since 2012
+     * @see GrapheCARP#getIndice(seisco.util.graphe.Arc)
+     */
+    private void verifierSequence(int[] sequence, int nbTaches) {
+        int nbTachesGraphe = graphe.getNbTaches();
+        for (int k = 0; k < nbTaches; k++)
+            if (sequence[k] < 0 || sequence[k] >= nbTachesGraphe)
+                throw new IllegalArgumentException("La tâche en position " + k
+                        + " de la tournée géante n'appartient pas au graphe");
+    }
+
+    /**
+     * <p>Découpe les nbTaches premières tâches d'une séquence et retourne le coût obtenu.
+     *
+     * @param sequence les numéros de tâche de la tournée géante
+     * @param nbTaches le nombre de tâches de la tournée géante
+     * @return le coût total minimum de la découpe
+     * @since 2012
+     */
+    private float couper(int[] sequence, int nbTaches) {
+        verifierSequence(sequence, nbTaches);
+        float cout = 0;
+
+        if (conditionPresente(NOM_CONDITION_CAPACITE_CAMION)) {
+            long allocations = mesures.debutAllocations();
+            EspaceTravail espace = EspaceTravail.courant().reserver(nbTaches);
+            int[] predecesseurs = espace.getPredecesseurs();
+
+            long debut = System.nanoTime();
+            boolean realisable = decouperFlotte(sequence, nbTaches, distancierTaches, espace.getInversions(),
+                    espace.getLabels(), predecesseurs);
+            mesures.evaluationCout(System.nanoTime() - debut);
+            mesures.finAllocations(allocations);
+
+            if (!realisable)
+                cout = COUT_IRREALISABLE;
+            else if (predecesseurs[nbTaches] != Integer.MIN_VALUE) {
+                cout = espace.getLabels()[nbTaches];
+
+                if (penaliteFlotte != 0)
+                    cout += penaliser(compterTournees(predecesseurs, nbTaches));
+            }
+
+        } else
+            System.out.println("Erreur - la capacité du camion est inaccessible");
+
+        return cout;
+    }
+
+    /**
+     * <p>
+     * Construit le graphe auxiliaire des tournées viables d'une tournée géante
+     * et calcule le plus court chemin qui le traverse. Seule la vue primitive
+     * des tâches du {@link GrapheCARP} est utilisée.
+     * </p>
+     *
+     * @param sequence les numéros de tâche de la tournée géante
+     * @param nbTaches le nombre de tâches de la tournée géante
+     * @param inversions
+     *      reçoit le sens de parcours de chaque tâche (au moins
+     *      nbTaches cases)
+     * @param labels
+     *      reçoit le coût minimum pour atteindre chaque noeud du graphe
+     *      auxiliaire (au moins nbTaches+1 cases)
+     * @param predecesseurs
+     *      reçoit le prédécesseur de chaque noeud sur le plus court chemin
+     *      (au moins nbTaches+1 cases)
+     * @since 2012
+     * @see FitnessCARP#evaluer(float[], int[], carp.SolutionCARP)
+     */
+    private void decouper(int[] sequence, int nbTaches, DistancierTaches entreTaches, boolean[] inversions,
+            float[] labels, int[] predecesseurs) {
+
+        float[] couts = graphe.getCouts();
+        float[] demandes = graphe.getDemandes();
+
+        int currentTask, nextTask;
+        int currentEtat, nextEtat;
+
+        float longueur;
+        float capacite;
+        float capacitecamion = (Integer) getCondition(NOM_CONDITION_CAPACITE_CAMION).getValeur();
+
+        // Initialisation des labels du plus court chemin et des sens de parcours
+        FitnessCARP.initialiserLabels(labels, predecesseurs, nbTaches);
+        Arrays.fill(inversions, 0, nbTaches, false);
+
+        /*
+         * Construction du graphe auxiliaire des tournées viables. Ses arcs
+         * représentent les taches successives pouvant être collectées sans
+         * violer la contrainte de capacité du camion.
+         *
+         * Pour chaque tâche de départ i, la tournée est prolongée tâche
+         * par tâche : la demande et la longueur sont cumulées au fur et à
+         * mesure, et on s'arrête dès que la capacité est dépassée (les
+         * demandes étant positives, aucune tournée plus longue ne peut
+         * être viable). Le coût est donc en O(n.k), k étant le nombre
+         * maximal de tâches que peut contenir une tournée.
+         *
+         * Les arcs allant toujours de i vers j > i, le label de i est
+         * définitif lorsque sa ligne est parcourue : chaque tournée est
+         * relâchée dès qu'elle est calculée, sans matrice intermédiaire.
+         */
+        for (int i = 0; i < nbTaches; i++) {
+
+            currentTask = sequence[i];
+
+            // Recherche des tournees ne depassant pas la capacite des camions
+            capacite = demandes[currentTask];
+            if (capacite > capacitecamion)
+                continue;
+
+            // Distance du dépôt au sommet de départ courant + distance pour parcourir la tache courante
+            currentEtat = DistancierTaches.getEtat(currentTask, inversions[i]);
+            longueur = entreTaches.getDepuisDepot(currentEtat);
+            longueur += couts[currentTask];
+
+            // Tournée ne contenant que la tâche courante : retour au dépôt
+            FitnessCARP.relacher(labels, predecesseurs, i, i + 1,
+                    longueur + entreTaches.getVersDepot(currentEtat));
+
+            // Distance pour atteindre la tache suivante + distance de la tache parcourue
+            for (int j = i + 2; j <= nbTaches; j++) {
+
+                nextTask = sequence[j - 1];
+
+                capacite += demandes[nextTask];
+                if (capacite > capacitecamion)
+                    break;
+
+                // Pour éviter des déplacements inutiles
+                nextEtat = DistancierTaches.getEtat(nextTask, inversions[j - 1]);
+                if (entreTaches.getFin(currentEtat) == entreTaches.getFin(nextEtat)) {
+                    inversions[j - 1] = !inversions[j - 1];
+                    nextEtat ^= 1;
+                }
+
+                // Distance pour rejoindre la tache suivante + distance de la tache suivante parcourue
+                longueur += entreTaches.getDistance(currentEtat, nextEtat);
+                longueur += couts[nextTask];
+
+                // La tache suivante devient la tache courante
+                currentEtat = nextEtat;
+
+                // Distance pour rejoindre le depot
+                FitnessCARP.relacher(labels, predecesseurs, i, j,
+                        longueur + entreTaches.getVersDepot(currentEtat));
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Évalue toute une population de {@link SolutionCARP} en parallèle, en
+     * utilisant au plus {@link #getParallelisme()} threads. Chaque solution
+     * est évaluée comme par {@link #fonctionObjectif(seisco.probleme.Solution)}, ou retrouvée
+     * dans le cache des évaluations s'il est activé, et chaque thread
+     * réutilise ses propres tableaux de travail. Une solution qui n'est pas
+     * réalisable coûte {@link #COUT_IRREALISABLE}, sans être découpée. Sans
+     * cache, un {@link EvaluateurGroupeCARP} reçoit les solutions par groupes.
+     * </p>
+     *
+     * @param population les solutions à évaluer
+     * @return le coût de chaque solution, dans l'ordre de la population
      * @since 2012
-     * @see GrapheCARP
-     * @see Graphe
+     * @see #setParallelisme(int)
      */
-    public static GrapheCARP getGraphe() {
-        return graphe;
+    public float[] evaluerPopulation(List<? extends SolutionCARP> population) {
+        float[] couts = new float[population.size()];
+
+        if (!population.isEmpty())
+            getPool().invoke(new EvaluationPopulation(population, couts, 0, couts.length, false,
+                    Float.POSITIVE_INFINITY));
+
+        return couts;
     }
 
     /**
-     * <p>Permet d'évaluer la {@link Solution}
+     * <p>
+     * Évalue en parallèle une population de {@link SolutionCARP} comme par
+     * {@link #evaluerSiPrometteuse(carp.SolutionCARP, float)} : seules les
+     * solutions dont le minorant bat le seuil sont découpées.
+     * </p>
      *
-     * @param s Une {@link Solution} au problème
-     * @return L'évaluation de <b>s</b> sous forme de {@link Float}.
+     * @param population les solutions à évaluer
+     * @param seuil le coût à battre
+     * @return le coût de chaque solution, ou une valeur supérieure ou égale
+     *      au seuil pour celles qui ont été écartées, dans l'ordre de la population
      * @since 2012
-     * @see ProblemeCARP#split(carp.SolutionCARP)
-     * @see SolutionCARP
-     * @see Solution
+     * @see #evaluerPopulation(java.util.List)
      */
-    @Override
-    public float fonctionObjectif(Solution s) {
-        if (s != null && s instanceof SolutionCARP) {
-            split((SolutionCARP) s);
-            return l_cost;
-        }
+    public float[] evaluerPopulation(List<? extends SolutionCARP> population, float seuil) {
+        float[] couts = new float[population.size()];
 
-        return 0;
+        if (!population.isEmpty())
+            getPool().invoke(new EvaluationPopulation(population, couts, 0, couts.length, false, seuil));
+
+        return couts;
     }
 
     /**
      * <p>
-     * Retourne <b>true</b> ou <b>false</b> selon que
-     * la {@link Solution} est réalisable ou non.
+     * Calcule en parallèle le coût de toute une population de
+     * {@link SolutionCARP}, comme par {@link #evaluerCout(carp.SolutionCARP)}
+     * mais avec l'évaluateur du problème :
+     * les solutions ne sont pas modifiées et aucun {@link ResultatCARP}
+     * n'est construit. Une solution qui n'est pas réalisable coûte
+     * {@link #COUT_IRREALISABLE}, sans être découpée. Un
+     * {@link EvaluateurGroupeCARP} reçoit les solutions par groupes.
      * </p>
      *
-     * @param s une {@link Solution} au {@link ProblemeCARP}
-     * @return
-     *  <p><b>true</b> si la {@link Solution} est réalisable.
-     *  <p><b>false</b> sinon.
-     * @since 2008
-     * @see SolutionCARP
-     * @see Solution
+     * @param population les solutions à évaluer
+     * @return le coût de chaque solution, dans l'ordre de la population
+     * @since 2012
+     * @see #evaluerPopulation(java.util.List)
      */
-    @Override
-    public boolean estRealisable(Solution s) {
-        return true; // what?
+    public float[] evaluerCoutsPopulation(List<? extends SolutionCARP> population) {
+        float[] couts = new float[population.size()];
+
+        if (!population.isEmpty())
+            getPool().invoke(new EvaluationPopulation(population, couts, 0, couts.length, true,
+                    Float.POSITIVE_INFINITY));
+
+        return couts;
     }
 
     /**
-     * <p>Partitionne une tournée géante en un ensemble de tournées faisables.
+     * <p>Retourne le nombre maximal de threads utilisés pour évaluer une population.
      *
-     * @param sol une {@link SolutionCARP} contenant une tournée géante.
-     * @since 2008
-     * @see SolutionCARP
-     * @see ProblemeCARP#fonctionObjectif(seisco.probleme.Solution)
+     * @return le niveau de parallélisme
+     * @since 2012
+     * @see #evaluerPopulation(java.util.List)
      */
-    public void split(SolutionCARP sol) {
+    public int getParallelisme() {
+        return parallelisme;
+    }
 
-        if (conditionPresente(NOM_CONDITION_CAPACITE_CAMION)) {
-            List<Arc> tachesSol = sol.getTaches();
-            int nbTaches = tachesSol.size();
+    /**
+     * <p>Remplace le nombre maximal de threads utilisés pour évaluer une population.
+     *
+     * @param parallelisme
+     *      le nouveau niveau de parallélisme (au moins 1), par défaut le
+     *      nombre de processeurs disponibles
+     * @throws IllegalArgumentException si parallelisme est inférieur à 1
+     * @since 2012
+     * @see #evaluerPopulation(java.util.List)
+     */
+    public synchronized void setParallelisme(int parallelisme) {
+        if (parallelisme < 1)
+            throw new IllegalArgumentException("Le parallélisme doit être au moins de 1");
 
-            /*
-             * WHY+1 Pour comprendre pourquoi on ajoute une ligne et une colonne
-             * dans la matrice tourneeViable (+1) je vous invite à lire le
-             * commentaire contenant le mot-clé WHY+1 dans la classe FitnessCARP
-             */
-            float tourneeViable[][] = new float[nbTaches + 1][nbTaches + 1];
+        if (parallelisme != this.parallelisme) {
+            this.parallelisme = parallelisme;
+            if (pool != null) {
+                pool.shutdown();
+                pool = null;
+            }
+        }
+    }
+
+    /**
+     * <p>Retourne le pool de threads d'évaluation, créé à la première utilisation.
+     *
+     * @return le {@link ForkJoinPool} du problème
+     * @since 2012
+     */
+    private synchronized ForkJoinPool getPool() {
+        if (pool == null)
+            pool = new ForkJoinPool(parallelisme);
 
-            Arc currentTask, nextTask;
-            Noeud currentDepart, currentArrivee;
-            Noeud nextDepart, nextArrivee;
+        return pool;
+    }
 
-            float longueur;
-            float capacite;
-            float capacitecamion = (Integer) getCondition(NOM_CONDITION_CAPACITE_CAMION).getValeur();
+    /**
+     * <p>
+     * Évalue une tranche [debut, fin[ d'une population, en la coupant en deux
+     * tant qu'elle contient plus d'une solution, ou plus d'un groupe si
+     * l'évaluateur est un {@link EvaluateurGroupeCARP} utilisable.
+     * </p>
+     *
+     * @since 2012
+     * @see ProblemeCARP#evaluerPopulation(java.util.List)
+     * @see ProblemeCARP#evaluerCoutsPopulation(java.util.List)
+     */
+    private class EvaluationPopulation extends RecursiveAction {
 
-            //Initialisation de la matrice tourneeViable
-            for (int i = 0; i <= nbTaches; i++)
-                Arrays.fill(tourneeViable[i], Float.POSITIVE_INFINITY);
+        private static final long serialVersionUID = 1L;
 
-            /*
-             * Création d'un graphe sous forme d'une matrice identifiant les
-             * arcs existants. Les arcs existants représentent les taches
-             * successives pouvant être collectées sans violer la contrainte de
-             * capacité du camion
-             */
-            Date dateDebut = new Date();
-            for (int i = 0; i < nbTaches; i++)
-                for (int j = i + 1; j <= nbTaches; j++) {
-                    // On boucle ici pour remplir la matrice d'une maniere triangulaire
-
-                    // Recherche des tournees ne depassant pas la capacite des camions
-                    capacite = 0;
-                    for (int k = i; k < j; k++) {
-                        Propriete demande = tachesSol.get(k).getPropriete(GrapheCARP.NOM_PROPRIETE_DEMANDE);
-                        if (demande != null)
-                            //capacite += demande.getValeur().floatValue();
-                            capacite += demande.getValeur();
-                    }
-
-                    if (capacite <= capacitecamion) {
-
-                        currentTask = tachesSol.get(i);
-                        currentDepart = currentTask.getDepart();
-                        currentArrivee = currentTask.getArrivee();
-
-                        // Distance du dépôt au sommet de départ courant
-                        longueur = distancier[depot - 1][currentDepart.getNumero() - 1];
-
-                        // Distance pour parcourir la tache courante
-                        if (currentTask.coutPresent(Arc.NOM_COUT_PARCOURS))
-                            longueur += currentTask.getCout(Arc.NOM_COUT_PARCOURS).getValeur();
-
-                        // Distance pour atteindre la tache suivante + distance de la tache parcourue
-                        for (int k = i + 1; k < j; k++) {
-
-                            nextTask = tachesSol.get(k);
-                            
-                            // Pour éviter des déplacements inutiles
-                            if(currentArrivee.equals(nextTask.getArrivee()))
-                                nextTask.swap();
-                            
-                            nextDepart = nextTask.getDepart();
-                            nextArrivee = nextTask.getArrivee();
-
-                            // Distance pour rejoindre la tache suivante
-                            longueur += distancier[currentArrivee.getNumero() - 1][nextDepart.getNumero() - 1];
-
-                            // Distance de la tache suivante parcourue
-                            if (nextTask.coutPresent(Arc.NOM_COUT_PARCOURS))
-                                longueur += nextTask.getCout(Arc.NOM_COUT_PARCOURS).getValeur();
-
-                            /*
-                             * Le noeud d'arrivee de la tache suivante devient
-                             * celui de la tache courante La tache suivante
-                             * devient la courante
-                             */
-                            currentArrivee = nextArrivee;
-                            //currentDepart = nextDepart;
-                            //currentTask = nextTask;
-                        }
-
-                        // Distance pour rejoindre le depot
-                        longueur += distancier[currentArrivee.getNumero() - 1][depot - 1];
-
-                        tourneeViable[i][j] = longueur;
-                    }
-                }
+        private final List<? extends SolutionCARP> population;
+        private final float[] couts;
+        private final int debut, fin;
+        private final boolean coutSeul;
+        private final float seuil;
 
-            Date dateFin = new Date();
-            timeBoucles += dateFin.getTime() - dateDebut.getTime();
+        EvaluationPopulation(List<? extends SolutionCARP> population, float[] couts, int debut, int fin,
+                boolean coutSeul, float seuil) {
+            this.population = population;
+            this.couts = couts;
+            this.debut = debut;
+            this.fin = fin;
+            this.coutSeul = coutSeul;
+            this.seuil = seuil;
+        }
 
-            // Calcul du chemin le plus court dans le graphe tourneeViable
-            dateDebut = new Date();
-            l_cost = FitnessCARP.evaluer(tourneeViable, sol);
-            dateFin = new Date();
-            timeCalculDist += dateFin.getTime() - dateDebut.getTime();
+        @Override
+        protected void compute() {
+            EvaluateurGroupeCARP groupe = getGroupe();
+            int taille = groupe == null ? 1 : Math.max(1, groupe.getTailleGroupe());
 
-        } else
-            System.out.println("Erreur - la capacité du camion est inaccessible");
+            if (groupe != null && fin - debut <= taille)
+                evaluerGroupe(groupe);
+            else if (fin - debut == 1) {
+                SolutionCARP sol = population.get(debut);
+                if (seuil != Float.POSITIVE_INFINITY)
+                    couts[debut] = evaluerSiPrometteuse(sol, seuil);
+                else if (!estRealisable(sol))
+                    couts[debut] = COUT_IRREALISABLE;
+                else
+                    couts[debut] = coutSeul ? coutSansCache(sol) : evaluer(sol);
+            } else {
+                // Coupure entre deux groupes
+                int nbGroupes = (fin - debut + taille - 1) / taille;
+                int milieu = debut + nbGroupes / 2 * taille;
+                invokeAll(new EvaluationPopulation(population, couts, debut, milieu, coutSeul, seuil),
+                        new EvaluationPopulation(population, couts, milieu, fin, coutSeul, seuil));
+            }
+        }
+
+        /**
+         * <p>
+         * Retourne l'évaluateur du problème s'il évalue par groupes et peut
+         * être utilisé ici : ni seuil, ni cache pour une évaluation complète.
+         * </p>
+         *
+         * @return l'évaluateur par groupes, ou <b>null</b>
+         * @since 2012
+         */
+        private EvaluateurGroupeCARP getGroupe() {
+            EvaluateurCARP moteur = evaluateur;
+            if (!(moteur instanceof EvaluateurGroupeCARP) || seuil != Float.POSITIVE_INFINITY
+                    || (!coutSeul && cacheEvaluations != null))
+                return null;
 
+            return (EvaluateurGroupeCARP) moteur;
+        }
+
+        /**
+         * <p>Évalue la tranche en un seul groupe, ses solutions irréalisables mises à part.
+         *
+         * @param groupe l'évaluateur par groupes du problème
+         * @since 2012
+         */
+        private void evaluerGroupe(EvaluateurGroupeCARP groupe) {
+            SolutionCARP[] solutions = new SolutionCARP[fin - debut];
+            int[] rangs = new int[fin - debut];
+            int nb = 0;
+            for (int k = debut; k < fin; k++) {
+                SolutionCARP sol = population.get(k);
+                if (estRealisable(sol)) {
+                    solutions[nb] = sol;
+                    rangs[nb++] = k;
+                } else
+                    couts[k] = COUT_IRREALISABLE;
+            }
+            if (nb == 0)
+                return;
+            if (nb < solutions.length)
+                solutions = Arrays.copyOf(solutions, nb);
+
+            float[] coutsGroupe = new float[nb];
+            if (coutSeul)
+                groupe.evaluerCoutsGroupe(ProblemeCARP.this, solutions, coutsGroupe);
+            else
+                groupe.evaluerGroupe(ProblemeCARP.this, solutions, coutsGroupe);
+
+            for (int s = 0; s < nb; s++)
+                couts[rangs[s]] = verifier(groupe, solutions[s], coutsGroupe[s], coutSeul);
+        }
     }
 
     /**
      * <p>Retourne le numéro du dépôt
      * 
-     * @return le numéro du dépôt
+     * @return le numéro du dépôt, le premier s'il y en a plusieurs
      * @since 2008
      * @see #setDepot(int) 
+     * @see #getDepots()
      */
     public int getDepot() {
-        return depot;
+        return depots[0];
     }
 
     /**
@@ -228,9 +1288,111 @@ public class ProblemeCARP extends Probleme {
      *      le nouveau numéro du dépôt
      * @since 2008
      * @see #getDepot() 
+     * @see #setDepots(int...)
      */
     public void setDepot(int depot) {
-        this.depot = depot;
+        setDepots(depot);
+    }
+
+    /**
+     * <p>Retourne les numéros des dépôts.
+     *
+     * @return une copie des numéros des dépôts, dans l'ordre de {@link #setDepots(int...)}
+     * @since 2012
+     */
+    public int[] getDepots() {
+        return depots.clone();
+    }
+
+    /**
+     * <p>
+     * Remplace les dépôts du problème. Chaque tournée part du dépôt le plus
+     * proche de sa première tâche et rentre au dépôt le plus proche de sa
+     * dernière, qui peuvent être différents (voir {@link DistancierTaches}) :
+     * les plus proches dépôts sont calculés une fois par extrémité de tâche,
+     * et la découpe garde le coût de la découpe à un seul dépôt. À distance
+     * égale, le premier dépôt de la liste est retenu.
+     * </p>
+     *
+     * <p>
+     * Les trajets vers les nouveaux dépôts sont calculés dans un nouveau
+     * {@link DistancierTaches}, publié en une seule fois : une découpe en
+     * cours dans un autre thread se termine avec les anciens dépôts.
+     * </p>
+     *
+     * @param depots
+     *      les numéros des dépôts, à partir de 1
+     * @throws IllegalArgumentException si aucun dépôt n'est donné, ou si un
+     *      numéro est inférieur à 1 ou dépasse le nombre de noeuds du graphe
+     * @since 2012
+     * @see #getDepotsTournees(carp.SolutionCARP)
+     */
+    public void setDepots(int... depots) {
+        if (depots.length == 0)
+            throw new IllegalArgumentException("Il faut au moins un dépôt");
+        int nbNoeuds = graphe == null ? Integer.MAX_VALUE : graphe.getNoeuds().size();
+        for (int depot : depots)
+            if (depot < 1 || depot > nbNoeuds)
+                throw new IllegalArgumentException("Numéro de dépôt invalide : " + depot);
+
+        this.depots = depots.clone();
+        DistancierTaches entreTaches = distancierTaches;
+        if (entreTaches != null)
+            distancierTaches = entreTaches.avecDepots(distancier, noeudsDepots());
+
+        CacheEvaluations cache = cacheEvaluations;
+        if (cache != null)
+            cache.vider();
+    }
+
+    /**
+     * <p>
+     * Retourne, pour chaque tournée de la dernière découpe d'une solution,
+     * le dépôt d'où elle part et celui où elle rentre.
+     * </p>
+     *
+     * @param sol une {@link SolutionCARP} déjà découpée par {@link #split(carp.SolutionCARP)}
+     * @return en [k][0] le numéro du dépôt de départ de la tournée k, en
+     *      [k][1] celui de son dépôt d'arrivée
+     * @throws IllegalArgumentException si la solution n'a pas été découpée
+     * @since 2012
+     */
+    public int[][] getDepotsTournees(SolutionCARP sol) {
+        boolean[] inversions = sol.getInversions();
+        ResultatCARP resultat = sol.getResultat();
+        if (inversions == null || resultat == null)
+            throw new IllegalArgumentException("La solution n'a pas été découpée");
+
+        int[] sequence = sol.getSequence(graphe);
+        DistancierTaches entreTaches = distancierTaches;
+        int nbTournees = resultat.getNbTournees();
+        int[][] depotsTournees = new int[nbTournees][2];
+
+        int debut = 0;
+        for (int k = 0; k < nbTournees; k++) {
+            int fin = debut + resultat.getNbTaches(k) - 1;
+            int etatDebut = DistancierTaches.getEtat(sequence[debut], inversions[debut]);
+            int etatFin = DistancierTaches.getEtat(sequence[fin], inversions[fin]);
+            depotsTournees[k][0] = entreTaches.getDepotDepart(etatDebut) + 1;
+            depotsTournees[k][1] = entreTaches.getDepotArrivee(etatFin) + 1;
+            debut = fin + 1;
+        }
+
+        return depotsTournees;
+    }
+
+    /**
+     * <p>Retourne les noeuds des dépôts, numérotés à partir de 0.
+     *
+     * @return les noeuds des dépôts
+     * @since 2012
+     */
+    private int[] noeudsDepots() {
+        int[] noeuds = new int[depots.length];
+        for (int k = 0; k < depots.length; k++)
+            noeuds[k] = depots[k] - 1;
+
+        return noeuds;
     }
 
     /**
@@ -239,25 +1401,53 @@ public class ProblemeCARP extends Probleme {
      * les {@link Solution} en tournées viables.
      * </p>
      * 
+     * <p>
+     * Comme avant, seules les découpes complètes de
+     * {@link #split(carp.SolutionCARP)} sont comptées, pas les évaluations
+     * du seul coût. Le temps est mesuré en nanosecondes et arrondi une
+     * seule fois, sur le total : une découpe de moins d'une milliseconde
+     * n'est plus comptée pour zéro.
+     * </p>
+     * 
      * @return
      *      le temps passé à découper les <b>Solution</b> en
-     *      tournées viables, sous la forme d'un long.
+     *      tournées viables, en millisecondes, sous la forme d'un long.
      * @since 2008
+     * @see #getMesures()
      */
     public long getTimeBoucles() {
-        return timeBoucles;
+        return mesures.getDureeDecoupesCompletes() / 1000000;
     }
 
     /**
      * <p>Retourne le temps passé à évaluer la qualité des {@link Solution}.
+     * <p>
+     * Il s'agit, comme avant, de la construction du résultat après chaque
+     * découpe complète. Le temps est mesuré en nanosecondes et arrondi une
+     * seule fois, sur le total.
+     * </p>
      * 
      * @return
      *      le temps passé à évaluer la qualité des
-     *      {@link Solution}, sous la forme d'un long.
+     *      {@link Solution}, en millisecondes, sous la forme d'un long.
      * @since 2008
+     * @see #getMesures()
      */
     public long getTimeCalculDist() {
-        return timeCalculDist;
+        return mesures.getResultats().getTotal() / 1000000;
+    }
+
+    /**
+     * <p>
+     * Retourne les mesures des évaluations du problème : nombre, durées en
+     * nanosecondes, tournées par solution, cache et allocations.
+     * </p>
+     *
+     * @return les {@link MesuresCARP} du problème
+     * @since 2012
+     */
+    public MesuresCARP getMesures() {
+        return mesures;
     }
 
     /**
@@ -283,23 +1473,137 @@ public class ProblemeCARP extends Probleme {
 
     /**
      * <p>
-     * Initialise la matrice de {@link Float} <code>distancier</code>
+     * Initialise le {@link Distancier} <code>distancier</code>
      * à partir du {@link GrapheCARP}. Ce dernier doit
-     * être correctement initialisé.
+     * être correctement initialisé. Construit ensuite le
+     * {@link DistancierTaches}, qu'utilise la découpe.
      * </p>
      * 
      * @since 2012
-     * @see Dijkstra#initialiserDistancier(seisco.util.graphe.Graphe) 
+     * @see #initialiserDistancier(carp.ConstructeurDistancier.Progression)
+     * @see DistancierTaches
      */
     public void initialiserDistancier() {
-        Noeud dep = null;
-        for (Noeud n : graphe.getNoeuds())
-            if (n.getNumero() == depot) {
-                dep = n;
-                break;
+        initialiserDistancier(null);
+    }
+
+    /**
+     * <p>
+     * Initialise le {@link Distancier} <code>distancier</code> à partir du
+     * {@link GrapheCARP}, en répartissant le calcul sur
+     * {@link #getParallelisme()} threads, puis le {@link DistancierTaches}.
+     * Si {@link #isDistancierReduit()}, seules les lignes des extrémités des
+     * tâches et du dépôt sont calculées.
+     * </p>
+     * 
+     * @param progression
+     *      reçoit l'avancement du calcul, peut être <b>null</b>
+     * @since 2012
+     * @see ConstructeurDistancier
+     */
+    public void initialiserDistancier(ConstructeurDistancier.Progression progression) {
+        ConstructeurDistancier constructeur = new ConstructeurDistancier(graphe)
+                .setParallelisme(parallelisme)
+                .setProgression(progression);
+
+        if (distancierReduit)
+            distancier = constructeur.construirePourTaches(graphe, depots[0] - 1);
+        else
+            distancier = constructeur.construire();
+
+        distancierTaches = new DistancierTaches(graphe, distancier, noeudsDepots());
+    }
+
+    /**
+     * <p>
+     * Initialise le {@link Distancier} en le relisant depuis un fichier de
+     * cache s'il correspond toujours au {@link GrapheCARP}. Sinon, il est
+     * calculé normalement puis enregistré dans ce fichier pour les prochains
+     * chargements. Un distancier réduit n'est jamais mis en cache.
+     * </p>
+     *
+     * @param cache le fichier du cache
+     * @since 2012
+     * @see CacheDistancier
+     * @see #initialiserDistancier()
+     */
+    public void initialiserDistancierCache(Path cache) {
+        if (distancierReduit) {
+            initialiserDistancier();
+            return;
+        }
+
+        byte[] empreinte = CacheDistancier.empreinte(graphe);
+        try {
+            distancier = CacheDistancier.charger(cache, empreinte);
+        } catch (IOException e) {
+            System.out.println("Erreur - lecture du distancier impossible : " + e.getMessage());
+            distancier = null;
+        }
+
+        if (distancier != null)
+            distancierTaches = new DistancierTaches(graphe, distancier, noeudsDepots());
+        else {
+            initialiserDistancier();
+            try {
+                CacheDistancier.enregistrer(cache, empreinte, distancier);
+            } catch (IOException e) {
+                System.out.println("Erreur - enregistrement du distancier impossible : " + e.getMessage());
             }
+        }
+    }
+
+    /**
+     * <p>Indique si seules les lignes utiles à la découpe sont calculées.
+     *
+     * @return <b>true</b> si le distancier est réduit aux extrémités des
+     *      tâches et au dépôt, <b>false</b> (par défaut) s'il est complet
+     * @since 2012
+     * @see #setDistancierReduit(boolean)
+     */
+    public boolean isDistancierReduit() {
+        return distancierReduit;
+    }
+
+    /**
+     * <p>
+     * Choisit si le prochain appel à {@link #initialiserDistancier()} ne
+     * calcule que les lignes utiles à la découpe, pour limiter la mémoire
+     * sur les grands graphes.
+     * </p>
+     *
+     * @param distancierReduit
+     *      <b>true</b> pour ne calculer que les lignes des extrémités des
+     *      tâches et du dépôt
+     * @since 2012
+     * @see ConstructeurDistancier#construirePourTaches(carp.GrapheCARP, int)
+     */
+    public void setDistancierReduit(boolean distancierReduit) {
+        this.distancierReduit = distancierReduit;
+    }
+
+    /**
+     * <p>Retourne la matrice des plus courtes distances entre les noeuds du graphe.
+     *
+     * @return le {@link Distancier} du problème, ou <b>null</b>
+     *      s'il n'a pas encore été initialisé
+     * @since 2012
+     * @see #initialiserDistancier()
+     */
+    public Distancier getDistancier() {
+        return distancier;
+    }
 
-        distancier = Dijkstra.initialiserDistancier(graphe);
+    /**
+     * <p>Retourne les distances à vide entre les tâches du graphe et le dépôt.
+     *
+     * @return le {@link DistancierTaches} du problème, ou <b>null</b>
+     *      si le distancier n'a pas encore été initialisé
+     * @since 2012
+     * @see #initialiserDistancier()
+     */
+    public DistancierTaches getDistancierTaches() {
+        return distancierTaches;
     }
 
     /**
@@ -392,130 +1696,138 @@ public class ProblemeCARP extends Probleme {
      * <p>The first pair of integers give the node indices of the endpoints
      * of the edge. The other two integers specify the
      * traversing cost and the demand, respectively.
-     * 
+     * <p>
+     * <p>-----------------------------------------------
+     * <p>DEPART   ARRIVEE     COUT
+     * <p>-----------------------------------------------
+     * <p>
+     * <p>Optional. When NB_ARRETE_NOREQ is positive, edges with zero demand
+     * may follow in this section, one per line:
+     * <p>
+     * <p>{integer}     {integer}       {integer}
+     * <p>
+     * <p>They are only used for deadheading between required edges. The
+     * section is only read when its header line, starting with DEPART,
+     * follows the required edges: otherwise the file has no non required
+     * edge and any trailing text is ignored.
+     *
      * @param nomFichier
      *      le fichier de configuration du problème
      * @return
      *      une instance de {@link ProblemeCARP} correctement initialisée.
-     * @throws IOException quand le nom de fichier n'est pas valide
+     * @throws IOException
+     *      quand le nom de fichier n'est pas valide, ou qu'une ligne du
+     *      fichier est mal formée (le message indique alors son numéro)
      * @since 2012
      */
     public static ProblemeCARP loadFromFile(String nomFichier) throws IOException {
+        return loadFromFile(nomFichier, false);
+    }
+
+    /**
+     * <p>
+     * Charge le {@link ProblemeCARP} à partir d'un fichier, au format décrit
+     * dans {@link #loadFromFile(java.lang.String)}.
+     * </p>
+     * 
+     * @param nomFichier
+     *      le fichier de configuration du problème
+     * @param cacheDistancier
+     *      <b>true</b> pour relire (ou créer) le distancier dans le fichier
+     *      <code>nomFichier + CacheDistancier.SUFFIXE</code>
+     * @return
+     *      une instance de {@link ProblemeCARP} correctement initialisée.
+     * @throws IOException
+     *      quand le nom de fichier n'est pas valide, ou qu'une ligne du
+     *      fichier est mal formée (le message indique alors son numéro)
+     * @since 2012
+     * @see #initialiserDistancierCache(java.nio.file.Path)
+     */
+    public static ProblemeCARP loadFromFile(String nomFichier, boolean cacheDistancier) throws IOException {
         if (nomFichier.isEmpty())
             throw new IOException("Chemin du fichier non specifie");
 
-        BufferedReader lecteur;
-        StringTokenizer st;
-        String ligne, token, token2;
-        ProblemeCARP prob = new ProblemeCARP();
-
-        int nbConditions = 0, nbTaches = 0, nbNoeuds = 0;
-        List<Noeud> noeuds = new ArrayList<Noeud>();
-        List<Arc> taches = new ArrayList<Arc>();
-
-        // Remise à 1 du compteur des arcs et des noeuds
-        Noeud.init();
-        Arc.init();
-        
-        lecteur = new BufferedReader(new FileReader(nomFichier));
-
-        // Premiere ligne = nom
-        ligne = lecteur.readLine();
-        if (ligne != null) {
-            st = new StringTokenizer(ligne);
-            st.nextToken(" :");
-            token = st.nextToken(" :");
-            prob.setNom(token);
-        }
-
-        // Nombre de conditions
-        ligne = lecteur.readLine();
-        if (ligne != null) {
-            st = new StringTokenizer(ligne);
-            st.nextToken(":");
-            token = st.nextToken(" :");
-
-            nbConditions = Integer.decode(token);
-        }
-
-        // Conditions
-        for (int i = 0; i < nbConditions; i++) {
-            ligne = lecteur.readLine();
-            if (ligne != null) {
-                st = new StringTokenizer(ligne);
-                token = st.nextToken(" :");
-                token2 = st.nextToken(" :");
-                prob.getConditions().add(new Condition<Integer>(token, Integer.decode(token2)));
-            }
-        }
-        
-        // Nombre de noeuds
-        ligne = lecteur.readLine();
-        if (ligne != null) {
-            st = new StringTokenizer(ligne);
-            st.nextToken(":");
-            token = st.nextToken(" :");
-            nbNoeuds = Integer.decode(token);
-            prob.getConditions().add(new Condition<Integer>(ProblemeCARP.NOM_CONDITION_NB_SOMMETS, nbNoeuds));
-        }
-
-        // Noeuds
-        for (int i = 0; i < nbNoeuds; i++)
-            noeuds.add(new Noeud());
+        ProblemeCARP prob = LecteurCARP.lire(Paths.get(nomFichier));
 
-        // Liste des taches et nombre de taches
-        ligne = lecteur.readLine();
-        if (ligne != null) {
-            st = new StringTokenizer(ligne);
-            st.nextToken(":");
-            token = st.nextToken(" :");
-
-            nbTaches = Integer.decode(token);
-        }
+        if (cacheDistancier)
+            prob.initialiserDistancierCache(Paths.get(nomFichier + CacheDistancier.SUFFIXE));
+        else
+            prob.initialiserDistancier();
 
-        // Labels (Noeud départ, Noeau arrivée, ...)
-        lecteur.readLine();
+        return prob;
+    }
 
-        // Taches
-        for (int i = 0; i < nbTaches; i++) {
-            ligne = lecteur.readLine();
-            if (ligne != null) {
-                st = new StringTokenizer(ligne);
-                // Noeud de départ
-                token = st.nextToken();
-                int noeudDepart = Integer.decode(token);
-                // Noeud d'arrivée
-                token = st.nextToken(" ");
-                int noeudArrive = Integer.decode(token);
-                // Cout
-                token = st.nextToken(" ");
-                float cout = Float.parseFloat(token);
-                // Demande
-                token = st.nextToken(" ");
-                float demande = Float.parseFloat(token);
-                if ((noeudDepart <= nbNoeuds) && (noeudArrive <= nbNoeuds)) {
-                    Noeud n1 = noeuds.get(noeudDepart - 1);
-                    Noeud n2 = noeuds.get(noeudArrive - 1);
-                    
-                    Arc t = new Arc(n2, n1);
-                    t.ajouterCout(new Cout(Arc.NOM_COUT_PARCOURS, cout));
-                    t.ajouterPropriete(new Propriete(GrapheCARP.NOM_PROPRIETE_DEMANDE, demande));
-                    taches.add(t);
-                    
-                    // Ajout d'adjacence au noeud
-                    noeuds.get(noeudArrive - 1).addAdjacent(t);
-                    noeuds.get(noeudDepart - 1).addAdjacent(t.clone().swap());
-                }
-            }
-        }
+    /**
+     * <p>
+     * Charge le {@link ProblemeCARP} à partir d'un fichier, au format décrit
+     * dans {@link #loadFromFile(java.lang.String)}.
+     * </p>
+     * 
+     * @param fichier
+     *      le fichier de configuration du problème
+     * @return
+     *      une instance de {@link ProblemeCARP} correctement initialisée.
+     * @throws IOException
+     *      quand le fichier ne peut être lu, ou qu'une de ses lignes est
+     *      mal formée (le message indique alors son numéro)
+     * @since 2012
+     * @see LecteurCARP
+     */
+    public static ProblemeCARP loadFromFile(Path fichier) throws IOException {
+        ProblemeCARP prob = LecteurCARP.lire(fichier);
+        prob.initialiserDistancier();
 
-        // Fermeture du fichier
-        lecteur.close();
+        return prob;
+    }
 
-        // Initialisation
-        graphe = new GrapheCARP(noeuds, taches);
+    /**
+     * <p>
+     * Charge le {@link ProblemeCARP} à partir d'un flux, au format décrit
+     * dans {@link #loadFromFile(java.lang.String)}. Le flux n'est pas fermé.
+     * </p>
+     * 
+     * @param flux
+     *      le flux contenant la configuration du problème
+     * @return
+     *      une instance de {@link ProblemeCARP} correctement initialisée.
+     * @throws IOException
+     *      quand le flux ne peut être lu, ou qu'une de ses lignes est
+     *      mal formée (le message indique alors son numéro)
+     * @since 2012
+     * @see LecteurCARP
+     */
+    public static ProblemeCARP loadFromStream(InputStream flux) throws IOException {
+        ProblemeCARP prob = LecteurCARP.lire(flux);
         prob.initialiserDistancier();
 
         return prob;
     }
+
+    /**
+     * <p>Remplace le {@link GrapheCARP} du problème, qui vient d'être lu.
+     *
+     * @param graphe le graphe du problème
+     * @since 2012
+     * @see LecteurCARP#lireProbleme()
+     */
+    void initialiserGraphe(GrapheCARP graphe) {
+        this.graphe = graphe;
+        dernierGraphe = graphe;
+    }
+
+    /**
+     * <p>
+     * Remplace le {@link Distancier} du problème par un distancier complet
+     * déjà calculé, par exemple relu depuis un fichier, et construit le
+     * {@link DistancierTaches} correspondant.
+     * </p>
+     *
+     * @param distancier le distancier complet du {@link GrapheCARP}
+     * @since 2012
+     * @see InstanceBinaireCARP#lire(java.nio.file.Path)
+     */
+    void utiliserDistancier(Distancier distancier) {
+        this.distancier = distancier;
+        distancierTaches = new DistancierTaches(graphe, distancier, noeudsDepots());
+    }
 }
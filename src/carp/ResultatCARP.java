@@ -2,6 +2,7 @@ package carp;
 
 import jade.content.Concept;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import seisco.probleme.Resultat;
 import seisco.util.graphe.Arc;
@@ -19,6 +20,15 @@ public class ResultatCARP extends Resultat {
 
 	private float coutTotal = 0;
 	private List<Tournee> tournees;
+	private boolean tourneesConstruites = true;
+
+	// Tournées pas encore construites : tâches de la solution, bornes et coûts des tournées
+	private Arc[] taches;
+	private int[] bornes;
+	private float[] coutsTournees;
+
+	// Sens de parcours des tâches, dans l'ordre de la tournée géante (null s'il est inconnu)
+	private boolean[] inversions;
 
     /**
      * <p>Instancie un nouveau {@link ResultatCARP}.
@@ -31,6 +41,89 @@ public class ResultatCARP extends Resultat {
         this.tournees = new ArrayList<Tournee>();
 	}
 
+    /**
+     * <p>
+     * Instancie un {@link ResultatCARP} dont les {@link Tournee} ne seront
+     * construites qu'à leur première utilisation. La tournée k collecte les
+     * tâches d'indices <code>bornes[k]</code> à <code>bornes[k+1]-1</code>
+     * et coûte <code>coutsTournees[k]</code>.
+     * </p>
+     * 
+     * @param taches
+     *      les tâches de la solution découpée, dans l'ordre de la tournée
+     *      géante (la liste est recopiée)
+     * @param inversions
+     *      le sens de parcours de chaque tâche (voir
+     *      {@link SolutionCARP#getInversions()}), recopié ; <b>null</b> si
+     *      les tâches sont parcourues dans leur sens de chargement
+     * @param bornes
+     *      les noeuds du plus court chemin dans le graphe auxiliaire, de 0
+     *      jusqu'au nombre de tâches
+     * @param coutsTournees
+     *      le coût de chaque tournée
+     * @since 2012
+     * @see FitnessCARP#evaluer(float[], int[], carp.SolutionCARP) 
+     */
+	ResultatCARP(List<Arc> taches, boolean[] inversions, int[] bornes, float[] coutsTournees) {
+		super();
+		this.taches = taches.toArray(new Arc[taches.size()]);
+		this.inversions = inversions == null ? null : inversions.clone();
+		this.bornes = bornes;
+		this.coutsTournees = coutsTournees;
+		this.tourneesConstruites = false;
+	}
+
+    /**
+     * <p>Instancie un {@link ResultatCARP} paresseux à partir de tableaux qui lui sont propres.
+     * 
+     * @since 2012
+     * @see #copier()
+     */
+	private ResultatCARP(Arc[] taches, boolean[] inversions, int[] bornes, float[] coutsTournees) {
+		super();
+		this.taches = taches;
+		this.inversions = inversions;
+		this.bornes = bornes;
+		this.coutsTournees = coutsTournees;
+		this.tourneesConstruites = false;
+	}
+
+    /**
+     * <p>
+     * Retourne une copie indépendante du résultat : modifier l'une (ses
+     * {@link Tournee} ou leurs listes de tâches) ne modifie pas l'autre. Si
+     * les tournées ne sont pas encore construites, la copie ne les construit
+     * pas non plus.
+     * </p>
+     * 
+     * @return une copie du résultat
+     * @since 2012
+     * @see CacheEvaluations
+     */
+	synchronized ResultatCARP copier() {
+		ResultatCARP copie;
+		if (!tourneesConstruites)
+			copie = new ResultatCARP(taches.clone(), inversions == null ? null : inversions.clone(),
+					bornes.clone(), coutsTournees.clone());
+		else {
+			copie = new ResultatCARP();
+			if (tournees == null)
+				copie.tournees = null;
+			else
+				for (Tournee tournee : tournees) {
+					Tournee copieTournee = new Tournee();
+					if (tournee.getTaches() != null)
+						copieTournee.setTaches(new ArrayList<Arc>(tournee.getTaches()));
+					copieTournee.setCoutTournee(tournee.getCoutTournee());
+					copie.tournees.add(copieTournee);
+				}
+			copie.inversions = inversions == null ? null : inversions.clone();
+		}
+		copie.coutTotal = coutTotal;
+
+		return copie;
+	}
+
     /**
      * <p>
      * Retourne le coût total de parcours pour
@@ -63,16 +156,81 @@ public class ResultatCARP extends Resultat {
 
     /**
      * <p>Retourne les {@link Tournee} du résultat
+     * <p>
+     * Après une évaluation, elles ne sont construites qu'au premier appel,
+     * chacune avec son coût (voir {@link Tournee#getCoutTournee()}).
+     * </p>
      * 
      * @return les {@link Tournee} du résultat sous forme de {@link List}
      * @since 2012
      * @see Tournee
      * @see #setTournees(java.util.List) 
      */
-	public List<Tournee> getTournees() {
+	public synchronized List<Tournee> getTournees() {
+		if (!tourneesConstruites)
+			construireTournees();
+
 		return tournees;
 	}
 
+    /**
+     * <p>
+     * Retourne le nombre de {@link Tournee} du résultat, sans les construire
+     * si elles ne l'ont pas encore été.
+     * </p>
+     * 
+     * @return le nombre de {@link Tournee} du résultat
+     * @since 2012
+     * @see #getTournees() 
+     */
+	public synchronized int getNbTournees() {
+		if (!tourneesConstruites)
+			return bornes.length - 1;
+
+		return tournees == null ? 0 : tournees.size();
+	}
+
+    /**
+     * <p>
+     * Retourne le nombre de tâches d'une {@link Tournee} du résultat, sans
+     * construire les tournées si elles ne l'ont pas encore été.
+     * </p>
+     * 
+     * @param tournee l'indice de la tournée, à partir de 0
+     * @return le nombre de tâches de la tournée
+     * @since 2012
+     * @see #getNbTournees() 
+     */
+	public synchronized int getNbTaches(int tournee) {
+		if (!tourneesConstruites)
+			return bornes[tournee + 1] - bornes[tournee];
+
+		return tournees.get(tournee).getTaches().size();
+	}
+
+    /**
+     * <p>
+     * Construit les {@link Tournee} à partir des bornes retenues lors de
+     * l'évaluation, en renseignant le coût de chacune.
+     * </p>
+     * 
+     * @since 2012
+     */
+	private void construireTournees() {
+		tournees = new ArrayList<Tournee>(bornes.length - 1);
+		for (int k = 0; k + 1 < bornes.length; k++) {
+			Tournee tournee = new Tournee();
+			tournee.setTaches(new ArrayList<Arc>(Arrays.asList(taches).subList(bornes[k], bornes[k + 1])));
+			tournee.setCoutTournee(coutsTournees[k]);
+			tournees.add(tournee);
+		}
+
+		tourneesConstruites = true;
+		taches = null;
+		bornes = null;
+		coutsTournees = null;
+	}
+
     /**
      * <p>Remplace les {@link Tournee} du résultat
      * 
@@ -81,8 +239,13 @@ public class ResultatCARP extends Resultat {
      * @since 2012
      * @see #getTournees() 
      */
-	public void setTournees(List<Tournee> tournees) {
+	public synchronized void setTournees(List<Tournee> tournees) {
 		this.tournees = tournees;
+		tourneesConstruites = true;
+		inversions = null;
+		taches = null;
+		bornes = null;
+		coutsTournees = null;
 	}
 
     /**
@@ -93,27 +256,35 @@ public class ResultatCARP extends Resultat {
      * @since 2012
      */
 	public boolean nouvelleTournee() {
-		return tournees.add(new Tournee());
+		return getTournees().add(new Tournee());
 	}
 
     /**
      * <p>Retourne sous forme de {@link String} le résultat.
      * 
      * @return sous forme de {@link String} le résultat.
-     *      Y compris ses {@link Tournee}, leur nombre de tâches et leurs {@link Arc}.
+     *      Y compris ses {@link Tournee}, leur nombre de tâches et leurs {@link Arc},
+     *      chacun dans le sens où la découpe le parcourt.
      * @since 2012
      * @see Arc#toString() 
      */
 	@Override
-	public String toString() {
+	public synchronized String toString() {
 		String res = new String();
 
+		List<Tournee> tournees = getTournees();
+		int position = 0;
 		for (int i = 1; i <= tournees.size(); i++) {
 			List<Arc> taches = this.tournees.get(i - 1).getTaches();
 			res += "\nTournée(" + i + ")\tNombre de tâches: " + taches.size() + "\n";
 			res += "————————————————————————————————————————————————————————\n";
-			for (Arc arc : taches)
-				res += arc.toString() + "\n";
+			for (Arc arc : taches) {
+				if (inversions != null && position < inversions.length && inversions[position])
+					res += arc.clone().swap().toString() + "\n";
+				else
+					res += arc.toString() + "\n";
+				position++;
+			}
 		}
 
 		return res;
@@ -23,6 +23,7 @@ public abstract class SolutionCARP extends Solution implements Cloneable {
 
 	protected List<Arc> taches;
 	private ResultatCARP resultat;
+	private boolean[] inversions;
 
     /**
      * <p>Instancie une {@link SolutionCARP}.
@@ -92,6 +93,37 @@ public abstract class SolutionCARP extends Solution implements Cloneable {
 		this.resultat = resultat;
 	}
 
+    /**
+     * <p>
+     * Retourne le sens de parcours des tâches choisi lors de la dernière
+     * découpe de la solution. La tâche d'indice k est parcourue de son
+     * arrivée vers son départ si <code>getInversions()[k]</code> vaut
+     * <b>true</b>.
+     * </p>
+     * 
+     * @return
+     *      le sens de parcours de chaque tâche, ou <b>null</b>
+     *      si la solution n'a pas encore été découpée.
+     * @since 2012
+     * @see ProblemeCARP#split(carp.SolutionCARP)
+     * @see #setInversions(boolean[]) 
+     */
+	public boolean[] getInversions() {
+		return inversions;
+	}
+
+    /**
+     * <p>Remplace le sens de parcours des tâches de la solution.
+     * 
+     * @param inversions
+     *      le sens de parcours de chaque tâche, indexé comme la liste des tâches
+     * @since 2012
+     * @see #getInversions() 
+     */
+	public void setInversions(boolean[] inversions) {
+		this.inversions = inversions;
+	}
+
     /**
      * <p>Retourne la liste des tâches de la solution
      * 
@@ -105,6 +137,23 @@ public abstract class SolutionCARP extends Solution implements Cloneable {
 		return taches;
 	}
 
+    /**
+     * <p>
+     * Retourne la tournée géante de la solution sous la forme de la suite
+     * des numéros de ses tâches dans un {@link GrapheCARP}.
+     * </p>
+     * 
+     * @param graphe
+     *  le {@link GrapheCARP} auquel appartiennent les tâches
+     * @return
+     *  le numéro de chaque tâche, dans l'ordre de la solution.
+     * @since 2012
+     * @see GrapheCARP#getIndices(java.util.List) 
+     */
+	public int[] getSequence(GrapheCARP graphe) {
+		return graphe.getIndices(taches);
+	}
+
     /**
      * <p>Remplace la liste des tâches de la solution.
      * 
@@ -229,6 +278,63 @@ public abstract class SolutionCARP extends Solution implements Cloneable {
                     return false;
 	}
 
+    /**
+     * <p>
+     * Retourne l'empreinte de la solution, calculée à partir des numéros de
+     * ses tâches dans l'ordre de la tournée géante. Deux solutions égales
+     * au sens de {@link #equals(java.lang.Object)} ont la même empreinte.
+     * </p>
+     * <p>
+     * La liste des tâches pouvant être modifiée directement (voir
+     * {@link #getTaches()}), l'empreinte n'est pas mémorisée : elle est
+     * recalculée à chaque appel, en un seul parcours de la liste.
+     * </p>
+     * 
+     * @return l'empreinte de la tournée géante
+     * @since 2012
+     * @see Object#hashCode() 
+     */
+	@Override
+	public int hashCode() {
+		int hash = 1;
+		for (int k = 0; k < taches.size(); k++) {
+			Arc t = taches.get(k);
+			hash = 31 * hash + (t == null ? 0 : t.getNumero());
+		}
+
+		return melanger(hash);
+	}
+
+    /**
+     * <p>
+     * Calcule l'empreinte d'une tournée géante donnée par les numéros de ses
+     * tâches, égale à celle d'une solution contenant ces tâches.
+     * </p>
+     * 
+     * @param numeros les numéros des tâches, dans l'ordre de la tournée géante
+     * @return l'empreinte de la tournée géante
+     * @since 2012
+     * @see #hashCode() 
+     */
+	static int hacher(int[] numeros) {
+		int hash = 1;
+		for (int k = 0; k < numeros.length; k++)
+			hash = 31 * hash + numeros[k];
+
+		return melanger(hash);
+	}
+
+	// Répartit les bits de l'empreinte (finalisation de MurmurHash3)
+	private static int melanger(int hash) {
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;
+		hash *= 0xc2b2ae35;
+		hash ^= hash >>> 16;
+
+		return hash;
+	}
+
     /**
      * <p>
      * Retourne la représentation de la solution
@@ -263,6 +369,7 @@ public abstract class SolutionCARP extends Solution implements Cloneable {
      */
 	public SolutionCARP copy() throws CloneNotSupportedException {
 		SolutionCARP c = (SolutionCARP) super.clone();
+		c.taches = new ArrayList<Arc>(this.taches.size());
 		c.setNbTaches(this.taches.size());
 		Collections.copy(c.taches, this.taches);
 
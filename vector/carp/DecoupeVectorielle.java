@@ -0,0 +1,380 @@
+package carp;
+
+import java.util.Arrays;
+import java.util.List;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+import seisco.util.graphe.Arc;
+
+/**
+ * <p>
+ * Découpe simultanée de plusieurs tournées géantes, une par voie des
+ * registres vectoriels (8 en 256 bits), avec l'API
+ * <code>jdk.incubator.vector</code>.
+ * </p>
+ * <p>
+ * Chaque voie déroule exactement la découpe gloutonne de
+ * {@link ProblemeCARP#split(carp.SolutionCARP)} sur sa propre tournée
+ * géante : même départ de tournée i, même prolongement tâche par tâche,
+ * mêmes inversions de sens, même arrêt sur la capacité, mêmes sommes
+ * flottantes dans le même ordre et même relâchement strict. Les coûts sont
+ * donc identiques au bit près à ceux de la référence. Une voie dont la
+ * tournée s'est arrêtée est masquée jusqu'au départ suivant ; le
+ * prolongement s'arrête quand toutes les voies le sont.
+ * </p>
+ * <p>
+ * Les tableaux sont entrelacés : la case p de la voie v est rangée à
+ * l'indice <code>p * nbVoies + v</code>, de sorte qu'une même position de
+ * toutes les tournées se lit d'un seul chargement. Les données des tâches
+ * (demandes, coûts, distances) sont lues par des chargements indexés. Les
+ * tableaux appartiennent au thread courant et suivent la plus grande
+ * tournée rencontrée.
+ * </p>
+ *
+ * @version 2012
+ * @see EvaluateurVectoriel
+ */
+final class DecoupeVectorielle {
+
+	private static final VectorSpecies<Float> FLOTTANTS = VectorSpecies.of(float.class,
+			VectorShape.forBitSize(Math.min(EvaluateurVectoriel.LARGEUR_MAX, FloatVector.SPECIES_PREFERRED.vectorBitSize())));
+	private static final VectorSpecies<Integer> ENTIERS = VectorSpecies.of(int.class, FLOTTANTS.vectorShape());
+
+	private static final ThreadLocal<DecoupeVectorielle> DECOUPES = new ThreadLocal<DecoupeVectorielle>() {
+		@Override
+		protected DecoupeVectorielle initialValue() {
+			return new DecoupeVectorielle();
+		}
+	};
+
+	private final int nbVoies = FLOTTANTS.length();
+
+	/*
+	 * Tournées géantes, sens de parcours (0 ou 1), labels et prédécesseurs
+	 * (Integer.MIN_VALUE pour un noeud non atteint), entrelacés par voie.
+	 * Les masques calculés sur les flottants sont convertis en masques
+	 * d'entiers, de même nombre de voies, pour les prédécesseurs et les sens.
+	 */
+	private int[] sequence = new int[0];
+	private int[] inversions = new int[0];
+	private float[] labels = new float[0];
+	private int[] predecesseurs = new int[0];
+
+	/*
+	 * États des tâches de la tournée en cours, avant et après l'inversion
+	 * du sens, et indices des distances entre tâches consécutives, eux
+	 * aussi entrelacés par position : comme la tournée géante, ils servent
+	 * d'indices aux chargements indexés.
+	 */
+	private int[] etats = new int[0];
+	private int[] etatsLus = new int[0];
+	private int[] indicesTable = new int[0];
+
+	// Nombre de tâches de chaque voie
+	private final int[] nbTaches = new int[nbVoies];
+
+	// Tournée en cours de chaque voie : charge et longueur
+	private final float[] charges = new float[nbVoies];
+	private final float[] longueurs = new float[nbVoies];
+
+	// Données du problème pendant une découpe
+	private float[] couts;
+	private float[] demandes;
+	private float[] depuisDepot;
+	private float[] versDepot;
+	private float[] table;
+	private int[] fins;
+	private int nbEtats;
+	private float capacitecamion;
+
+	private int nbTachesMax;
+
+	private DecoupeVectorielle() {
+	}
+
+	/**
+	 * <p>Retourne la découpe vectorielle du thread courant.
+	 *
+	 * @return la {@link DecoupeVectorielle} propre au thread courant
+	 * @since 2012
+	 */
+	static DecoupeVectorielle courante() {
+		return DECOUPES.get();
+	}
+
+	/**
+	 * <p>Retourne le nombre de tournées géantes découpées à la fois.
+	 *
+	 * @return le nombre de voies des registres vectoriels
+	 * @since 2012
+	 */
+	static int getNbVoies() {
+		return FLOTTANTS.length();
+	}
+
+	/**
+	 * <p>
+	 * Range les tournées géantes de solutions dans les voies, la solution
+	 * debut+v dans la voie v ; les voies restantes restent vides.
+	 * </p>
+	 *
+	 * @param graphe le {@link GrapheCARP} des tâches
+	 * @param solutions les solutions à découper
+	 * @param debut l'indice de la première solution à ranger
+	 * @param nb le nombre de solutions à ranger, au plus {@link #getNbVoies()}
+	 * @since 2012
+	 */
+	void charger(GrapheCARP graphe, SolutionCARP[] solutions, int debut, int nb) {
+		int max = 0;
+		for (int v = 0; v < nb; v++)
+			max = Math.max(max, solutions[debut + v].getTaches().size());
+		reserver(max);
+
+		Arrays.fill(sequence, 0, max * nbVoies, 0);
+		for (int v = 0; v < nbVoies; v++) {
+			if (v >= nb) {
+				nbTaches[v] = 0;
+				continue;
+			}
+
+			List<Arc> taches = solutions[debut + v].getTaches();
+			int n = taches.size();
+			nbTaches[v] = n;
+			for (int p = 0; p < n; p++)
+				sequence[p * nbVoies + v] = graphe.getIndice(taches.get(p));
+		}
+	}
+
+	/**
+	 * <p>
+	 * Découpe les tournées géantes chargées : construit le graphe auxiliaire
+	 * de chacune et son plus court chemin, comme
+	 * {@link ProblemeCARP#split(carp.SolutionCARP)} sans flotte limitée ni
+	 * orientation optimale.
+	 * </p>
+	 *
+	 * @param couts le coût de parcours de chaque tâche
+	 * @param demandes la demande de chaque tâche
+	 * @param entreTaches les distances entre tâches, dont la table doit être construite
+	 * @param capacitecamion la capacité d'un camion
+	 * @since 2012
+	 * @see #charger(carp.GrapheCARP, carp.SolutionCARP[], int, int)
+	 */
+	void decouper(float[] couts, float[] demandes, DistancierTaches entreTaches, float capacitecamion) {
+		int max = nbTachesMax;
+		this.couts = couts;
+		this.demandes = demandes;
+		this.depuisDepot = entreTaches.getDepuisDepots();
+		this.versDepot = entreTaches.getVersDepots();
+		this.table = entreTaches.getTable();
+		this.fins = entreTaches.getFins();
+		this.nbEtats = depuisDepot.length;
+		this.capacitecamion = capacitecamion;
+
+		// Initialisation des labels du plus court chemin et des sens de parcours
+		Arrays.fill(labels, 0, nbVoies, 0);
+		Arrays.fill(labels, nbVoies, (max + 1) * nbVoies, Float.POSITIVE_INFINITY);
+		Arrays.fill(predecesseurs, 0, (max + 1) * nbVoies, Integer.MIN_VALUE);
+		Arrays.fill(inversions, 0, max * nbVoies, 0);
+
+		/*
+		 * Le départ et le prolongement des tournées sont deux méthodes
+		 * distinctes, qui se transmettent la tournée en cours par des
+		 * tableaux : une seule méthode serait trop grosse pour que le
+		 * compilateur y intègre toutes les opérations vectorielles.
+		 */
+		for (int i = 0; i < max; i++)
+			if (demarrer(i))
+				prolonger(i, max);
+
+		this.couts = null;
+		this.demandes = null;
+		this.depuisDepot = null;
+		this.versDepot = null;
+		this.table = null;
+		this.fins = null;
+	}
+
+	/**
+	 * <p>
+	 * Commence dans chaque voie la tournée dont la première tâche est la
+	 * tâche i, et relâche la tournée ne contenant qu'elle.
+	 * </p>
+	 *
+	 * @param i la position de la première tâche
+	 * @return <b>true</b> si au moins une voie a une tâche i qui tient dans un camion
+	 * @since 2012
+	 */
+	private boolean demarrer(int i) {
+		int position = i * nbVoies;
+		IntVector tache = IntVector.fromArray(ENTIERS, sequence, position);
+
+		// La demande n'est jamais NaN : ne pas dépasser la capacité revient à lui être inférieure ou égale
+		FloatVector charge = FloatVector.fromArray(FLOTTANTS, demandes, 0, sequence, position);
+		VectorMask<Float> actives = IntVector.fromArray(ENTIERS, nbTaches, 0).compare(VectorOperators.GT, i)
+				.cast(FLOTTANTS).and(charge.compare(VectorOperators.LE, capacitecamion));
+		if (!actives.anyTrue())
+			return false;
+
+		// Distance du dépôt au début de la tâche i + distance pour la parcourir
+		tache.add(tache).add(IntVector.fromArray(ENTIERS, inversions, position)).intoArray(etats, position);
+		FloatVector longueur = FloatVector.fromArray(FLOTTANTS, depuisDepot, 0, etats, position);
+		longueur = longueur.add(FloatVector.fromArray(FLOTTANTS, couts, 0, sequence, position));
+
+		// Tournée ne contenant que la tâche i : retour au dépôt
+		relacher(i, i + 1, longueur.add(FloatVector.fromArray(FLOTTANTS, versDepot, 0, etats, position)), actives);
+
+		charge.intoArray(charges, 0);
+		longueur.intoArray(longueurs, 0);
+		return true;
+	}
+
+	/**
+	 * <p>
+	 * Prolonge tâche par tâche les tournées commencées par
+	 * {@link #demarrer(int)}, en relâchant chacune, jusqu'à ce que toutes
+	 * dépassent la capacité ou atteignent la fin de leur tournée géante.
+	 * </p>
+	 *
+	 * @param i la position de la première tâche des tournées
+	 * @param max le plus grand nombre de tâches des tournées géantes
+	 * @since 2012
+	 */
+	private void prolonger(int i, int max) {
+		IntVector longueursVoies = IntVector.fromArray(ENTIERS, nbTaches, 0);
+		FloatVector charge = FloatVector.fromArray(FLOTTANTS, charges, 0);
+		FloatVector longueur = FloatVector.fromArray(FLOTTANTS, longueurs, 0);
+		IntVector etat = IntVector.fromArray(ENTIERS, etats, i * nbVoies);
+		FloatVector labelDepart = FloatVector.fromArray(FLOTTANTS, labels, i * nbVoies);
+		VectorMask<Float> actives = longueursVoies.compare(VectorOperators.GT, i).cast(FLOTTANTS)
+				.and(charge.compare(VectorOperators.LE, capacitecamion));
+
+		for (int j = i + 2; j <= max; j++) {
+
+			int position = (j - 1) * nbVoies;
+			IntVector suivante = IntVector.fromArray(ENTIERS, sequence, position);
+			charge = charge.add(FloatVector.fromArray(FLOTTANTS, demandes, 0, sequence, position));
+			actives = actives.and(longueursVoies.compare(VectorOperators.GE, j).cast(FLOTTANTS))
+					.and(charge.compare(VectorOperators.LE, capacitecamion));
+			if (!actives.anyTrue())
+				break;
+
+			// Pour éviter des déplacements inutiles
+			IntVector sens = IntVector.fromArray(ENTIERS, inversions, position);
+			IntVector etatSuivant = suivante.add(suivante).add(sens);
+			etatSuivant.intoArray(etatsLus, position);
+			VectorMask<Integer> inverser = IntVector.fromArray(ENTIERS, fins, 0, etats, position - nbVoies)
+					.compare(VectorOperators.EQ, IntVector.fromArray(ENTIERS, fins, 0, etatsLus, position))
+					.and(actives.cast(ENTIERS));
+			IntVector bascule = IntVector.zero(ENTIERS).blend(1, inverser);
+			sens.lanewise(VectorOperators.XOR, bascule).intoArray(inversions, position);
+			etatSuivant = etatSuivant.lanewise(VectorOperators.XOR, bascule);
+
+			// Distance pour rejoindre la tâche suivante + distance de la tâche suivante parcourue
+			etat.mul(nbEtats).add(etatSuivant).intoArray(indicesTable, position);
+			longueur = longueur.add(FloatVector.fromArray(FLOTTANTS, table, 0, indicesTable, position));
+			longueur = longueur.add(FloatVector.fromArray(FLOTTANTS, couts, 0, sequence, position));
+
+			// La tâche suivante devient la tâche courante
+			etat = etatSuivant;
+			etat.intoArray(etats, position);
+
+			/*
+			 * Distance pour rejoindre le dépôt, puis relâchement de la
+			 * tournée (i, j) comme par relacher() : l'appel n'est pas intégré
+			 * par le compilateur, la méthode étant déjà trop grosse, et ses
+			 * vecteurs seraient alors alloués sur le tas.
+			 */
+			FloatVector label = labelDepart.add(
+					longueur.add(FloatVector.fromArray(FLOTTANTS, versDepot, 0, etats, position)));
+			FloatVector actuel = FloatVector.fromArray(FLOTTANTS, labels, j * nbVoies);
+			VectorMask<Float> meilleur = label.compare(VectorOperators.LT, actuel).and(actives);
+			actuel.blend(label, meilleur).intoArray(labels, j * nbVoies);
+			IntVector.fromArray(ENTIERS, predecesseurs, j * nbVoies).blend(i, meilleur.cast(ENTIERS))
+					.intoArray(predecesseurs, j * nbVoies);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Relâche dans les voies actives l'arc (i, j) du graphe auxiliaire,
+	 * comme {@link FitnessCARP#relacher(float[], int[], int, int, float)}.
+	 * </p>
+	 *
+	 * @param i noeud de départ de l'arc
+	 * @param j noeud d'arrivée de l'arc (j > i)
+	 * @param cout le coût de la tournée (i, j) de chaque voie
+	 * @param actives les voies où la tournée (i, j) est viable
+	 * @since 2012
+	 */
+	private void relacher(int i, int j, FloatVector cout, VectorMask<Float> actives) {
+		FloatVector label = FloatVector.fromArray(FLOTTANTS, labels, i * nbVoies).add(cout);
+		FloatVector actuel = FloatVector.fromArray(FLOTTANTS, labels, j * nbVoies);
+		VectorMask<Float> meilleur = label.compare(VectorOperators.LT, actuel).and(actives);
+
+		actuel.blend(label, meilleur).intoArray(labels, j * nbVoies);
+		IntVector.fromArray(ENTIERS, predecesseurs, j * nbVoies).blend(i, meilleur.cast(ENTIERS))
+				.intoArray(predecesseurs, j * nbVoies);
+	}
+
+	/**
+	 * <p>
+	 * Retourne le coût de la découpe d'une voie, comme
+	 * {@link ProblemeCARP#evaluerCout(carp.SolutionCARP)} : le label du
+	 * dernier noeud s'il est atteint, 0 sinon.
+	 * </p>
+	 *
+	 * @param voie le numéro de la voie
+	 * @return le coût total minimum de la découpe
+	 * @since 2012
+	 */
+	float getCout(int voie) {
+		int dernier = nbTaches[voie] * nbVoies + voie;
+		if (predecesseurs[dernier] == Integer.MIN_VALUE)
+			return 0;
+
+		return labels[dernier];
+	}
+
+	/**
+	 * <p>Recopie le résultat de la découpe d'une voie dans des tableaux ordinaires.
+	 *
+	 * @param voie le numéro de la voie
+	 * @param labels reçoit le label de chaque noeud du graphe auxiliaire
+	 * @param predecesseurs reçoit le prédécesseur de chaque noeud
+	 * @param inversions reçoit le sens de parcours de chaque tâche
+	 * @since 2012
+	 */
+	void extraire(int voie, float[] labels, int[] predecesseurs, boolean[] inversions) {
+		int n = nbTaches[voie];
+		for (int p = 0; p <= n; p++) {
+			labels[p] = this.labels[p * nbVoies + voie];
+			predecesseurs[p] = this.predecesseurs[p * nbVoies + voie];
+		}
+		for (int p = 0; p < n; p++)
+			inversions[p] = this.inversions[p * nbVoies + voie] != 0;
+	}
+
+	/**
+	 * <p>S'assure que les tableaux peuvent contenir des tournées géantes de max tâches.
+	 *
+	 * @param max le plus grand nombre de tâches des tournées à découper
+	 * @since 2012
+	 */
+	private void reserver(int max) {
+		nbTachesMax = max;
+		if (labels.length < (max + 1) * nbVoies) {
+			sequence = new int[(max + 1) * nbVoies];
+			inversions = new int[(max + 1) * nbVoies];
+			labels = new float[(max + 1) * nbVoies];
+			predecesseurs = new int[(max + 1) * nbVoies];
+			etats = new int[(max + 1) * nbVoies];
+			etatsLus = new int[(max + 1) * nbVoies];
+			indicesTable = new int[(max + 1) * nbVoies];
+		}
+	}
+}
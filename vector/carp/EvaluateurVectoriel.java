@@ -0,0 +1,160 @@
+package carp;
+
+/**
+ * <p>
+ * {@link EvaluateurGroupeCARP} qui découpe plusieurs solutions à la fois,
+ * une par voie des registres vectoriels, avec l'API
+ * <code>jdk.incubator.vector</code> (voir {@link DecoupeVectorielle}). Ses
+ * coûts sont identiques au bit près à ceux de la référence.
+ * </p>
+ * <p>
+ * La découpe scalaire de la référence reste utilisée pour une solution
+ * seule, pour un groupe réduit à une solution, si le module
+ * <code>jdk.incubator.vector</code> est absent (la JVM doit être lancée avec
+ * <code>--add-modules jdk.incubator.vector</code>), et pour les problèmes
+ * que la découpe vectorielle ne traite pas : flotte limitée, pénalité de
+ * flotte, orientation optimale, ou table des distances entre tâches non
+ * construite (voir {@link DistancierTaches#SEUIL_TABLE}).
+ * </p>
+ * <p>
+ * Les vecteurs sont limités à {@link #LARGEUR_MAX} bits, soit 8 solutions
+ * à la fois, même avec AVX-512 : sous JDK 17, le compilateur C2 place des
+ * chargements indexés de 512 bits avant la vérification de leurs indices,
+ * et la JVM plante.
+ * </p>
+ * <p>
+ * L'évaluateur est déclaré comme service sous le nom {@link #NOM} : il suffit
+ * d'ajouter son jar au classpath, puis de le désigner par
+ * <code>-Dcarp.evaluateur=vectoriel</code> ou
+ * {@link ProblemeCARP#setEvaluateur(java.lang.String)}.
+ * </p>
+ *
+ * @version 2012
+ * @see EvaluateursCARP
+ */
+public class EvaluateurVectoriel implements EvaluateurGroupeCARP {
+
+	/** Nom de l'évaluateur dans {@link EvaluateursCARP}. */
+	public static final String NOM = "vectoriel";
+
+	/** Largeur maximale des vecteurs, en bits. */
+	public static final int LARGEUR_MAX = 256;
+
+	private static final boolean DISPONIBLE = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+	@Override
+	public String getNom() {
+		return NOM;
+	}
+
+	@Override
+	public float evaluer(ProblemeCARP probleme, SolutionCARP sol) {
+		return probleme.evaluerDecoupe(sol);
+	}
+
+	@Override
+	public float evaluerCout(ProblemeCARP probleme, SolutionCARP sol) {
+		return probleme.evaluerCout(sol);
+	}
+
+	@Override
+	public int getTailleGroupe() {
+		return DISPONIBLE ? DecoupeVectorielle.getNbVoies() : 1;
+	}
+
+	@Override
+	public void evaluerGroupe(ProblemeCARP probleme, SolutionCARP[] solutions, float[] couts) {
+		evaluer(probleme, solutions, couts, false);
+	}
+
+	@Override
+	public void evaluerCoutsGroupe(ProblemeCARP probleme, SolutionCARP[] solutions, float[] couts) {
+		evaluer(probleme, solutions, couts, true);
+	}
+
+	@Override
+	public String toString() {
+		return NOM;
+	}
+
+	/**
+	 * <p>
+	 * Évalue un groupe de solutions par paquets de
+	 * {@link DecoupeVectorielle#getNbVoies()}, ou une à une par la référence
+	 * si la découpe vectorielle est impossible.
+	 * </p>
+	 *
+	 * @param probleme le problème auquel appartiennent les solutions
+	 * @param solutions des {@link SolutionCARP} réalisables
+	 * @param couts reçoit le coût de chaque solution
+	 * @param coutSeul <b>true</b> pour ne calculer que les coûts
+	 * @since 2012
+	 */
+	private void evaluer(ProblemeCARP probleme, SolutionCARP[] solutions, float[] couts, boolean coutSeul) {
+		int nbVoies = estVectorisable(probleme) ? DecoupeVectorielle.getNbVoies() : 1;
+
+		for (int debut = 0; debut < solutions.length; debut += nbVoies) {
+			int nb = Math.min(nbVoies, solutions.length - debut);
+			if (nb == 1)
+				couts[debut] = coutSeul ? evaluerCout(probleme, solutions[debut])
+						: evaluer(probleme, solutions[debut]);
+			else
+				decouper(probleme, solutions, debut, nb, couts, coutSeul);
+		}
+	}
+
+	/**
+	 * <p>Découpe nb solutions à la fois, à partir de la solution debut.
+	 *
+	 * @param probleme le problème auquel appartiennent les solutions
+	 * @param solutions des {@link SolutionCARP} réalisables
+	 * @param debut l'indice de la première solution à découper
+	 * @param nb le nombre de solutions à découper, au plus {@link DecoupeVectorielle#getNbVoies()}
+	 * @param couts reçoit le coût de chaque solution
+	 * @param coutSeul <b>true</b> pour ne calculer que les coûts
+	 * @since 2012
+	 */
+	private static void decouper(ProblemeCARP probleme, SolutionCARP[] solutions, int debut, int nb, float[] couts,
+			boolean coutSeul) {
+		GrapheCARP graphe = probleme.getGrapheCARP();
+		DistancierTaches entreTaches = probleme.getDistancierTaches();
+		float capacitecamion = (Integer) probleme.getCondition(ProblemeCARP.NOM_CONDITION_CAPACITE_CAMION)
+				.getValeur();
+
+		DecoupeVectorielle decoupe = DecoupeVectorielle.courante();
+		decoupe.charger(graphe, solutions, debut, nb);
+		decoupe.decouper(graphe.getCouts(), graphe.getDemandes(), entreTaches, capacitecamion);
+
+		for (int v = 0; v < nb; v++) {
+			SolutionCARP sol = solutions[debut + v];
+			if (coutSeul) {
+				couts[debut + v] = decoupe.getCout(v);
+				continue;
+			}
+
+			// Construction du résultat à partir du plus court chemin, comme la référence
+			int[] sequence = sol.getSequence(graphe);
+			EspaceTravail espace = EspaceTravail.courant().reserver(sequence.length);
+			boolean[] inversions = new boolean[sequence.length];
+			decoupe.extraire(v, espace.getLabels(), espace.getPredecesseurs(), inversions);
+
+			sol.setInversions(inversions);
+			couts[debut + v] = FitnessCARP.evaluer(espace.getLabels(), espace.getPredecesseurs(), sol, sequence,
+					graphe.getCouts(), entreTaches);
+		}
+	}
+
+	/**
+	 * <p>Indique si la découpe vectorielle donne le coût de la référence pour un problème.
+	 *
+	 * @param probleme le problème dont les solutions sont évaluées
+	 * @return <b>true</b> si les solutions de probleme peuvent être découpées par voie
+	 * @since 2012
+	 */
+	private static boolean estVectorisable(ProblemeCARP probleme) {
+		return DISPONIBLE && !probleme.isFlotteLimitee() && probleme.getPenaliteFlotte() == 0
+				&& !probleme.isOrientationOptimale()
+				&& probleme.conditionPresente(ProblemeCARP.NOM_CONDITION_CAPACITE_CAMION)
+				&& probleme.getDistancierTaches() != null && probleme.getDistancierTaches().getTable() != null;
+	}
+}